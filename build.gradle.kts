@@ -1,10 +1,12 @@
 import com.vanniktech.maven.publish.SonatypeHost
+import java.util.zip.ZipFile
 
 plugins {
     java
     `java-library`
     id("io.freefair.lombok") version "8.13.1"
     id("com.vanniktech.maven.publish") version "0.32.0"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "cn.mapleafgo"
@@ -25,8 +27,66 @@ dependencies {
     implementation("cn.hutool:hutool-core:5.8.39")
     implementation("cn.hutool:hutool-db:5.8.39")
     implementation("redis.clients:jedis:6.1.0")
+    compileOnly("io.micrometer:micrometer-core:1.14.5")
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.13.4")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.13.4")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher:1.13.4")
+    testImplementation("io.grpc:grpc-netty:1.70.0")
+    testRuntimeOnly("com.h2database:h2:2.3.232")
+    jmh("com.h2database:h2:2.3.232")
+    jmh("org.xerial:sqlite-jdbc:3.45.1.0")
+    jmh("io.grpc:grpc-netty:1.70.0")
+    // Redis、etcd 替身与测试共用
+    jmh(sourceSets.test.get().output)
+}
+
+jmh {
+    // 结果以 JSON 输出，便于跨版本对比；-PjmhIncludes=WriteBenchmark 只运行匹配的基准
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
+
+// jmhJar 合并依赖时同名的 META-INF/services 文件只会保留一份，gRPC 的解析器、负载均衡等扩展会丢失，这里先合并再打包
+val jmhServiceFiles by tasks.registering {
+    val classpath = configurations.named("jmhRuntimeClasspath")
+    val output = layout.buildDirectory.dir("jmh-services")
+    inputs.files(classpath)
+    outputs.dir(output)
+    doLast {
+        val merged = sortedMapOf<String, LinkedHashSet<String>>()
+        classpath.get().filter { it.name.endsWith(".jar") }.forEach { jar ->
+            ZipFile(jar).use { zip ->
+                zip.entries().asSequence()
+                    .filter { !it.isDirectory && it.name.startsWith("META-INF/services/") }
+                    .forEach { entry ->
+                        zip.getInputStream(entry).bufferedReader().readLines()
+                            .map { it.substringBefore('#').trim() }
+                            .filter { it.isNotEmpty() }
+                            .forEach { merged.getOrPut(entry.name.substringAfterLast('/')) { linkedSetOf() }.add(it) }
+                    }
+            }
+        }
+        val dir = output.get().dir("META-INF/jmh-services").asFile
+        dir.deleteRecursively()
+        dir.mkdirs()
+        merged.forEach { (name, providers) -> dir.resolve(name).writeText(providers.joinToString("\n", postfix = "\n")) }
+    }
+}
+
+tasks.named<Jar>("jmhJar") {
+    from(jmhServiceFiles)
+    eachFile {
+        if (path.startsWith("META-INF/services/")) {
+            exclude()
+        } else if (path.startsWith("META-INF/jmh-services/")) {
+            path = path.replace("META-INF/jmh-services/", "META-INF/services/")
+        }
+    }
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
 
 tasks.withType<JavaCompile> {
@@ -0,0 +1,56 @@
+package cn.mapleafgo.jcasbin.benchmark;
+
+import cn.mapleafgo.jcasbin.adapter.HutoolDBFilteredAdapter;
+import cn.mapleafgo.jcasbin.adapter.PolicyFilter;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.casbin.jcasbin.model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从嵌入式 H2、SQLite 全量加载与按租户过滤加载
+ * <p>
+ * 过滤加载命中 1/{@link BenchmarkDatabase#TENANTS} 的规则；5000000 行在 SQLite 上准备数据需要数分钟。
+ *
+ * @author mapleafgo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class AdapterLoadBenchmark {
+    private static final String TABLE_NAME = "casbin_rule_load";
+
+    @Param({"h2", "sqlite"})
+    private String db;
+
+    @Param({"10000", "1000000", "5000000"})
+    private int rows;
+
+    private HutoolDBFilteredAdapter adapter;
+    private PolicyFilter filter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        adapter = new HutoolDBFilteredAdapter(BenchmarkDatabase.create(db, TABLE_NAME + rows), new CasbinTable(TABLE_NAME));
+        BenchmarkDatabase.populate(adapter, 0, rows);
+        filter = new PolicyFilter().where("p", "", "tenant7");
+    }
+
+    @Benchmark
+    public Model loadPolicy() {
+        Model model = Model.newModelFromString(BenchmarkDatabase.MODEL);
+        adapter.loadPolicy(model);
+        return model;
+    }
+
+    @Benchmark
+    public Model loadFilteredPolicy() {
+        Model model = Model.newModelFromString(BenchmarkDatabase.MODEL);
+        adapter.loadFilteredPolicy(model, filter);
+        return model;
+    }
+}
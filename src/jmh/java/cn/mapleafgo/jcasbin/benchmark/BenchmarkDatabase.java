@@ -0,0 +1,82 @@
+package cn.mapleafgo.jcasbin.benchmark;
+
+import cn.hutool.db.ds.simple.SimpleDataSource;
+import cn.mapleafgo.jcasbin.adapter.HutoolDBAdapter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试使用的嵌入式数据库与测试数据
+ *
+ * @author mapleafgo
+ */
+final class BenchmarkDatabase {
+    static final String MODEL = """
+        [request_definition]
+        r = sub, dom, obj, act
+        [policy_definition]
+        p = sub, dom, obj, act
+        [role_definition]
+        g = _, _, _
+        [policy_effect]
+        e = some(where (p.eft == allow))
+        [matchers]
+        m = g(r.sub, p.sub, r.dom) && r.dom == p.dom && r.obj == p.obj && r.act == p.act
+        """;
+    static final int TENANTS = 1000;
+    private static final int INSERT_BATCH = 10_000;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * @param db   {@code h2} 或 {@code sqlite}
+     * @param name 库名，同名复用同一个库
+     * @return 数据源
+     * @throws IOException 创建 SQLite 临时文件失败
+     */
+    static DataSource create(String db, String name) throws IOException {
+        return switch (db) {
+            case "h2" -> new SimpleDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "", "");
+            case "sqlite" -> {
+                Path file = Files.createTempFile(name, ".db");
+                file.toFile().deleteOnExit();
+                yield new SimpleDataSource("jdbc:sqlite:" + file, "", "");
+            }
+            default -> throw new IllegalArgumentException("unknown database " + db);
+        };
+    }
+
+    /**
+     * 第 i 条规则：每个用户 50 条规则，{@link #TENANTS} 个租户，10000 个资源，3 种动作，规则互不重复
+     */
+    static List<String> rule(int i) {
+        return List.of("user" + (i / 50), "tenant" + (i % TENANTS), "data" + (i % 10_000), switch (i % 3) {
+            case 0 -> "read";
+            case 1 -> "write";
+            default -> "delete";
+        });
+    }
+
+    /**
+     * 写入 [from, to) 区间的规则
+     */
+    static void populate(HutoolDBAdapter adapter, int from, int to) {
+        int batchSize = adapter.getBatchSize();
+        adapter.setBatchSize(INSERT_BATCH);
+        List<List<String>> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = from; i < to; i++) {
+            batch.add(rule(i));
+            if (batch.size() == INSERT_BATCH || i == to - 1) {
+                adapter.addPolicies("p", "p", batch);
+                batch.clear();
+            }
+        }
+        adapter.setBatchSize(batchSize);
+    }
+}
@@ -0,0 +1,70 @@
+package cn.mapleafgo.jcasbin.benchmark;
+
+import cn.hutool.db.ds.simple.SimpleDataSource;
+import cn.mapleafgo.jcasbin.adapter.HutoolDBAdapter;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.casbin.jcasbin.model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全量加载：单连接顺序读取与按主键区间在多个连接上并发读取对比。
+ * <p>
+ * 加速比取决于数据库与 CPU 核数，嵌入式 H2 在单核机器上不会有提升，应在目标数据库上运行。
+ *
+ * @author mapleafgo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class ParallelLoadBenchmark {
+    private static final String TABLE_NAME = "casbin_rule_parallel";
+    private static final String MODEL = """
+        [request_definition]
+        r = sub, dom, obj, act
+        [policy_definition]
+        p = sub, dom, obj, act
+        [policy_effect]
+        e = some(where (p.eft == allow))
+        [matchers]
+        m = r.sub == p.sub && r.dom == p.dom && r.obj == p.obj && r.act == p.act
+        """;
+
+    @Param({"200000"})
+    private int rows;
+
+    @Param({"1", "2", "4"})
+    private int parallelism;
+
+    private HutoolDBAdapter adapter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        DataSource dataSource = new SimpleDataSource("jdbc:h2:mem:" + TABLE_NAME + rows + ";DB_CLOSE_DELAY=-1", "", "");
+        adapter = new HutoolDBAdapter(dataSource, new CasbinTable(TABLE_NAME));
+        adapter.setBatchSize(10_000);
+        List<List<String>> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            batch.add(List.of("user" + (i / 50), "tenant" + (i % 1000), "data" + (i % 10_000), "read"));
+            if (batch.size() == 10_000 || i == rows - 1) {
+                adapter.addPolicies("p", "p", batch);
+                batch.clear();
+            }
+        }
+        adapter.setLoadParallelism(parallelism);
+    }
+
+    @Benchmark
+    public Model load() {
+        Model model = Model.newModelFromString(MODEL);
+        adapter.loadPolicy(model);
+        return model;
+    }
+}
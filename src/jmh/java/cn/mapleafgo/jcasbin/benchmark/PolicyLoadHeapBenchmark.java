@@ -0,0 +1,86 @@
+package cn.mapleafgo.jcasbin.benchmark;
+
+import cn.mapleafgo.jcasbin.adapter.HutoolDBAdapter;
+import cn.mapleafgo.jcasbin.adapter.PolicyLoader;
+import org.casbin.jcasbin.model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 填充模型后的常驻堆大小：逐行 {@link HutoolDBAdapter#loadPolicyLine} 与 {@link PolicyLoader} 紧凑加载对比。
+ * <p>
+ * 规则不经过数据库，每行都生成新的 String，与 JDBC 读取的效果相同；
+ * 结果看 {@code retainedMB} 计数器（EVENTS 计数器会跨迭代累加，因此只测量一次），耗时包含测量前后的两次 Full GC，仅供参考。
+ *
+ * @author mapleafgo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class PolicyLoadHeapBenchmark {
+    private static final String MODEL = """
+        [request_definition]
+        r = sub, dom, obj, act
+        [policy_definition]
+        p = sub, dom, obj, act
+        [role_definition]
+        g = _, _, _
+        [policy_effect]
+        e = some(where (p.eft == allow))
+        [matchers]
+        m = g(r.sub, p.sub, r.dom) && r.dom == p.dom && r.obj == p.obj && r.act == p.act
+        """;
+    private static final char[][] ACTIONS = {"read".toCharArray(), "write".toCharArray(), "delete".toCharArray()};
+
+    @Param({"1000000", "5000000"})
+    private int rows;
+
+    @Param({"false", "true"})
+    private boolean compact;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Heap {
+        public long retainedMB;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedMB = 0;
+        }
+    }
+
+    @Benchmark
+    public Model load(Heap heap) {
+        long before = usedAfterGc();
+        Model model = Model.newModelFromString(MODEL);
+        Consumer<List<String>> sink = compact
+            ? new PolicyLoader(model, Map.of("p", (long) rows), PolicyLoader.DEFAULT_DICTIONARY_SIZE)
+            : rule -> HutoolDBAdapter.loadPolicyLine(rule, model);
+        for (int i = 0; i < rows; i++) {
+            sink.accept(row(i));
+        }
+        heap.retainedMB = (usedAfterGc() - before) >> 20;
+        return model;
+    }
+
+    /**
+     * 每个用户 50 条规则，1000 个租户，10000 个资源，3 种动作；同一用户的规则资源各不相同，因此规则不重复
+     */
+    private static List<String> row(int i) {
+        return List.of("p", "user" + (i / 50), "tenant" + (i % 1000), "data" + (i % 10_000), new String(ACTIONS[i % 3]));
+    }
+
+    private static long usedAfterGc() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,142 @@
+package cn.mapleafgo.jcasbin.benchmark;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.db.Entity;
+import cn.hutool.db.ds.simple.SimpleDataSource;
+import cn.mapleafgo.jcasbin.adapter.HutoolDBAdapter;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import cn.mapleafgo.jcasbin.db.LeafDb;
+import cn.mapleafgo.jcasbin.entity.CasbinRule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则映射的逐行开销：反射 / Bean 内省的旧路径与 {@link CasbinTable} 直接映射对比
+ *
+ * @author mapleafgo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleMappingBenchmark {
+    private static final int ROWS = 10_000;
+    private static final String TABLE_NAME = "casbin_rule_mapping";
+
+    private DataSource dataSource;
+    private CasbinTable table;
+    private List<CasbinRule> rules;
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement delete;
+
+    @Setup
+    public void setup() throws Exception {
+        dataSource = new SimpleDataSource("jdbc:h2:mem:" + TABLE_NAME + ";DB_CLOSE_DELAY=-1", "", "");
+        new HutoolDBAdapter(dataSource, TABLE_NAME);
+        table = new CasbinTable(TABLE_NAME);
+        rules = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            CasbinRule rule = new CasbinRule();
+            rule.setId((long) i);
+            rule.setPtype("p");
+            rule.setRule(List.of("user" + i, "tenant" + (i % 100), "data" + (i % 1000), "read"));
+            rules.add(rule);
+        }
+        LeafDb.use(dataSource).tx(db -> LeafDb.withConnection(db, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(table.insertSql())) {
+                for (CasbinRule rule : rules) {
+                    List<String> r = rule.getRule();
+                    table.bindInsert(ps, rule.getId(), r.get(0), r.subList(1, r.size()));
+                    ps.addBatch();
+                }
+                return ps.executeBatch();
+            }
+        }));
+        connection = dataSource.getConnection();
+        insert = connection.prepareStatement(table.insertSql());
+        delete = connection.prepareStatement(table.deleteSql(4));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        insert.close();
+        delete.close();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void loadLegacy(Blackhole bh) throws Exception {
+        List<CasbinRule> list = LeafDb.use(dataSource).findAll(Entity.create(TABLE_NAME), CasbinRule.class);
+        for (CasbinRule rule : list) {
+            bh.consume(reflectiveGetRule(rule));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void loadDirect(Blackhole bh) throws Exception {
+        LeafDb.use(dataSource).fetch(table.selectSql(), 1000, rs -> bh.consume(table.readRule(rs, 1)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void bindLegacy(Blackhole bh) throws Exception {
+        for (CasbinRule rule : rules) {
+            CasbinRule copy = new CasbinRule();
+            copy.setPtype(rule.getPtype());
+            reflectiveSetRule(copy, reflectiveGetRule(rule).subList(1, 5));
+            bh.consume(BeanUtil.beanToMap(copy, true, true));
+            copy.setId(rule.getId());
+            bh.consume(Entity.create(TABLE_NAME).parseBean(copy));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void bindDirect() throws Exception {
+        for (CasbinRule rule : rules) {
+            List<String> r = rule.getRule();
+            List<String> values = r.subList(1, r.size());
+            table.bindRule(delete, 1, r.get(0), values);
+            table.bindInsert(insert, rule.getId(), r.get(0), values);
+            delete.clearParameters();
+            insert.clearParameters();
+        }
+    }
+
+    /**
+     * 重构前 {@code CasbinRule#getRule} 的实现
+     */
+    private static List<String> reflectiveGetRule(CasbinRule rule) throws Exception {
+        List<String> list = new ArrayList<>();
+        list.add(rule.getPtype());
+        for (int i = 0; i < 5; i++) {
+            String value = (String) CasbinRule.class.getMethod(String.format("getV%d", i)).invoke(rule);
+            if (value == null) {
+                break;
+            }
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * 重构前 {@code CasbinRule#setRule} 的实现
+     */
+    private static void reflectiveSetRule(CasbinRule rule, List<String> values) throws Exception {
+        for (int i = 0; i < Math.min(5, values.size()); i++) {
+            CasbinRule.class.getMethod(String.format("setV%d", i), String.class).invoke(rule, values.get(i));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package cn.mapleafgo.jcasbin.benchmark;
+
+import cn.mapleafgo.jcasbin.adapter.HutoolDBAdapter;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.casbin.jcasbin.model.Model;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全量保存：用同样规模的模型覆盖整张表
+ *
+ * @author mapleafgo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g"})
+public class SavePolicyBenchmark {
+    private static final String TABLE_NAME = "casbin_rule_save";
+
+    @Param({"h2", "sqlite"})
+    private String db;
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private HutoolDBAdapter adapter;
+    private Model model;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        adapter = new HutoolDBAdapter(BenchmarkDatabase.create(db, TABLE_NAME + rows), new CasbinTable(TABLE_NAME));
+        BenchmarkDatabase.populate(adapter, 0, rows);
+        model = Model.newModelFromString(BenchmarkDatabase.MODEL);
+        adapter.loadPolicy(model);
+    }
+
+    @Benchmark
+    public void savePolicy() {
+        adapter.savePolicy(model);
+    }
+}
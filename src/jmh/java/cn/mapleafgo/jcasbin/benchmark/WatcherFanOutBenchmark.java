@@ -0,0 +1,110 @@
+package cn.mapleafgo.jcasbin.benchmark;
+
+import cn.mapleafgo.jcasbin.standin.EtcdStandIn;
+import cn.mapleafgo.jcasbin.standin.RedisStandIn;
+import cn.mapleafgo.jcasbin.watcher.EtcdWatcher;
+import cn.mapleafgo.jcasbin.watcher.RedisWatcher;
+import io.etcd.jetcd.Client;
+import org.casbin.jcasbin.persist.Watcher;
+import org.openjdk.jmh.annotations.*;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 观察者回调扇出：一个观察者发布更新，到其余所有观察者都收到回调的耗时
+ * <p>
+ * Redis 与 etcd 均为进程内替身（见 {@code standin} 包），结果反映的是客户端与观察者的开销，不包含真实服务端的延迟。
+ *
+ * @author mapleafgo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WatcherFanOutBenchmark {
+    private static final String KEY_NAME = "casbin_fan_out";
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Param({"redis", "etcd"})
+    private String transport;
+
+    @Param({"1", "16"})
+    private int watchers;
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private final AtomicReference<CountDownLatch> latch = new AtomicReference<>(new CountDownLatch(0));
+    private Watcher publisher;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        publisher = "redis".equals(transport) ? redisWatcher(false) : etcdWatcher(false);
+        for (int i = 0; i < watchers; i++) {
+            Watcher watcher = "redis".equals(transport) ? redisWatcher(true) : etcdWatcher(true);
+            watcher.setUpdateCallback(() -> latch.get().countDown());
+        }
+        // 订阅是异步建立的，直到一次更新能送达所有观察者
+        for (int i = 0; i < TIMEOUT_SECONDS; i++) {
+            CountDownLatch received = new CountDownLatch(watchers);
+            latch.set(received);
+            publisher.update();
+            if (received.await(1, TimeUnit.SECONDS)) {
+                return;
+            }
+        }
+        throw new TimeoutException("watchers did not subscribe");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+        resources.clear();
+    }
+
+    @Benchmark
+    public void update() throws InterruptedException, TimeoutException {
+        CountDownLatch received = new CountDownLatch(watchers);
+        latch.set(received);
+        publisher.update();
+        if (!received.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new TimeoutException(received.getCount() + " watchers did not receive the update");
+        }
+    }
+
+    private Watcher redisWatcher(boolean watch) throws Exception {
+        if (resources.isEmpty()) {
+            resources.add(new RedisStandIn());
+        }
+        JedisPool pool = new JedisPool("127.0.0.1", ((RedisStandIn) resources.get(0)).getPort());
+        ExecutorService subscriber = Executors.newSingleThreadExecutor();
+        RedisWatcher watcher = new RedisWatcher(pool, KEY_NAME, KEY_NAME, null, subscriber);
+        if (watch) {
+            watcher.startWatch();
+        }
+        resources.add(pool);
+        resources.add(subscriber::shutdownNow);
+        resources.add(watcher);
+        return watcher;
+    }
+
+    private Watcher etcdWatcher(boolean watch) throws Exception {
+        if (resources.isEmpty()) {
+            resources.add(new EtcdStandIn());
+        }
+        Client client = Client.builder().endpoints(((EtcdStandIn) resources.get(0)).getEndpoint()).build();
+        EtcdWatcher watcher = new EtcdWatcher(client, KEY_NAME);
+        if (watch) {
+            watcher.startWatch();
+        }
+        resources.add(client);
+        resources.add(watcher);
+        return watcher;
+    }
+}
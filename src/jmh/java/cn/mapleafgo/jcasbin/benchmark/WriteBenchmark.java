@@ -0,0 +1,50 @@
+package cn.mapleafgo.jcasbin.benchmark;
+
+import cn.mapleafgo.jcasbin.adapter.HutoolDBAdapter;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量写入：表中预置 {@link #BASE_ROWS} 条规则，每次写入一批新规则再删除，表大小保持不变
+ *
+ * @author mapleafgo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+    private static final String TABLE_NAME = "casbin_rule_write";
+    private static final int BASE_ROWS = 10_000;
+
+    @Param({"h2", "sqlite"})
+    private String db;
+
+    @Param({"1", "100", "1000"})
+    private int batch;
+
+    private HutoolDBAdapter adapter;
+    private List<List<String>> rules;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        adapter = new HutoolDBAdapter(BenchmarkDatabase.create(db, TABLE_NAME + batch), new CasbinTable(TABLE_NAME));
+        BenchmarkDatabase.populate(adapter, 0, BASE_ROWS);
+        rules = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            rules.add(BenchmarkDatabase.rule(BASE_ROWS + i));
+        }
+    }
+
+    @Benchmark
+    public void addRemovePolicies() {
+        adapter.addPolicies("p", "p", rules);
+        adapter.removePolicies("p", "p", rules);
+    }
+}
@@ -0,0 +1,601 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import cn.mapleafgo.jcasbin.watcher.PolicyUpdate;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.main.Enforcer;
+import org.casbin.jcasbin.model.Assertion;
+import org.casbin.jcasbin.model.Model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 按域懒加载策略：多租户模型中每个节点只服务部分域时，域在第一次访问时才从数据库加载它的规则，
+ * 已加载的域按最近最少使用淘汰，淘汰时从模型中移除该域的规则并同步角色关系。
+ * <p>
+ * 规则所属的域由 {@link #setDomainField} 指定，默认为 p 的 v1、g 的 v2（RBAC with domains 的约定），
+ * 模型中没有指定域字段的 ptype（例如 g2、不含域的 p2）不按域拆分，第一次访问时整体加载一次并常驻，不参与淘汰，
+ * 全量失效或收到这些 ptype 的增量时整体重新加载。占用内存按规则字段长度估算，超过 {@link #setMaxBytes} 或 {@link #setMaxDomains} 时淘汰。
+ * <pre>{@code
+ * Enforcer enforcer = new Enforcer(model);
+ * enforcer.setAdapter(adapter);
+ * DomainPolicyCache cache = new DomainPolicyCache(enforcer, adapter);
+ * cache.enforce("tenant1", "alice", "tenant1", "data1", "read");
+ * streamWatcher.setDeltaCallback(cache::invalidate); // 只失效受影响的域
+ * watcher.setUpdateCallback(cache::invalidateAll);   // 不携带增量的观察者
+ * }</pre>
+ * 加载、淘汰与 {@link #enforce} 之间用读写锁隔离，直接调用 enforcer 的 enforce 不受保护；
+ * 不要再对 enforcer 调用 loadPolicy，需要全量刷新时调用 {@link #invalidateAll()}。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class DomainPolicyCache {
+    /**
+     * 单条规则除字段内容外的开销估算：规则列表、模型中的列表项与索引项
+     */
+    private static final int RULE_OVERHEAD_BYTES = 160;
+    /**
+     * 单个字段的 String 对象开销估算
+     */
+    private static final int FIELD_OVERHEAD_BYTES = 40;
+
+    private final Enforcer enforcer;
+    private final HutoolDBFilteredAdapter adapter;
+    private final Map<String, Integer> domainFields = new ConcurrentHashMap<>();
+    private final Map<String, Domain> domains = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 不按域管理的 ptype 的加载状态，未加载或已失效时为 null
+     */
+    private final AtomicReference<CompletableFuture<Void>> shared = new AtomicReference<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    /**
+     * 已加载规则占用内存的上限（估算值），默认 256MB
+     */
+    @Getter
+    @Setter
+    private volatile long maxBytes = 256L << 20;
+    /**
+     * 最多同时加载的域数量，默认不限制
+     */
+    @Getter
+    @Setter
+    private volatile int maxDomains = Integer.MAX_VALUE;
+    /**
+     * 已加载规则占用的内存（估算值）
+     */
+    @Getter
+    private volatile long usedBytes;
+    private int loaded;
+
+    /**
+     * @param enforcer enforcer，创建时不应加载策略，例如 {@code new Enforcer(model)} 后再设置适配器
+     * @param adapter  策略表的适配器；会被标记为已过滤，防止 enforcer 用部分策略覆盖整张表
+     */
+    public DomainPolicyCache(Enforcer enforcer, HutoolDBFilteredAdapter adapter) {
+        this.enforcer = enforcer;
+        this.adapter = adapter;
+        adapter.markFiltered();
+        Model model = enforcer.getModel();
+        if (tokenCount(model, "p") > 1) {
+            domainFields.put("p", 1);
+        }
+        if (tokenCount(model, "g") > 2) {
+            domainFields.put("g", 2);
+        }
+    }
+
+    /**
+     * 指定 ptype 中表示域的字段，需在第一次加载前设置
+     *
+     * @param ptype      策略类型
+     * @param fieldIndex 字段下标，从 0 开始；小于 0 时不再管理该 ptype
+     */
+    public void setDomainField(String ptype, int fieldIndex) {
+        if (fieldIndex < 0) {
+            domainFields.remove(ptype);
+        } else {
+            domainFields.put(ptype, fieldIndex);
+        }
+    }
+
+    /**
+     * 确保域已加载后执行 enforce
+     *
+     * @param domain 请求所在的域
+     * @param rvals  请求参数
+     * @return 是否允许
+     */
+    public boolean enforce(String domain, Object... rvals) {
+        while (true) {
+            CompletableFuture<Void> s = loadShared();
+            Domain d = load(domain);
+            lock.readLock().lock();
+            try {
+                // 固定的域不会被淘汰，但仍可能被失效，此时重新加载
+                if (domains.get(domain) == d && shared.get() == s) {
+                    d.lastAccess = clock.incrementAndGet();
+                    return enforcer.enforce(rvals);
+                }
+            } finally {
+                lock.readLock().unlock();
+                d.pins.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 确保域已加载，未加载时从数据库读取；同一个域并发访问时只读取一次
+     *
+     * @param domain 域
+     */
+    public void ensureLoaded(String domain) {
+        loadShared();
+        Domain d = load(domain);
+        d.lastAccess = clock.incrementAndGet();
+        d.pins.decrementAndGet();
+    }
+
+    /**
+     * 从模型中移除域的规则，下次访问时重新加载
+     *
+     * @param domain 域
+     */
+    public void invalidate(String domain) {
+        lock.writeLock().lock();
+        try {
+            Domain d = domains.remove(domain);
+            if (d != null && d.applied) {
+                unload(List.of(d));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按增量通知失效受影响的域：规则可以确定域时只失效这些域，否则失效全部；
+     * 不按域管理的 ptype 整体失效，模型中不存在的 ptype 忽略
+     *
+     * @param update 策略增量
+     */
+    public void invalidate(PolicyUpdate update) {
+        if (update.isFullReload()) {
+            invalidateAll();
+            return;
+        }
+        Integer field = domainFields.get(update.getPtype());
+        if (field == null) {
+            if (assertion(enforcer.getModel(), update.getPtype()) != null) {
+                invalidateShared();
+            }
+            return;
+        }
+        Set<String> affected = new HashSet<>();
+        if (update.getOperation() == PolicyUpdate.Operation.REMOVE_FILTERED_POLICY) {
+            List<String> values = update.getRules().isEmpty() ? List.of() : update.getRules().get(0);
+            int pos = field - update.getFieldIndex();
+            if (pos < 0 || pos >= values.size() || values.get(pos).isEmpty()) {
+                invalidateAll();
+                return;
+            }
+            affected.add(values.get(pos));
+        } else {
+            collectDomains(update.getRules(), field, affected);
+            collectDomains(update.getNewRules(), field, affected);
+        }
+        affected.forEach(this::invalidate);
+    }
+
+    /**
+     * 从模型中移除所有已加载域的规则与不按域管理的规则，下次访问时重新加载
+     */
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            List<Domain> applied = domains.values().stream().filter(d -> d.applied).toList();
+            domains.clear();
+            unload(applied);
+            unloadShared();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return 已加载的域
+     */
+    public Set<String> getLoadedDomains() {
+        Set<String> names = new HashSet<>();
+        domains.forEach((name, d) -> {
+            if (d.applied) {
+                names.add(name);
+            }
+        });
+        return names;
+    }
+
+    /**
+     * @return 访问时域已加载的次数
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return 访问时需要从数据库加载的次数
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return 因超出容量被淘汰的域数量
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * 从模型中移除不按域管理的规则，下次访问时重新加载
+     */
+    private void invalidateShared() {
+        lock.writeLock().lock();
+        try {
+            unloadShared();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 确保不按域管理的 ptype 已加载，并发访问时只读取一次
+     *
+     * @return 本次使用的加载状态，失效后会被替换
+     */
+    private CompletableFuture<Void> loadShared() {
+        while (true) {
+            CompletableFuture<Void> s = shared.get();
+            if (s == null) {
+                CompletableFuture<Void> created = new CompletableFuture<>();
+                if (!shared.compareAndSet(null, created)) {
+                    continue;
+                }
+                fetchShared(created);
+                return created;
+            }
+            try {
+                s.join();
+            } catch (CompletionException e) {
+                throw new CasbinAdapterException("加载不按域管理的策略失败", e.getCause());
+            }
+            return s;
+        }
+    }
+
+    private void fetchShared(CompletableFuture<Void> s) {
+        long start = Metrics.start();
+        Set<String> ptypes = sharedPtypes();
+        List<List<String>> rules = new ArrayList<>();
+        if (!ptypes.isEmpty()) {
+            PolicyFilter filter = new PolicyFilter();
+            ptypes.forEach(filter::where);
+            List<Object> params = new ArrayList<>();
+            String condition = filter.toSql(adapter.table, params);
+            try {
+                adapter.fetchRules(condition, params.toArray(), rules::add);
+            } catch (SQLException | RuntimeException e) {
+                shared.compareAndSet(s, null);
+                s.completeExceptionally(e);
+                throw new CasbinAdapterException("加载不按域管理的策略失败", e);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            // 读取期间被失效时丢弃本次结果，下次访问重新加载
+            if (shared.get() == s) {
+                apply(rules);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        s.complete(null);
+        Metrics.time(Metrics.ADAPTER_LOAD, start);
+        Metrics.value(Metrics.ADAPTER_LOAD_ROWS, rules.size());
+        log.debug("casbin ptypes {} loaded {} rules", ptypes, rules.size());
+    }
+
+    /**
+     * 移除不按域管理的 ptype 的全部规则，需持有写锁
+     */
+    private void unloadShared() {
+        if (shared.getAndSet(null) == null) {
+            return;
+        }
+        Model model = enforcer.getModel();
+        for (String ptype : sharedPtypes()) {
+            Assertion ast = assertion(model, ptype);
+            if (ast.policy.isEmpty()) {
+                continue;
+            }
+            List<List<String>> dropped = new ArrayList<>(ast.policy);
+            ast.policy.clear();
+            ast.policyIndex.clear();
+            if (ptype.startsWith("g")) {
+                model.buildIncrementalRoleLinks(enforcer.getRmMap(), Model.PolicyOperations.POLICY_REMOVE, "g", ptype, dropped);
+            }
+        }
+    }
+
+    /**
+     * @return 模型中没有指定域字段的 p、g ptype
+     */
+    private Set<String> sharedPtypes() {
+        Set<String> ptypes = new HashSet<>();
+        Model model = enforcer.getModel();
+        for (String sec : List.of("p", "g")) {
+            Map<String, Assertion> astMap = model.model.get(sec);
+            if (astMap != null) {
+                astMap.keySet().stream().filter(ptype -> !domainFields.containsKey(ptype)).forEach(ptypes::add);
+            }
+        }
+        return ptypes;
+    }
+
+    /**
+     * 加载域并固定，固定期间不会被淘汰，避免并发访问多个域时互相淘汰对方刚加载的域
+     *
+     * @param domain 域
+     * @return 已固定的域，用完后需递减 {@link Domain#pins}
+     */
+    private Domain load(String domain) {
+        Domain d = domains.get(domain);
+        if (d == null) {
+            Domain created = new Domain(domain);
+            created.pins.incrementAndGet();
+            d = domains.putIfAbsent(domain, created);
+            if (d == null) {
+                misses.incrementAndGet();
+                try {
+                    fetch(created);
+                } catch (RuntimeException e) {
+                    created.pins.decrementAndGet();
+                    throw e;
+                }
+                return created;
+            }
+        }
+        d.pins.incrementAndGet();
+        if (d.ready.isDone()) {
+            hits.incrementAndGet();
+        }
+        try {
+            d.ready.join();
+        } catch (CompletionException e) {
+            d.pins.decrementAndGet();
+            throw new CasbinAdapterException("加载域 " + domain + " 的策略失败", e.getCause());
+        }
+        return d;
+    }
+
+    private void fetch(Domain d) {
+        long start = Metrics.start();
+        PolicyFilter filter = new PolicyFilter();
+        domainFields.forEach((ptype, field) -> filter.whereIn(ptype, field, List.of(d.name)));
+        List<Object> params = new ArrayList<>();
+        String condition = filter.toSql(adapter.table, params);
+        List<List<String>> rules = new ArrayList<>();
+        try {
+            adapter.fetchRules(condition, params.toArray(), rules::add);
+        } catch (SQLException | RuntimeException e) {
+            domains.remove(d.name, d);
+            d.ready.completeExceptionally(e);
+            throw new CasbinAdapterException("加载域 " + d.name + " 的策略失败", e);
+        }
+        lock.writeLock().lock();
+        try {
+            // 读取期间被失效的域丢弃本次结果，下次访问重新加载
+            if (domains.get(d.name) == d) {
+                d.bytes = apply(rules);
+                d.applied = true;
+                d.lastAccess = clock.incrementAndGet();
+                usedBytes += d.bytes;
+                loaded++;
+                evict();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        d.ready.complete(null);
+        Metrics.time(Metrics.ADAPTER_LOAD, start);
+        Metrics.value(Metrics.ADAPTER_LOAD_ROWS, rules.size());
+        log.debug("casbin domain {} loaded {} rules, {} domains in memory", d.name, rules.size(), loaded);
+    }
+
+    /**
+     * 把规则加入模型，已存在的规则跳过，g 规则同时增量更新角色关系
+     *
+     * @param rules 规则，第一个元素为 ptype
+     * @return 新加入规则的内存估算
+     */
+    private long apply(List<List<String>> rules) {
+        Model model = enforcer.getModel();
+        Map<String, List<List<String>>> links = new LinkedHashMap<>();
+        long bytes = 0;
+        for (List<String> rule : rules) {
+            String ptype = rule.get(0);
+            Assertion ast = assertion(model, ptype);
+            if (ast == null) {
+                continue;
+            }
+            List<String> policy = new ArrayList<>(rule.subList(1, rule.size()));
+            String key = PolicyLoader.indexKey(policy);
+            if (ast.policyIndex.containsKey(key)) {
+                continue;
+            }
+            ast.policy.add(policy);
+            ast.policyIndex.put(key, ast.policy.size() - 1);
+            bytes += estimateBytes(policy);
+            if (ptype.startsWith("g")) {
+                links.computeIfAbsent(ptype, k -> new ArrayList<>()).add(policy);
+            }
+        }
+        links.forEach((ptype, added) -> model.buildIncrementalRoleLinks(enforcer.getRmMap(), Model.PolicyOperations.POLICY_ADD, "g", ptype, added));
+        return bytes;
+    }
+
+    /**
+     * 超出容量时按最近访问时间淘汰，不淘汰正在使用的域；正在使用的域过多时暂时超出容量
+     */
+    private void evict() {
+        if (usedBytes <= maxBytes && loaded <= maxDomains) {
+            return;
+        }
+        List<Domain> candidates = domains.values().stream()
+            .filter(d -> d.applied && d.pins.get() == 0)
+            .sorted(Comparator.comparingLong(d -> d.lastAccess))
+            .toList();
+        List<Domain> victims = new ArrayList<>();
+        long bytes = usedBytes;
+        int count = loaded;
+        for (Domain d : candidates) {
+            if (bytes <= maxBytes && count <= maxDomains) {
+                break;
+            }
+            victims.add(d);
+            bytes -= d.bytes;
+            count--;
+        }
+        for (Domain d : victims) {
+            domains.remove(d.name, d);
+        }
+        unload(victims);
+        evictions.addAndGet(victims.size());
+    }
+
+    /**
+     * 一次遍历从模型中移除若干域的规则并重建索引，g 规则同时增量更新角色关系
+     */
+    private void unload(Collection<Domain> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        for (Domain d : removed) {
+            names.add(d.name);
+            usedBytes -= d.bytes;
+            loaded--;
+        }
+        Model model = enforcer.getModel();
+        domainFields.forEach((ptype, field) -> {
+            Assertion ast = assertion(model, ptype);
+            if (ast == null) {
+                return;
+            }
+            List<List<String>> policy = ast.policy;
+            int[] moved = new int[policy.size()];
+            List<List<String>> kept = new ArrayList<>(policy.size());
+            List<List<String>> dropped = new ArrayList<>();
+            for (int i = 0; i < policy.size(); i++) {
+                List<String> rule = policy.get(i);
+                if (field < rule.size() && names.contains(rule.get(field))) {
+                    moved[i] = -1;
+                    dropped.add(rule);
+                } else {
+                    moved[i] = kept.size();
+                    kept.add(rule);
+                }
+            }
+            if (dropped.isEmpty()) {
+                return;
+            }
+            policy.clear();
+            policy.addAll(kept);
+            ast.policyIndex.entrySet().removeIf(e -> {
+                int index = e.getValue();
+                if (index < 0 || index >= moved.length || moved[index] < 0) {
+                    return true;
+                }
+                e.setValue(moved[index]);
+                return false;
+            });
+            if (ptype.startsWith("g")) {
+                model.buildIncrementalRoleLinks(enforcer.getRmMap(), Model.PolicyOperations.POLICY_REMOVE, "g", ptype, dropped);
+            }
+        });
+        log.debug("casbin domains {} unloaded", names);
+    }
+
+    private static void collectDomains(List<List<String>> rules, int field, Set<String> domains) {
+        if (rules == null) {
+            return;
+        }
+        for (List<String> rule : rules) {
+            if (field < rule.size()) {
+                domains.add(rule.get(field));
+            }
+        }
+    }
+
+    private static Assertion assertion(Model model, String ptype) {
+        Map<String, Assertion> astMap = model.model.get(ptype.substring(0, 1));
+        return astMap == null ? null : astMap.get(ptype);
+    }
+
+    private static int tokenCount(Model model, String ptype) {
+        Assertion ast = assertion(model, ptype);
+        return ast == null || ast.tokens == null ? 0 : ast.tokens.length;
+    }
+
+    /**
+     * 单条规则的内存估算，字段内容在规则列表与索引 key 中各存一份
+     */
+    static long estimateBytes(List<String> rule) {
+        long bytes = RULE_OVERHEAD_BYTES;
+        for (String value : rule) {
+            bytes += FIELD_OVERHEAD_BYTES + 2L * value.length();
+        }
+        return bytes;
+    }
+
+    private static final class Domain {
+        private final String name;
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        /**
+         * 规则已加入模型，只在写锁下修改
+         */
+        private volatile boolean applied;
+        private volatile long lastAccess;
+        private long bytes;
+        /**
+         * 正在使用该域的调用数，大于 0 时不淘汰
+         */
+        private final AtomicInteger pins = new AtomicInteger();
+
+        private Domain(String name) {
+            this.name = name;
+        }
+    }
+}
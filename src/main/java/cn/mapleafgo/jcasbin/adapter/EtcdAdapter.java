@@ -0,0 +1,461 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.mapleafgo.jcasbin.entity.CasbinRule;
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.DeleteOption;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.OptionsUtil;
+import io.etcd.jetcd.options.PutOption;
+import lombok.Getter;
+import lombok.Setter;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.model.Model;
+import org.casbin.jcasbin.persist.BatchAdapter;
+import org.casbin.jcasbin.persist.FilteredAdapter;
+import org.casbin.jcasbin.persist.UpdatableAdapter;
+import org.casbin.jcasbin.persist.file_adapter.FilteredAdapter.Filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Casbin etcd 适配器，规则保存在 key 前缀下，etcd 作为策略的唯一来源。
+ * <p>
+ * 每条规则一个 key：{@code {prefix}{ptype}/{v0}/{v1}/.../}，字段中的 {@code %} 与 {@code /} 会被转义，value 为空。
+ * 加载时按 key 顺序分页读取（limit 加续读 key），所有分页固定在第一页的 revision 上，避免单个 gRPC 响应过大；
+ * 写入按 {@link #getTxnSize()} 分批合并到 etcd 事务中。带过滤条件加载时，ptype 与前导字段的取值会转换为更窄的 key 前缀。
+ *
+ * @author mapleafgo
+ */
+public class EtcdAdapter implements BatchAdapter, UpdatableAdapter, FilteredAdapter {
+    private static final int IO_TIMEOUT_SECONDS = 5;
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    /**
+     * etcd 默认 --max-txn-ops 为 128
+     */
+    private static final int DEFAULT_TXN_SIZE = 128;
+    /**
+     * 过滤条件展开为 key 前缀的最大数量，超出时不再用后续字段收窄前缀
+     */
+    private static final int MAX_FILTER_PREFIXES = 256;
+
+    private final Client client;
+    /**
+     * key 前缀
+     */
+    @Getter
+    private final String prefix;
+    /**
+     * 加载时每页读取的 key 数
+     */
+    @Getter
+    @Setter
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    /**
+     * 每个 etcd 事务包含的最大操作数，需不超过服务端的 --max-txn-ops
+     */
+    @Getter
+    @Setter
+    private int txnSize = DEFAULT_TXN_SIZE;
+    private boolean isFiltered = false;
+
+    /**
+     * @param client etcd 客户端
+     * @param prefix key 前缀，例如 {@code "/casbin/policy/"}
+     */
+    public EtcdAdapter(Client client, String prefix) {
+        this.client = Objects.requireNonNull(client);
+        this.prefix = Objects.requireNonNull(prefix);
+    }
+
+    @Override
+    public void loadPolicy(Model model) {
+        long start = Metrics.start();
+        try {
+            Metrics.value(Metrics.ADAPTER_LOAD_BYTES, scan(prefix, rule -> HutoolDBAdapter.loadPolicyLine(rule, model)));
+        } catch (Exception e) {
+            throw new CasbinAdapterException("加载 casbin policy 失败", unwrap(e));
+        } finally {
+            PolicyLoader.recordLoad(model, start);
+        }
+        isFiltered = false;
+    }
+
+    @Override
+    public void loadFilteredPolicy(Model model, Object filter) throws CasbinAdapterException {
+        if (filter == null) {
+            loadPolicy(model);
+            return;
+        }
+        PolicyFilter policyFilter;
+        if (filter instanceof PolicyFilter) {
+            policyFilter = (PolicyFilter) filter;
+        } else if (filter instanceof Filter) {
+            policyFilter = PolicyFilter.of((Filter) filter);
+        } else {
+            throw new CasbinAdapterException("Invalid filter type.");
+        }
+        long start = Metrics.start();
+        try {
+            long bytes = 0;
+            for (String ptype : policyFilter.getPtypes()) {
+                for (String keyPrefix : filterPrefixes(ptype, policyFilter.fields(ptype))) {
+                    bytes += scan(keyPrefix, rule -> {
+                        if (policyFilter.match(rule)) {
+                            HutoolDBAdapter.loadPolicyLine(rule, model);
+                        }
+                    });
+                }
+            }
+            Metrics.value(Metrics.ADAPTER_LOAD_BYTES, bytes);
+        } catch (Exception e) {
+            throw new CasbinAdapterException("加载 casbin policy 失败", unwrap(e));
+        } finally {
+            PolicyLoader.recordLoad(model, start);
+        }
+        isFiltered = true;
+    }
+
+    @Override
+    public boolean isFiltered() {
+        return isFiltered;
+    }
+
+    /**
+     * 增量保存：读取前缀下现有的 key 与模型求差集，只写入缺少的 key、删除多余的 key。
+     * 变更数不超过 {@link #getTxnSize()} 时在一个事务中提交；否则先分批写入、再分批删除，
+     * 期间其他节点可能读到新旧规则的并集，中途失败时不会比保存前少规则。读取与提交之间其他节点的写入不会被检测
+     */
+    @Override
+    public void savePolicy(Model model) {
+        if (isFiltered) {
+            throw new CasbinAdapterException("cannot save a filtered policy");
+        }
+        Set<List<String>> rules = CasbinRule.transformToRules(model);
+        Metrics.value(Metrics.ADAPTER_SAVE_ROWS, rules.size());
+        long start = Metrics.start();
+        try {
+            Set<String> missing = new LinkedHashSet<>(rules.size());
+            for (List<String> rule : rules) {
+                missing.add(ruleKey(rule.get(0), rule.subList(1, rule.size())));
+            }
+            List<Op> deletes = new ArrayList<>();
+            scanKeys(prefix, kv -> {
+                if (!missing.remove(kv.getKey().toString(StandardCharsets.UTF_8))) {
+                    deletes.add(Op.delete(kv.getKey(), DeleteOption.DEFAULT));
+                }
+            });
+            List<Op> ops = new ArrayList<>(missing.size() + deletes.size());
+            for (String key : missing) {
+                ops.add(Op.put(bytes(key), ByteSequence.EMPTY, PutOption.DEFAULT));
+            }
+            // 写入在前、删除在后，分批提交时中途失败只会多出旧规则
+            ops.addAll(deletes);
+            commit(ops);
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 保存失败", unwrap(e));
+        } finally {
+            Metrics.time(Metrics.ADAPTER_SAVE, start);
+        }
+    }
+
+    @Override
+    public void addPolicy(String sec, String ptype, List<String> rule) {
+        addPolicies(sec, ptype, Collections.singletonList(rule));
+    }
+
+    @Override
+    public void removePolicy(String sec, String ptype, List<String> rule) {
+        removePolicies(sec, ptype, Collections.singletonList(rule));
+    }
+
+    /**
+     * 批量新增，重复的规则只写一次。超过 {@link #getTxnSize()} 的批次拆成多个事务依次提交，整体不是原子的，中途失败时已提交的部分会保留
+     */
+    @Override
+    public void addPolicies(String sec, String ptype, List<List<String>> rules) {
+        if (CollUtil.isEmpty(rules)) {
+            return;
+        }
+        Metrics.value(Metrics.ADAPTER_BATCH_SIZE, rules.size());
+        long start = Metrics.start();
+        try {
+            commit(ops(ptype, rules, true));
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 批量新增失败", unwrap(e));
+        } finally {
+            Metrics.time(Metrics.ADAPTER_ADD, start);
+        }
+    }
+
+    /**
+     * 批量移除，重复的规则只删除一次。超过 {@link #getTxnSize()} 的批次拆成多个事务依次提交，整体不是原子的，中途失败时已提交的部分会保留
+     */
+    @Override
+    public void removePolicies(String sec, String ptype, List<List<String>> rules) {
+        if (CollUtil.isEmpty(rules)) {
+            return;
+        }
+        Metrics.value(Metrics.ADAPTER_BATCH_SIZE, rules.size());
+        long start = Metrics.start();
+        try {
+            commit(ops(ptype, rules, false));
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 批量移除失败", unwrap(e));
+        } finally {
+            Metrics.time(Metrics.ADAPTER_REMOVE, start);
+        }
+    }
+
+    @Override
+    public void updatePolicy(String sec, String ptype, List<String> oldRule, List<String> newPolicy) {
+        String oldKey = ruleKey(ptype, oldRule);
+        String newKey = ruleKey(ptype, newPolicy);
+        if (oldKey.equals(newKey)) {
+            // etcd 拒绝同一个 key 在一个事务中出现两次，规则未变化时无需写入
+            return;
+        }
+        long start = Metrics.start();
+        try {
+            // 两个操作放在同一个事务中
+            commit(List.of(
+                Op.delete(bytes(oldKey), DeleteOption.DEFAULT),
+                Op.put(bytes(newKey), ByteSequence.EMPTY, PutOption.DEFAULT)));
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 变更失败", unwrap(e));
+        } finally {
+            Metrics.time(Metrics.ADAPTER_UPDATE, start);
+        }
+    }
+
+    /**
+     * 匹配的 key 超过 {@link #getTxnSize()} 时拆成多个事务依次删除，整体不是原子的
+     */
+    @Override
+    public void removeFilteredPolicy(String sec, String ptype, int fieldIndex, String... fieldValues) {
+        // 从 v0 开始连续指定的字段可以直接收窄为 key 前缀，其余字段在客户端匹配
+        StringBuilder sb = new StringBuilder(prefix).append(escape(ptype)).append('/');
+        int exact = 0;
+        if (fieldIndex == 0) {
+            while (exact < fieldValues.length && !fieldValues[exact].isEmpty()) {
+                sb.append(escape(fieldValues[exact++])).append('/');
+            }
+        }
+        String keyPrefix = sb.toString();
+        long start = Metrics.start();
+        try {
+            if (exact == fieldValues.length) {
+                await(client.getKVClient().delete(bytes(keyPrefix), DeleteOption.builder().isPrefix(true).build()));
+                return;
+            }
+            List<Op> ops = new ArrayList<>();
+            scanKeys(keyPrefix, kv -> {
+                List<String> rule = parseKey(kv.getKey().toString(StandardCharsets.UTF_8));
+                if (rule != null && matches(rule, fieldIndex, fieldValues)) {
+                    ops.add(Op.delete(kv.getKey(), DeleteOption.DEFAULT));
+                }
+            });
+            commit(ops);
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 按条件移除失败", unwrap(e));
+        } finally {
+            Metrics.time(Metrics.ADAPTER_REMOVE_FILTERED, start);
+        }
+    }
+
+    /**
+     * 生成规则对应的 key
+     *
+     * @param ptype 策略类型
+     * @param rule  策略规则，不含 ptype
+     * @return key
+     */
+    public String ruleKey(String ptype, List<String> rule) {
+        StringBuilder sb = new StringBuilder(prefix).append(escape(ptype)).append('/');
+        for (String value : rule) {
+            sb.append(escape(value)).append('/');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解析 key 为列表形式规则
+     *
+     * @param key 由 {@link #ruleKey} 生成的 key
+     * @return 列表形式规则，第一个元素为 ptype；不是规则 key 时返回 null
+     */
+    List<String> parseKey(String key) {
+        if (!key.startsWith(prefix) || !key.endsWith("/")) {
+            return null;
+        }
+        List<String> rule = new ArrayList<>();
+        int start = prefix.length();
+        for (int i = start; i < key.length(); i++) {
+            if (key.charAt(i) == '/') {
+                rule.add(unescape(key.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        return rule.isEmpty() ? null : rule;
+    }
+
+    /**
+     * 按过滤条件生成需要扫描的 key 前缀：从 v0 开始，每个非通配字段的取值做笛卡尔积，遇到通配字段或数量超限时停止
+     */
+    private List<String> filterPrefixes(String ptype, List<Set<String>> fields) {
+        List<String> prefixes = new ArrayList<>();
+        prefixes.add(prefix + escape(ptype) + "/");
+        for (Set<String> values : fields) {
+            if (PolicyFilter.isWildcard(values) || prefixes.size() * values.size() > MAX_FILTER_PREFIXES) {
+                break;
+            }
+            List<String> next = new ArrayList<>(prefixes.size() * values.size());
+            for (String p : prefixes) {
+                for (String value : values) {
+                    next.add(p + escape(value) + "/");
+                }
+            }
+            prefixes = next;
+        }
+        return prefixes;
+    }
+
+    /**
+     * 分页读取 keyPrefix 下的所有规则
+     *
+     * @return 读取的 key 字节数
+     */
+    private long scan(String keyPrefix, Consumer<List<String>> consumer) throws Exception {
+        return scanKeys(keyPrefix, kv -> {
+            List<String> rule = parseKey(kv.getKey().toString(StandardCharsets.UTF_8));
+            if (rule != null) {
+                consumer.accept(rule);
+            }
+        });
+    }
+
+    /**
+     * 按 key 顺序分页读取 keyPrefix 下的 key，续读从上一页最后一个 key 之后开始，所有分页读取同一个 revision
+     *
+     * @return 读取的 key 字节数
+     */
+    private long scanKeys(String keyPrefix, Consumer<KeyValue> consumer) throws Exception {
+        KV kv = client.getKVClient();
+        ByteSequence start = bytes(keyPrefix);
+        ByteSequence end = OptionsUtil.prefixEndOf(start);
+        long revision = 0;
+        long bytes = 0;
+        while (true) {
+            GetOption.Builder option = GetOption.builder()
+                .withRange(end)
+                .withLimit(pageSize)
+                .withKeysOnly(true)
+                .withSortField(GetOption.SortTarget.KEY)
+                .withSortOrder(GetOption.SortOrder.ASCEND);
+            if (revision > 0) {
+                option.withRevision(revision);
+            }
+            GetResponse resp = await(kv.get(start, option.build()));
+            if (revision == 0) {
+                revision = resp.getHeader().getRevision();
+            }
+            List<KeyValue> kvs = resp.getKvs();
+            for (KeyValue item : kvs) {
+                bytes += item.getKey().size();
+                consumer.accept(item);
+            }
+            if (!resp.isMore() || kvs.isEmpty()) {
+                return bytes;
+            }
+            // 紧跟在最后一个 key 之后的最小 key
+            start = kvs.get(kvs.size() - 1).getKey().concat(ByteSequence.from(new byte[]{0}));
+        }
+    }
+
+    private List<Op> ops(String ptype, Collection<List<String>> rules, boolean put) {
+        // etcd 拒绝同一个 key 在一个事务中出现两次，先去重
+        Set<String> keys = new LinkedHashSet<>();
+        for (List<String> rule : rules) {
+            if (CollUtil.isNotEmpty(rule)) {
+                keys.add(ruleKey(ptype, rule));
+            }
+        }
+        List<Op> ops = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            ops.add(put ? Op.put(bytes(key), ByteSequence.EMPTY, PutOption.DEFAULT) : Op.delete(bytes(key), DeleteOption.DEFAULT));
+        }
+        return ops;
+    }
+
+    /**
+     * 每 txnSize 个操作提交一个事务，事务之间不是原子的
+     */
+    private void commit(List<Op> ops) throws Exception {
+        for (int i = 0; i < ops.size(); i += txnSize) {
+            List<Op> batch = ops.subList(i, Math.min(i + txnSize, ops.size()));
+            await(client.getKVClient().txn().Then(batch.toArray(new Op[0])).commit());
+        }
+    }
+
+    private static boolean matches(List<String> rule, int fieldIndex, String[] fieldValues) {
+        for (int i = 0; i < fieldValues.length; i++) {
+            if (fieldValues[i].isEmpty()) {
+                continue;
+            }
+            int pos = fieldIndex + i + 1;
+            if (rule.size() <= pos || !fieldValues[i].equals(rule.get(pos))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static Throwable unwrap(Exception e) {
+        if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+        }
+        if (e instanceof ExecutionException && e.getCause() != null) {
+            return e.getCause();
+        }
+        return e;
+    }
+
+    private static ByteSequence bytes(String s) {
+        return ByteSequence.from(s, StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('%') < 0 && value.indexOf('/') < 0) {
+            return value;
+        }
+        return value.replace("%", "%25").replace("/", "%2F");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        return value.replace("%2F", "/").replace("%25", "%");
+    }
+}
@@ -1,14 +1,20 @@
 package cn.mapleafgo.jcasbin.adapter;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.db.AbstractDb;
-import cn.hutool.db.Entity;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import cn.mapleafgo.jcasbin.db.ChangeLog;
 import cn.mapleafgo.jcasbin.db.LeafDb;
+import cn.mapleafgo.jcasbin.db.SchemaManager;
 import cn.mapleafgo.jcasbin.entity.CasbinRule;
+import cn.mapleafgo.jcasbin.entity.PolicyChange;
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.casbin.jcasbin.exception.CasbinAdapterException;
 import org.casbin.jcasbin.model.Assertion;
 import org.casbin.jcasbin.model.Model;
@@ -17,22 +23,132 @@ import org.casbin.jcasbin.persist.BatchAdapter;
 import org.casbin.jcasbin.persist.UpdatableAdapter;
 
 import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Casbin HutoolDB 适配器
+ * <p>
+ * 开启变更日志后可通过 {@link #setReadDataSources} 配置只读副本，加载策略时优先从副本读取，写入始终使用主库，
+ * 副本的版本行落后于本实例已写入的版本或落后主库超过 {@link #setMaxReplicaLag} 时改用主库。
  *
  * @author 慕枫
  */
+@Slf4j
 public class HutoolDBAdapter implements Adapter, BatchAdapter, UpdatableAdapter {
     private final static String REGEX_TABLE_NAME = "[A-Za-z0-9_]+";
+    private final static int DEFAULT_FETCH_SIZE = 1000;
+    private final static int DEFAULT_BATCH_SIZE = 500;
+    /**
+     * 并行加载时每个连接分到的主键区间数，区间多于连接数以平衡主键分布不均
+     */
+    private final static int RANGES_PER_CONNECTION = 4;
     protected final DataSource dataSource;
     protected final String tableName;
+    protected final CasbinTable table;
+    /**
+     * 幂等插入语句，为 null 时新增规则先删除再插入
+     */
+    private final String upsertSql;
+    private final String truncateSql;
+    /**
+     * 策略变更日志，未开启时为 null
+     */
+    @Getter
+    private final ChangeLog changeLog;
+    /**
+     * 加载策略时每批从数据库拉取的行数
+     */
+    @Getter
+    @Setter
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    /**
+     * 批量写入时每批提交的规则数
+     */
+    @Getter
+    @Setter
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    /**
+     * 是否增量保存：只删除表中多余的规则、插入缺少的规则，而不是清空后全量写入
+     */
+    @Getter
+    @Setter
+    private boolean incrementalSave = false;
+    /**
+     * 是否以紧凑方式加载：先按 ptype 统计行数预分配模型容量，并对重复的字段值去重，见 {@link PolicyLoader}
+     */
+    @Getter
+    @Setter
+    private boolean compactLoad = false;
+    /**
+     * 紧凑加载时字段值字典的容量上限
+     */
+    @Getter
+    @Setter
+    private int dictionarySize = PolicyLoader.DEFAULT_DICTIONARY_SIZE;
+    /**
+     * 全量加载使用的连接数，大于 1 时按主键区间拆分，在多个连接上并发读取，再按区间顺序合并。
+     * 各区间在各自的事务中读取，结果不是同一时刻的快照，见 {@link #fetchRules(DataSource, Consumer)}
+     */
+    @Getter
+    @Setter
+    private int loadParallelism = 1;
+    /**
+     * 使用只读副本时允许副本落后主库的版本数，默认 0，即副本必须已追上主库；
+     * 小于 0 时不读取主库版本，只保证不早于本实例已写入的版本
+     */
+    @Getter
+    @Setter
+    private volatile long maxReplicaLag = 0;
+    private volatile List<DataSource> readDataSources = List.of();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final AtomicLong replicaLoads = new AtomicLong();
+    private final AtomicLong primaryFallbacks = new AtomicLong();
 
     public HutoolDBAdapter(DataSource dataSource, String tableName) throws SQLException {
+        this(dataSource, new CasbinTable(tableName));
+    }
+
+    /**
+     * @param dataSource 数据源
+     * @param table      策略表结构，例如 {@code new CasbinTable("casbin_rule", true)} 开启规则摘要去重；
+     *                   表已存在时会按 table 的描述就地迁移，见 {@link SchemaManager}
+     * @throws SQLException 数据库操作异常
+     */
+    public HutoolDBAdapter(DataSource dataSource, CasbinTable table) throws SQLException {
+        this(dataSource, table, false);
+    }
+
+    /**
+     * @param dataSource 数据源
+     * @param table      策略表结构
+     * @param changeLog  是否开启变更日志：每次策略变更在同一事务中追加到 {@code {table}_changelog}，
+     *                   其他实例可通过 {@link PolicyReplayer} 只回放增量而不必全量重新加载
+     * @throws SQLException 数据库操作异常
+     */
+    public HutoolDBAdapter(DataSource dataSource, CasbinTable table, boolean changeLog) throws SQLException {
+        String tableName = table.getName();
         if (StrUtil.isBlank(tableName)) {
             throw new CasbinAdapterException("表名不能为空");
         }
@@ -42,26 +158,58 @@ public class HutoolDBAdapter implements Adapter, BatchAdapter, UpdatableAdapter
         }
         this.dataSource = dataSource;
         this.tableName = tableName;
+        this.table = table;
+        this.changeLog = changeLog ? new ChangeLog(dataSource, table) : null;
 
-        String initTable = """
-            CREATE TABLE IF NOT EXISTS %s (
-                id    bigint NOT NULL PRIMARY KEY,
-                ptype varchar(10) NOT NULL,
-                v0    varchar(100) DEFAULT NULL,
-                v1    varchar(100) DEFAULT NULL,
-                v2    varchar(100) DEFAULT NULL,
-                v3    varchar(100) DEFAULT NULL,
-                v4    varchar(100) DEFAULT NULL
-            )
-            """;
         // 使用 SpringDbHelper 来保证在 Spring 事务中复用 Spring 管理的 Connection
         try {
-            LeafDb.use(dataSource).execute(String.format(initTable, tableName));
+            SchemaManager schema = new SchemaManager(dataSource, table);
+            this.upsertSql = table.upsertSql(schema.getDialectName());
+            this.truncateSql = table.truncateSql(schema.getDialectName());
+            schema.init();
+            if (this.changeLog != null) {
+                schema.initChangeLog(this.changeLog);
+            }
         } catch (SQLException e) {
             throw new CasbinAdapterException("初始化 casbin 表失败", e);
         }
     }
 
+    /**
+     * 设置加载策略使用的只读副本，多个副本轮流使用
+     *
+     * @param dataSources 只读副本的数据源，为空时全部从主库读取
+     */
+    public void setReadDataSources(DataSource... dataSources) {
+        if (dataSources.length > 0 && changeLog == null) {
+            throw new CasbinAdapterException("使用只读副本需要开启变更日志");
+        }
+        this.readDataSources = List.of(dataSources);
+    }
+
+    /**
+     * @return 只读副本的数据源
+     */
+    public List<DataSource> getReadDataSources() {
+        return readDataSources;
+    }
+
+    /**
+     * @return 从只读副本加载的次数
+     */
+    public long getReplicaLoads() {
+        return replicaLoads.get();
+    }
+
+    /**
+     * 配置了只读副本但因副本落后或不可用而改用主库加载的次数
+     *
+     * @return 次数
+     */
+    public long getPrimaryFallbacks() {
+        return primaryFallbacks.get();
+    }
+
     public static void loadPolicyLine(List<String> rule, Model model) {
         String key = rule.get(0);
         String sec = key.substring(0, 1);
@@ -75,71 +223,296 @@ public class HutoolDBAdapter implements Adapter, BatchAdapter, UpdatableAdapter
         }
         List<String> policy = ListUtil.sub(rule, 1, rule.size());
         ast.policy.add(policy);
-        ast.policyIndex.put(policy.toString(), ast.policy.size() - 1);
+        ast.policyIndex.put(PolicyLoader.indexKey(policy), ast.policy.size() - 1);
     }
 
     @Override
     public void loadPolicy(Model model) {
+        long start = Metrics.start();
         try {
-            List<CasbinRule> rules = LeafDb.use(dataSource).findAll(Entity.create(tableName), CasbinRule.class);
-            for (CasbinRule rule : rules) {
-                List<String> policy = rule.getRule();
-                if (policy.isEmpty()) {
-                    continue;
-                }
-                HutoolDBAdapter.loadPolicyLine(policy, model);
-            }
+            DataSource source = readDataSource();
+            fetchRules(source, modelLoader(model, compactLoad ? countRules(source) : null));
         } catch (SQLException e) {
             throw new CasbinAdapterException("加载 casbin policy 失败", e);
+        } finally {
+            PolicyLoader.recordLoad(model, start);
+        }
+    }
+
+    /**
+     * 按 {@link #isCompactLoad()} 选择把规则填充到模型的方式
+     *
+     * @param model     模型
+     * @param rowCounts 各 ptype 的规则数，为 null 时不预分配
+     * @return 规则消费者，规则第一个元素为 ptype
+     */
+    protected Consumer<List<String>> modelLoader(Model model, Map<String, Long> rowCounts) {
+        if (compactLoad) {
+            return new PolicyLoader(model, rowCounts, dictionarySize);
+        }
+        return rule -> loadPolicyLine(rule, model);
+    }
+
+    /**
+     * 选择本次加载使用的数据源：从轮到的副本开始依次检查版本行，版本不低于本实例最后写入的版本、
+     * 且落后主库不超过 maxReplicaLag 时使用该副本，否则使用主库。
+     * 副本只会前进，检查通过后读取到的数据不会早于检查时的版本
+     *
+     * @return 数据源，未配置副本时为主库
+     */
+    protected DataSource readDataSource() {
+        List<DataSource> replicas = readDataSources;
+        if (replicas.isEmpty()) {
+            return dataSource;
+        }
+        long fence = changeLog.getLastAppendedVersion();
+        if (maxReplicaLag >= 0) {
+            try {
+                long primary = changeLog.currentVersion();
+                // 本实例写入后回滚时已分配的版本号会被复用，不超过主库的版本
+                fence = Math.max(Math.min(fence, primary), primary - maxReplicaLag);
+            } catch (SQLException e) {
+                log.warn("failed to read primary version, loading from primary", e);
+                primaryFallbacks.incrementAndGet();
+                return dataSource;
+            }
+        }
+        int first = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            DataSource replica = replicas.get((first + i) % replicas.size());
+            try {
+                long version = changeLog.currentVersion(replica);
+                if (version >= fence) {
+                    replicaLoads.incrementAndGet();
+                    return replica;
+                }
+                log.debug("replica {} is at version {}, behind fence {}", (first + i) % replicas.size(), version, fence);
+            } catch (SQLException e) {
+                log.warn("failed to read version from replica {}", (first + i) % replicas.size(), e);
+            }
+        }
+        primaryFallbacks.incrementAndGet();
+        return dataSource;
+    }
+
+    /**
+     * 按 ptype 统计规则数
+     *
+     * @param source 数据源
+     * @return ptype 到规则数的映射
+     * @throws SQLException 数据库操作异常
+     */
+    protected Map<String, Long> countRules(DataSource source) throws SQLException {
+        Map<String, Long> counts = new HashMap<>();
+        LeafDb.use(source).fetch(table.countByPtypeSql(), fetchSize, rs -> {
+            String ptype = rs.getString(1);
+            if (ptype != null) {
+                counts.put(ptype, rs.getLong(2));
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * 以游标方式逐行读取策略表，每读到一行就转换为规则交给 consumer，不会一次性加载整表；配置了只读副本时按 {@link #readDataSource()} 选择数据源
+     *
+     * @param consumer 规则消费者，规则第一个元素为 ptype
+     * @throws SQLException 数据库操作异常
+     */
+    protected void fetchRules(Consumer<List<String>> consumer) throws SQLException {
+        fetchRules(readDataSource(), consumer);
+    }
+
+    /**
+     * 以游标方式从指定数据源逐行读取策略表
+     *
+     * @param source   数据源
+     * @param consumer 规则消费者，规则第一个元素为 ptype
+     * @throws SQLException 数据库操作异常
+     */
+    protected void fetchRules(DataSource source, Consumer<List<String>> consumer) throws SQLException {
+        if (loadParallelism > 1) {
+            fetchRulesParallel(source, consumer);
+            return;
+        }
+        fetchRules(source, null, new Object[0], consumer);
+    }
+
+    /**
+     * 把主键范围等分为若干区间，在 loadParallelism 个连接上并发读取。
+     * 各区间内按主键排序，consumer 只在调用线程上按区间顺序执行，因此加载顺序是确定的，consumer 也无需线程安全。
+     * 同时最多有 loadParallelism + 1 个区间在读取或等待合并，每合并一个区间才提交下一个，内存占用不随表的大小增长。
+     * <p>
+     * 各区间在各自的事务中读取，结果不是同一时刻的一致快照：加载期间的并发更新（例如删除后以新主键重新插入）
+     * 可能被漏掉或读到两次。需要一致快照时请保持 loadParallelism 为 1；开启变更日志时可配合 {@link PolicyReplayer}，
+     * 它在加载前记录版本号，之后的同步会重新应用加载期间提交的变更
+     *
+     * @param source   数据源
+     * @param consumer 规则消费者，规则第一个元素为 ptype
+     * @throws SQLException 数据库操作异常
+     */
+    private void fetchRulesParallel(DataSource source, Consumer<List<String>> consumer) throws SQLException {
+        long[] range = LeafDb.withConnection(LeafDb.use(source), conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(table.idRangeSql());
+                 ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getObject(1) == null) {
+                    return null;
+                }
+                return new long[]{rs.getLong(1), rs.getLong(2)};
+            }
+        });
+        if (range == null) {
+            return;
+        }
+        int ranges = loadParallelism * RANGES_PER_CONNECTION;
+        long step = Math.max(1, (range[1] - range[0]) / ranges + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(loadParallelism, r -> {
+            Thread t = new Thread(r, "casbin-policy-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Deque<Future<List<List<String>>>> inFlight = new ArrayDeque<>(loadParallelism + 1);
+            long next = range[0];
+            boolean more = true;
+            while (more || !inFlight.isEmpty()) {
+                // 只比连接数多预取一个区间，区间读取快于合并时不会把整张表堆在内存中
+                while (more && inFlight.size() <= loadParallelism) {
+                    long from = next;
+                    long to = Math.min(range[1], next + step - 1);
+                    inFlight.add(executor.submit(() -> fetchRange(source, from, to)));
+                    more = to < range[1];
+                    next = to + 1;
+                }
+                inFlight.poll().get().forEach(consumer);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("加载 casbin policy 被中断", e);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    private List<List<String>> fetchRange(DataSource source, long from, long to) throws SQLException {
+        List<List<String>> rules = new ArrayList<>();
+        LeafDb.use(source).fetch(table.selectRangeSql(), fetchSize, rs -> {
+            List<String> rule = table.readRule(rs, 1);
+            if (!rule.isEmpty()) {
+                rules.add(rule);
+            }
+        }, from, to);
+        return rules;
+    }
+
+    /**
+     * 以游标方式逐行读取满足条件的策略；配置了只读副本时按 {@link #readDataSource()} 选择数据源
+     *
+     * @param condition WHERE 条件，为 null 时读取全表
+     * @param params    条件参数
+     * @param consumer  规则消费者，规则第一个元素为 ptype
+     * @throws SQLException 数据库操作异常
+     */
+    protected void fetchRules(String condition, Object[] params, Consumer<List<String>> consumer) throws SQLException {
+        fetchRules(readDataSource(), condition, params, consumer);
+    }
+
+    /**
+     * 以游标方式从指定数据源逐行读取满足条件的策略
+     *
+     * @param source    数据源
+     * @param condition WHERE 条件，为 null 时读取全表
+     * @param params    条件参数
+     * @param consumer  规则消费者，规则第一个元素为 ptype
+     * @throws SQLException 数据库操作异常
+     */
+    protected void fetchRules(DataSource source, String condition, Object[] params, Consumer<List<String>> consumer) throws SQLException {
+        LeafDb.use(source).fetch(table.selectSql(condition), fetchSize, rs -> {
+            List<String> rule = table.readRule(rs, 1);
+            if (!rule.isEmpty()) {
+                consumer.accept(rule);
+            }
+        }, params);
+    }
+
     @Override
     public void savePolicy(Model model) {
-        List<CasbinRule> casbinRules = CasbinRule.transformToCasbinRule(model);
-        if (casbinRules.isEmpty()) {
+        Set<List<String>> rules = CasbinRule.transformToRules(model);
+        if (rules.isEmpty()) {
             return;
         }
+        Metrics.value(Metrics.ADAPTER_SAVE_ROWS, rules.size());
 
-        List<Entity> list = casbinRules.stream().peek(r -> r.setId(IdUtil.getSnowflakeNextId())).map(r -> Entity.create(tableName).parseBean(r)).toList();
+        long start = Metrics.start();
         try {
             LeafDb.use(dataSource).tx(db -> {
-                // 表名已校验为安全格式，可以直接拼接
-                db.execute(String.format("TRUNCATE %s", tableName));
-                db.insert(list);
+                if (incrementalSave) {
+                    saveIncremental(db, rules);
+                } else {
+                    db.execute(truncateSql);
+                    insertRules(db, table.insertSql(), rules);
+                }
+                appendChanges(db, PolicyChange.Operation.SAVE, null, List.of());
             });
         } catch (SQLException e) {
             throw new CasbinAdapterException("casbin policy 保存失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_SAVE, start);
         }
     }
 
     @Override
     public void addPolicy(String sec, String ptype, List<String> rule) {
+        long start = Metrics.start();
         try {
-            LeafDb.use(dataSource).tx(db -> addPolicy(db, ptype, rule));
+            LeafDb.use(dataSource).tx(db -> {
+                addPolicy(db, ptype, rule);
+                appendChanges(db, PolicyChange.Operation.ADD, ptype, Collections.singletonList(rule));
+            });
         } catch (SQLException e) {
             throw new CasbinAdapterException("casbin policy 新增失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_ADD, start);
         }
     }
 
     @Override
     public void removePolicy(String sec, String ptype, List<String> rule) {
+        long start = Metrics.start();
         try {
-            LeafDb.use(dataSource).tx(db -> removePolicy(db, ptype, rule));
+            LeafDb.use(dataSource).tx(db -> {
+                removePolicy(db, ptype, rule);
+                appendChanges(db, PolicyChange.Operation.REMOVE, ptype, Collections.singletonList(rule));
+            });
         } catch (SQLException e) {
             throw new CasbinAdapterException("casbin policy 移除失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_REMOVE, start);
         }
     }
 
     @Override
     public void removeFilteredPolicy(String sec, String ptype, int fieldIndex, String... fieldValues) {
-        Entity entity = Entity.create(tableName);
-        entity.putAll(Objects.requireNonNull(CasbinRule.toRuleMap(ptype, fieldIndex, fieldValues)));
+        List<Object> params = new ArrayList<>();
+        String sql = table.deleteFilteredSql(ptype, fieldIndex, fieldValues, params);
 
+        long start = Metrics.start();
         try {
-            LeafDb.use(dataSource).tx(db -> db.del(entity));
+            LeafDb.use(dataSource).tx(db -> {
+                db.execute(sql, params.toArray());
+                if (changeLog != null) {
+                    changeLog.append(db, List.of(new PolicyChange(PolicyChange.Operation.REMOVE_FILTERED, ptype, fieldIndex, filterValues(fieldValues))));
+                }
+            });
         } catch (SQLException e) {
             throw new CasbinAdapterException("casbin policy 按条件移除失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_REMOVE_FILTERED, start);
         }
     }
 
@@ -148,14 +521,17 @@ public class HutoolDBAdapter implements Adapter, BatchAdapter, UpdatableAdapter
         if (CollUtil.isEmpty(rules)) {
             return;
         }
+        Metrics.value(Metrics.ADAPTER_BATCH_SIZE, rules.size());
+        long start = Metrics.start();
         try {
             LeafDb.use(dataSource).tx(db -> {
-                for (List<String> rule : rules) {
-                    addPolicy(db, ptype, rule);
-                }
+                addRules(db, ptype, rules);
+                appendChanges(db, PolicyChange.Operation.ADD, ptype, rules);
             });
         } catch (SQLException e) {
             throw new CasbinAdapterException("casbin policy 批量新增失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_ADD, start);
         }
     }
 
@@ -164,27 +540,90 @@ public class HutoolDBAdapter implements Adapter, BatchAdapter, UpdatableAdapter
         if (CollUtil.isEmpty(rules)) {
             return;
         }
+        Metrics.value(Metrics.ADAPTER_BATCH_SIZE, rules.size());
+        long start = Metrics.start();
         try {
             LeafDb.use(dataSource).tx(db -> {
-                for (List<String> rule : rules) {
-                    removePolicy(db, ptype, rule);
-                }
+                removeRules(db, ptype, rules);
+                appendChanges(db, PolicyChange.Operation.REMOVE, ptype, rules);
             });
         } catch (SQLException e) {
             throw new CasbinAdapterException("casbin policy 批量移除失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_REMOVE, start);
         }
     }
 
     @Override
     public void updatePolicy(String sec, String ptype, List<String> oldRule, List<String> newPolicy) {
+        long start = Metrics.start();
         try {
             LeafDb.use(dataSource).tx(db -> {
                 removePolicy(db, ptype, oldRule);
                 addPolicy(db, ptype, newPolicy);
+                if (changeLog != null) {
+                    changeLog.append(db, List.of(
+                        new PolicyChange(PolicyChange.Operation.REMOVE, ptype, 0, oldRule),
+                        new PolicyChange(PolicyChange.Operation.ADD, ptype, 0, newPolicy)));
+                }
             });
         } catch (SQLException e) {
             throw new CasbinAdapterException("casbin policy 变更失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_UPDATE, start);
+        }
+    }
+
+    /**
+     * 在一个事务中按顺序提交多个 ptype 的增删，供 {@link WriteBehindAdapter} 合并提交。
+     * 连续的同类变更按 ptype 合并成批处理；非哈希模式下删除按字段前缀匹配，增删的先后会影响结果，因此不会跨越另一类变更重排
+     *
+     * @param changes 按提交顺序排列的 {@link PolicyChange.Operation#ADD} 与 {@link PolicyChange.Operation#REMOVE} 变更
+     */
+    public void commitChanges(List<PolicyChange> changes) {
+        long start = Metrics.start();
+        Metrics.value(Metrics.ADAPTER_BATCH_SIZE, changes.size());
+        try {
+            LeafDb.use(dataSource).tx(db -> {
+                Map<String, List<List<String>>> run = new LinkedHashMap<>();
+                PolicyChange.Operation operation = null;
+                for (PolicyChange change : changes) {
+                    if (change.getOperation() != PolicyChange.Operation.ADD && change.getOperation() != PolicyChange.Operation.REMOVE) {
+                        throw new CasbinAdapterException("不支持合并提交的变更：" + change.getOperation());
+                    }
+                    if (change.getOperation() != operation) {
+                        commitRun(db, operation, run);
+                        operation = change.getOperation();
+                    }
+                    run.computeIfAbsent(change.getPtype(), k -> new ArrayList<>()).add(change.getValues());
+                }
+                commitRun(db, operation, run);
+            });
+        } catch (SQLException e) {
+            throw new CasbinAdapterException("casbin policy 批量提交失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_COMMIT, start);
+        }
+    }
+
+    /**
+     * 提交一段连续的同类变更并清空
+     *
+     * @param s         数据库会话
+     * @param operation 变更类型，null 表示没有变更
+     * @param run       ptype 到规则的映射，规则不含 ptype
+     * @throws SQLException 数据库操作异常
+     */
+    private void commitRun(AbstractDb s, PolicyChange.Operation operation, Map<String, List<List<String>>> run) throws SQLException {
+        for (Map.Entry<String, List<List<String>>> e : run.entrySet()) {
+            if (operation == PolicyChange.Operation.ADD) {
+                addRules(s, e.getKey(), e.getValue());
+            } else {
+                removeRules(s, e.getKey(), e.getValue());
+            }
+            appendChanges(s, operation, e.getKey(), e.getValue());
         }
+        run.clear();
     }
 
     /**
@@ -196,39 +635,192 @@ public class HutoolDBAdapter implements Adapter, BatchAdapter, UpdatableAdapter
      * @throws SQLException 数据库操作异常
      */
     private void addPolicy(AbstractDb s, String ptype, List<String> rule) throws SQLException {
-        if (CollUtil.isEmpty(rule)) {
+        addRules(s, ptype, Collections.singletonList(rule));
+    }
+
+    /**
+     * 从数据库中移除策略
+     *
+     * @param s     数据库会话
+     * @param ptype 策略类型
+     * @param rule  策略规则
+     * @throws SQLException 数据库操作异常
+     */
+    private void removePolicy(AbstractDb s, String ptype, List<String> rule) throws SQLException {
+        removeRules(s, ptype, Collections.singletonList(rule));
+    }
+
+    /**
+     * 批量添加策略，已存在的规则不会重复写入
+     *
+     * @param s     数据库会话
+     * @param ptype 策略类型
+     * @param rules 策略规则
+     * @throws SQLException 数据库操作异常
+     */
+    private void addRules(AbstractDb s, String ptype, Collection<List<String>> rules) throws SQLException {
+        // 同一批次中的重复规则只插入一次
+        Set<List<String>> uniqueRules = new LinkedHashSet<>();
+        for (List<String> rule : rules) {
+            if (CollUtil.isNotEmpty(rule)) {
+                uniqueRules.add(rule);
+            }
+        }
+        if (uniqueRules.isEmpty()) {
             return;
         }
+        List<List<String>> validRules = uniqueRules.stream().map(rule -> withPtype(ptype, rule)).toList();
+        if (upsertSql != null) {
+            insertRules(s, upsertSql, validRules);
+            return;
+        }
+        removeRules(s, ptype, uniqueRules);
+        insertRules(s, table.insertSql(), validRules);
+    }
 
-        removePolicy(s, ptype, rule);
+    /**
+     * 增量保存：流式读取表中现有规则与目标规则求差集，只删除多余的行、插入缺少的规则
+     *
+     * @param s     数据库会话
+     * @param rules 目标规则，第一个元素为 ptype；执行后只剩需要插入的规则
+     * @throws SQLException 数据库操作异常
+     */
+    private void saveIncremental(AbstractDb s, Set<List<String>> rules) throws SQLException {
+        // 超出列数的字段不会落库，先截断以便与读回的规则比较
+        Set<List<String>> pending = new HashSet<>(rules.size() * 4 / 3 + 1);
+        for (List<String> rule : rules) {
+            pending.add(rule.size() > table.getFieldCount() + 1 ? rule.subList(0, table.getFieldCount() + 1) : rule);
+        }
+        List<Long> staleIds = new ArrayList<>();
+        LeafDb.fetch(s, table.selectWithIdSql(), fetchSize, rs -> {
+            // 重复行在第二次出现时已不在 pending 中，同样会被删除
+            if (!pending.remove(table.readRule(rs, 2))) {
+                staleIds.add(rs.getLong(1));
+            }
+        });
+        executeBatch(s, table.deleteByIdSql(), staleIds, (ps, id) -> ps.setLong(1, id));
+        insertRules(s, table.insertSql(), pending);
+    }
 
-        CasbinRule cRule = new CasbinRule();
-        cRule.setPtype(ptype);
-        cRule.setRule(rule);
-        cRule.setId(IdUtil.getSnowflakeNextId());
+    /**
+     * 开启变更日志时，在当前事务中为每条规则追加一条变更
+     *
+     * @param s         数据库会话
+     * @param operation 变更操作
+     * @param ptype     策略类型，{@link PolicyChange.Operation#SAVE} 时为 null
+     * @param rules     策略规则，不含 ptype；{@link PolicyChange.Operation#SAVE} 时为空
+     * @throws SQLException 数据库操作异常
+     */
+    private void appendChanges(AbstractDb s, PolicyChange.Operation operation, String ptype, Collection<List<String>> rules) throws SQLException {
+        if (changeLog == null) {
+            return;
+        }
+        List<PolicyChange> changes = new ArrayList<>(Math.max(rules.size(), 1));
+        if (operation == PolicyChange.Operation.SAVE) {
+            changes.add(new PolicyChange(operation, ptype, 0, List.of()));
+        }
+        for (List<String> rule : rules) {
+            if (CollUtil.isNotEmpty(rule)) {
+                changes.add(new PolicyChange(operation, ptype, 0, rule));
+            }
+        }
+        changeLog.append(s, changes);
+    }
 
-        s.insert(Entity.create(tableName).parseBean(cRule));
+    /**
+     * 使用 JDBC 批处理插入规则
+     *
+     * @param s     数据库会话
+     * @param sql   插入语句，参数见 {@link CasbinTable#bindInsert}
+     * @param rules 策略规则，第一个元素为 ptype
+     * @throws SQLException 数据库操作异常
+     */
+    private void insertRules(AbstractDb s, String sql, Collection<List<String>> rules) throws SQLException {
+        executeBatch(s, sql, rules, (ps, rule) -> table.bindInsert(ps, IdUtil.getSnowflakeNextId(), rule.get(0), rule.subList(1, rule.size())));
     }
 
     /**
-     * 从数据库中移除策略
+     * 使用 JDBC 批处理按规则删除
      *
      * @param s     数据库会话
      * @param ptype 策略类型
-     * @param rule  策略规则
+     * @param rules 策略规则
      * @throws SQLException 数据库操作异常
      */
-    private void removePolicy(AbstractDb s, String ptype, List<String> rule) throws SQLException {
-        if (CollUtil.isEmpty(rule)) {
+    private void removeRules(AbstractDb s, String ptype, Collection<List<String>> rules) throws SQLException {
+        List<List<String>> validRules = rules.stream().filter(CollUtil::isNotEmpty).toList();
+        if (table.isRuleHash()) {
+            executeBatch(s, table.deleteByHashSql(), validRules, (ps, rule) -> ps.setString(1, table.ruleHash(ptype, rule)));
+            return;
+        }
+        // 按字段数分组，同组规则共用一条预编译语句
+        Map<Integer, List<List<String>>> groups = new TreeMap<>();
+        for (List<String> rule : validRules) {
+            groups.computeIfAbsent(Math.min(rule.size(), table.getFieldCount()), k -> new ArrayList<>()).add(rule);
+        }
+        for (Map.Entry<Integer, List<List<String>>> group : groups.entrySet()) {
+            executeBatch(s, table.deleteSql(group.getKey()), group.getValue(), (ps, rule) -> table.bindRule(ps, 1, ptype, rule));
+        }
+    }
+
+    /**
+     * 使用 JDBC 批处理执行同一条语句，每 batchSize 条提交一次
+     *
+     * @param s      数据库会话
+     * @param sql    语句
+     * @param items  批处理数据
+     * @param binder 参数绑定
+     * @param <T>    数据类型
+     * @throws SQLException 数据库操作异常
+     */
+    private <T> void executeBatch(AbstractDb s, String sql, Collection<T> items, Binder<T> binder) throws SQLException {
+        if (items.isEmpty()) {
             return;
         }
+        LeafDb.withConnection(s, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (T item : items) {
+                    binder.bind(ps, item);
+                    ps.addBatch();
+                    if (++pending >= batchSize) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 过滤值中的 null 与 "" 同样表示不限制该字段，统一为 ""，日志中的 null 会截断字段列表
+     */
+    private static List<String> filterValues(String[] fieldValues) {
+        List<String> values = new ArrayList<>(fieldValues.length);
+        for (String value : fieldValues) {
+            values.add(value == null ? "" : value);
+        }
+        return values;
+    }
 
-        CasbinRule cRule = new CasbinRule();
-        cRule.setPtype(ptype);
-        cRule.setRule(rule);
+    private static List<String> withPtype(String ptype, List<String> rule) {
+        List<String> list = new ArrayList<>(rule.size() + 1);
+        list.add(ptype);
+        list.addAll(rule);
+        return list;
+    }
 
-        Entity entity = Entity.create(tableName);
-        entity.putAll(BeanUtil.beanToMap(cRule, true, true));
-        s.del(entity);
+    /**
+     * 批处理参数绑定
+     *
+     * @param <T> 数据类型
+     */
+    @FunctionalInterface
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, T item) throws SQLException;
     }
 }
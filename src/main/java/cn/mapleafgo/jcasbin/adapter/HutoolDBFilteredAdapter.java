@@ -1,9 +1,7 @@
 package cn.mapleafgo.jcasbin.adapter;
 
-import cn.hutool.core.util.ArrayUtil;
-import cn.hutool.db.Entity;
-import cn.mapleafgo.jcasbin.db.LeafDb;
-import cn.mapleafgo.jcasbin.entity.CasbinRule;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import cn.mapleafgo.jcasbin.metrics.Metrics;
 import lombok.SneakyThrows;
 import org.casbin.jcasbin.exception.CasbinAdapterException;
 import org.casbin.jcasbin.model.Model;
@@ -13,12 +11,13 @@ import org.casbin.jcasbin.persist.file_adapter.FilteredAdapter.Filter;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Casbin HutoolDB 适配器，支持 Filtered
+ * <p>
+ * 过滤条件支持 {@link Filter} 与 {@link PolicyFilter}，均会转换为参数化的 WHERE 条件在数据库侧过滤。
  *
  * @author mapleafgo
  */
@@ -29,6 +28,14 @@ public class HutoolDBFilteredAdapter extends HutoolDBAdapter implements Filtered
         super(dataSource, tableName);
     }
 
+    public HutoolDBFilteredAdapter(DataSource dataSource, CasbinTable table) throws SQLException {
+        super(dataSource, table);
+    }
+
+    public HutoolDBFilteredAdapter(DataSource dataSource, CasbinTable table, boolean changeLog) throws SQLException {
+        super(dataSource, table, changeLog);
+    }
+
     @Override
     public void loadFilteredPolicy(Model model, Object filter) throws CasbinAdapterException {
         if (filter == null) {
@@ -36,11 +43,24 @@ public class HutoolDBFilteredAdapter extends HutoolDBAdapter implements Filtered
             isFiltered = false;
             return;
         }
-        if (!(filter instanceof Filter)) {
+        PolicyFilter policyFilter;
+        if (filter instanceof PolicyFilter) {
+            policyFilter = (PolicyFilter) filter;
+        } else if (filter instanceof Filter) {
+            policyFilter = PolicyFilter.of((Filter) filter);
+        } else {
             isFiltered = false;
             throw new CasbinAdapterException("Invalid filter type.");
         }
-        loadFilteredPolicyFile(model, (Filter) filter, HutoolDBAdapter::loadPolicyLine);
+        long start = Metrics.start();
+        if (isCompactLoad()) {
+            // 过滤后的行数未知，只对字段值去重
+            PolicyLoader loader = new PolicyLoader(model, null, getDictionarySize());
+            loadFilteredPolicyFile(model, policyFilter, (rule, m) -> loader.accept(rule));
+        } else {
+            loadFilteredPolicyFile(model, policyFilter, HutoolDBAdapter::loadPolicyLine);
+        }
+        PolicyLoader.recordLoad(model, start);
         isFiltered = true;
     }
 
@@ -49,34 +69,17 @@ public class HutoolDBFilteredAdapter extends HutoolDBAdapter implements Filtered
         return isFiltered;
     }
 
-    @SneakyThrows(SQLException.class)
-    private void loadFilteredPolicyFile(Model model, Filter filter, Helper.loadPolicyLineHandler<List<String>, Model> handler) throws CasbinAdapterException {
-        List<CasbinRule> rules = LeafDb.use(dataSource).findAll(Entity.create(tableName), CasbinRule.class);
-        for (CasbinRule rule : rules) {
-            if (filterLine(rule, filter)) {
-                continue;
-            }
-            handler.accept(rule.getRule(), model);
-        }
-    }
-
-    private boolean filterLine(CasbinRule line, Filter filter) {
-        if (filter == null) {
-            return false;
-        }
-        String[] rule = ArrayUtil.toArray(line.getRule(), String.class);
-        if (Objects.equals("p", line.getPtype())) {
-            return filterWords(rule, filter.p);
-        } else if (Objects.equals("g", line.getPtype())) {
-            return filterWords(rule, filter.g);
-        }
-        return true;
+    /**
+     * 模型中的策略由调用方按需加载，标记为已过滤，禁止 savePolicy 覆盖整张表
+     */
+    void markFiltered() {
+        isFiltered = true;
     }
 
-    private boolean filterWords(String[] rule, String[] filter) {
-        if (rule.length < filter.length + 1) {
-            return true;
-        }
-        return !Arrays.equals(Arrays.copyOfRange(rule, 1, filter.length + 1), filter);
+    @SneakyThrows(SQLException.class)
+    private void loadFilteredPolicyFile(Model model, PolicyFilter filter, Helper.loadPolicyLineHandler<List<String>, Model> handler) throws CasbinAdapterException {
+        List<Object> params = new ArrayList<>();
+        String condition = filter.toSql(table, params);
+        fetchRules(condition, params.toArray(), rule -> handler.accept(rule, model));
     }
 }
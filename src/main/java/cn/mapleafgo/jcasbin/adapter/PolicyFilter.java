@@ -0,0 +1,159 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.persist.file_adapter.FilteredAdapter.Filter;
+
+import java.util.*;
+
+/**
+ * 策略过滤条件，可下推为 SQL 条件。
+ * <p>
+ * 按 ptype 分组（p、g、p2、g2 ...），每个字段可以有多个允许值（IN），空字符串表示不限制该字段。
+ * 未出现在过滤条件中的 ptype 不会被加载。
+ *
+ * @author mapleafgo
+ */
+public class PolicyFilter {
+    private final Map<String, List<Set<String>>> sections = new LinkedHashMap<>();
+
+    /**
+     * 从 jcasbin 的 {@link Filter} 转换，只加载 p 与 g
+     *
+     * @param filter jcasbin 过滤条件
+     * @return 过滤条件
+     */
+    public static PolicyFilter of(Filter filter) {
+        PolicyFilter policyFilter = new PolicyFilter();
+        policyFilter.where("p", filter.p == null ? new String[0] : filter.p);
+        policyFilter.where("g", filter.g == null ? new String[0] : filter.g);
+        return policyFilter;
+    }
+
+    /**
+     * 加载 ptype 的规则，并按字段顺序从 v0 开始匹配
+     *
+     * @param ptype       策略类型
+     * @param fieldValues 字段值，"" 表示不限制该字段
+     * @return this
+     */
+    public PolicyFilter where(String ptype, String... fieldValues) {
+        List<Set<String>> fields = section(ptype);
+        for (int i = 0; i < fieldValues.length; i++) {
+            field(fields, i).add(fieldValues[i]);
+        }
+        return this;
+    }
+
+    /**
+     * 加载 ptype 的规则，且第 fieldIndex 个字段取值在 values 中，可重复调用以追加允许值
+     *
+     * @param ptype      策略类型
+     * @param fieldIndex 字段下标，从 0 开始
+     * @param values     允许的取值，包含 "" 时不限制该字段
+     * @return this
+     */
+    public PolicyFilter whereIn(String ptype, int fieldIndex, Collection<String> values) {
+        field(section(ptype), fieldIndex).addAll(values);
+        return this;
+    }
+
+    /**
+     * @return 需要加载的 ptype
+     */
+    public Set<String> getPtypes() {
+        return Collections.unmodifiableSet(sections.keySet());
+    }
+
+    /**
+     * 获取 ptype 各字段允许的取值
+     *
+     * @param ptype 策略类型
+     * @return 按字段顺序的允许值集合，空集合或包含 "" 时表示不限制；ptype 不在过滤条件中时返回 null
+     */
+    List<Set<String>> fields(String ptype) {
+        List<Set<String>> fields = sections.get(ptype);
+        return fields == null ? null : Collections.unmodifiableList(fields);
+    }
+
+    /**
+     * 字段取值是否不受限制
+     *
+     * @param values 允许的取值
+     * @return 空集合或包含 "" 时返回 true
+     */
+    static boolean isWildcard(Set<String> values) {
+        return values.isEmpty() || values.contains("");
+    }
+
+    /**
+     * 判断规则是否满足过滤条件
+     *
+     * @param rule 列表形式规则，第一个元素为 ptype
+     * @return 满足时返回 true
+     */
+    public boolean match(List<String> rule) {
+        List<Set<String>> fields = sections.get(rule.get(0));
+        if (fields == null) {
+            return false;
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            Set<String> values = fields.get(i);
+            if (isWildcard(values)) {
+                continue;
+            }
+            if (rule.size() <= i + 1 || !values.contains(rule.get(i + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 生成 SQL 条件，参数按顺序追加到 params
+     *
+     * @param table  策略表结构
+     * @param params 参数列表
+     * @return 形如 {@code (ptype = ? AND v1 IN (?, ?)) OR (ptype = ?)} 的条件；没有任何 ptype 时返回 {@code 1 = 0}
+     * @throws CasbinAdapterException 非通配的字段条件超出表的列数时抛出，避免忽略该条件后加载多余的规则
+     */
+    public String toSql(CasbinTable table, List<Object> params) {
+        if (sections.isEmpty()) {
+            return "1 = 0";
+        }
+        StringJoiner or = new StringJoiner(" OR ");
+        sections.forEach((ptype, fields) -> {
+            StringBuilder sb = new StringBuilder("(ptype = ?");
+            params.add(ptype);
+            for (int i = 0; i < fields.size(); i++) {
+                Set<String> values = fields.get(i);
+                if (isWildcard(values)) {
+                    continue;
+                }
+                if (i >= table.getFieldCount()) {
+                    throw new CasbinAdapterException("过滤字段 v" + i + " 超出策略表 " + table.getName() + " 的列数 " + table.getFieldCount());
+                }
+                sb.append(" AND ").append(CasbinTable.fieldColumn(i));
+                if (values.size() == 1) {
+                    sb.append(" = ?");
+                } else {
+                    sb.append(" IN (").append(String.join(", ", Collections.nCopies(values.size(), "?"))).append(')');
+                }
+                params.addAll(values);
+            }
+            or.add(sb.append(')'));
+        });
+        return or.toString();
+    }
+
+    private List<Set<String>> section(String ptype) {
+        return sections.computeIfAbsent(ptype, k -> new ArrayList<>());
+    }
+
+    private static Set<String> field(List<Set<String>> fields, int index) {
+        while (fields.size() <= index) {
+            fields.add(new LinkedHashSet<>());
+        }
+        return fields.get(index);
+    }
+}
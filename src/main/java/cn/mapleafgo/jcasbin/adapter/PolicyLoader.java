@@ -0,0 +1,180 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import org.casbin.jcasbin.model.Assertion;
+import org.casbin.jcasbin.model.Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 把规则逐条填充到 {@link Model}，用于大规模策略的加载。
+ * <p>
+ * 与 {@link HutoolDBAdapter#loadPolicyLine} 相比：
+ * <ul>
+ *     <li>重复出现的字段值（动作、租户、角色等）通过本次加载的字典去重，所有规则共用同一个 String 实例；
+ *     字典达到上限后不再收录新值，避免高基数字段（如用户 ID）把字典撑大；</li>
+ *     <li>已知各 ptype 的行数时预先分配 {@code ast.policy} 与 {@code ast.policyIndex} 的容量，避免加载过程中反复扩容；</li>
+ *     <li>每个 ptype 的 {@link Assertion} 只查找一次。</li>
+ * </ul>
+ * 加载器只在一次加载中使用，字典随加载器一起释放。
+ *
+ * @author mapleafgo
+ */
+public class PolicyLoader implements Consumer<List<String>> {
+    /**
+     * 默认的字典容量上限
+     */
+    public static final int DEFAULT_DICTIONARY_SIZE = 1 << 20;
+
+    private final Model model;
+    private final int maxDictionarySize;
+    private final Map<String, String> dictionary;
+    private final Map<String, Assertion> assertions = new HashMap<>();
+    /**
+     * 已加载的规则数
+     */
+    @Getter
+    private long loaded;
+    /**
+     * 因复用字典中的实例而省去的字符串数
+     */
+    @Getter
+    private long deduplicated;
+
+    /**
+     * 不去重字段值，只预分配容量
+     *
+     * @param model     模型
+     * @param rowCounts 各 ptype 的规则数，为 null 时不预分配
+     */
+    public PolicyLoader(Model model, Map<String, Long> rowCounts) {
+        this(model, rowCounts, 0);
+    }
+
+    /**
+     * @param model             模型
+     * @param rowCounts         各 ptype 的规则数，为 null 时不预分配
+     * @param maxDictionarySize 字典容量上限，为 0 时不去重字段值
+     */
+    public PolicyLoader(Model model, Map<String, Long> rowCounts, int maxDictionarySize) {
+        this.model = model;
+        this.maxDictionarySize = maxDictionarySize;
+        this.dictionary = maxDictionarySize > 0 ? new HashMap<>(Math.min(maxDictionarySize, 1 << 16)) : null;
+        if (rowCounts != null) {
+            rowCounts.forEach(this::presize);
+        }
+    }
+
+    @Override
+    public void accept(List<String> rule) {
+        Assertion ast = assertions.computeIfAbsent(rule.get(0), this::assertion);
+        if (ast == null) {
+            return;
+        }
+        int size = rule.size() - 1;
+        List<String> policy = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            policy.add(intern(rule.get(i)));
+        }
+        ast.policy.add(policy);
+        ast.policyIndex.put(indexKey(policy), ast.policy.size() - 1);
+        loaded++;
+    }
+
+    /**
+     * @return 字典中的字段值数
+     */
+    public int getDictionarySize() {
+        return dictionary == null ? 0 : dictionary.size();
+    }
+
+    /**
+     * 生成与 {@code policy.toString()} 相同的 policyIndex 键：预先算好长度，只分配一次缓冲区
+     *
+     * @param policy 策略规则，不含 ptype
+     * @return policyIndex 键
+     */
+    public static String indexKey(List<String> policy) {
+        int size = policy.size();
+        int length = 2 + Math.max(0, size - 1) * 2;
+        for (int i = 0; i < size; i++) {
+            String value = policy.get(i);
+            length += value == null ? 4 : value.length();
+        }
+        StringBuilder sb = new StringBuilder(length).append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(policy.get(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    private String intern(String value) {
+        if (dictionary == null || value == null) {
+            return value;
+        }
+        String existing = dictionary.get(value);
+        if (existing != null) {
+            deduplicated++;
+            return existing;
+        }
+        if (dictionary.size() < maxDictionarySize) {
+            dictionary.put(value, value);
+        }
+        return value;
+    }
+
+    private Assertion assertion(String ptype) {
+        Map<String, Assertion> astMap = model.model.get(ptype.substring(0, 1));
+        return astMap == null ? null : astMap.get(ptype);
+    }
+
+    private void presize(String ptype, Long count) {
+        Assertion ast = assertions.computeIfAbsent(ptype, this::assertion);
+        if (ast == null || count == null || count <= 0 || count > Integer.MAX_VALUE || !ast.policy.isEmpty()) {
+            return;
+        }
+        int n = count.intValue();
+        ast.policy = new ArrayList<>(n);
+        ast.policyIndex = new HashMap<>((int) Math.min(Integer.MAX_VALUE, (long) n * 4 / 3 + 1));
+    }
+
+    /**
+     * 上报一次加载的耗时与模型中的规则数
+     *
+     * @param model 加载后的模型
+     * @param start {@link Metrics#start()} 的返回值
+     */
+    static void recordLoad(Model model, long start) {
+        if (start != 0) {
+            Metrics.time(Metrics.ADAPTER_LOAD, start);
+            Metrics.value(Metrics.ADAPTER_LOAD_ROWS, ruleCount(model));
+        }
+    }
+
+    /**
+     * 统计模型中 p、g 两节的规则总数
+     *
+     * @param model 模型
+     * @return 规则总数
+     */
+    static long ruleCount(Model model) {
+        long count = 0;
+        for (String sec : new String[]{"p", "g"}) {
+            Map<String, Assertion> astMap = model.model.get(sec);
+            if (astMap != null) {
+                for (Assertion ast : astMap.values()) {
+                    count += ast.policy.size();
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,133 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import cn.mapleafgo.jcasbin.db.ChangeLog;
+import cn.mapleafgo.jcasbin.entity.PolicyChange;
+import cn.mapleafgo.jcasbin.watcher.PolicyUpdate;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.main.Enforcer;
+import org.casbin.jcasbin.model.Assertion;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于变更日志的策略增量同步。
+ * <p>
+ * 记录本实例已应用到的版本号，{@link #sync()} 时只拉取之后的变更并应用到 enforcer 的内存模型，
+ * 遇到全量保存、日志已被压缩或出现断档时才全量重新加载。可直接作为 Watcher 的更新回调：
+ * {@code watcher.setUpdateCallback(replayer::sync)}。
+ * <p>
+ * 仅适用于加载全量策略的 enforcer，带过滤条件加载的 enforcer 请继续使用 {@code loadFilteredPolicy}。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class PolicyReplayer {
+    private final Enforcer enforcer;
+    private final ChangeLog changeLog;
+    private final CasbinTable table;
+    private final int fetchSize;
+    /**
+     * 已应用到的版本号
+     */
+    @Getter
+    private volatile long version;
+
+    /**
+     * 创建时会全量加载一次策略并记录当前版本号
+     *
+     * @param enforcer enforcer，其适配器需与 adapter 指向同一张策略表
+     * @param adapter  已开启变更日志的适配器
+     */
+    public PolicyReplayer(Enforcer enforcer, HutoolDBAdapter adapter) {
+        if (adapter.getChangeLog() == null) {
+            throw new CasbinAdapterException("适配器未开启变更日志");
+        }
+        this.enforcer = enforcer;
+        this.changeLog = adapter.getChangeLog();
+        this.table = adapter.table;
+        this.fetchSize = adapter.getFetchSize();
+        reload();
+    }
+
+    /**
+     * 全量重新加载策略
+     */
+    public synchronized void reload() {
+        try {
+            // 先取版本号再加载，加载期间提交的变更会在下次同步时重复应用，增删规则均是幂等的
+            long current = changeLog.currentVersion();
+            enforcer.loadPolicy();
+            version = current;
+        } catch (SQLException e) {
+            throw new CasbinAdapterException("读取 casbin 变更日志失败", e);
+        }
+    }
+
+    /**
+     * 应用本实例版本号之后的变更
+     *
+     * @return 增量应用成功返回 true，改为全量重新加载时返回 false
+     */
+    public synchronized boolean sync() {
+        boolean[] needReload = {false};
+        boolean continuous;
+        try {
+            continuous = changeLog.read(version, fetchSize, change -> {
+                if (change.getOperation() == PolicyChange.Operation.SAVE) {
+                    needReload[0] = true;
+                    return false;
+                }
+                apply(change);
+                version = change.getVersion();
+                return true;
+            });
+        } catch (SQLException e) {
+            throw new CasbinAdapterException("读取 casbin 变更日志失败", e);
+        }
+        if (!continuous || needReload[0]) {
+            log.info("casbin replayer: full reload from version {}", version);
+            reload();
+            return false;
+        }
+        return true;
+    }
+
+    private void apply(PolicyChange change) {
+        String sec = change.getSec();
+        String ptype = change.getPtype();
+        List<String> values = change.getValues();
+        switch (change.getOperation()) {
+            case ADD -> PolicyUpdate.addPolicies(enforcer, sec, ptype, List.of(values));
+            case REMOVE -> PolicyUpdate.removePolicies(enforcer, sec, ptype, removedRules(sec, ptype, values));
+            case REMOVE_FILTERED -> PolicyUpdate.removeFilteredPolicy(enforcer, sec, ptype, change.getFieldIndex(), values);
+            default -> throw new IllegalStateException("unexpected operation " + change.getOperation());
+        }
+    }
+
+    /**
+     * 找出数据库按规则删除时一并删除的规则，见 {@link CasbinTable#removes}
+     */
+    private List<List<String>> removedRules(String sec, String ptype, List<String> values) {
+        if (table.isRuleHash()) {
+            return List.of(values);
+        }
+        Map<String, Assertion> astMap = enforcer.getModel().model.get(sec);
+        Assertion ast = astMap == null ? null : astMap.get(ptype);
+        if (ast == null) {
+            return List.of();
+        }
+        List<List<String>> removed = new ArrayList<>();
+        for (List<String> rule : ast.policy) {
+            if (table.removes(values, rule)) {
+                removed.add(rule);
+            }
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,284 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 策略快照的二进制文件格式。
+ * <p>
+ * 文件结构（大端序）：
+ * <pre>
+ * int    magic "CSNP"
+ * int    格式版本
+ * int    表名长度 + UTF-8 字节
+ * long   数据版本（变更日志版本号，或行数）
+ * long   数据指纹（最大主键，使用变更日志时为 0）
+ * 规则   每条规则：int 字段数 + 每个字段的 int 字典下标（第一个字段为 ptype）；
+ *        下标等于当前字典大小时表示新字符串，紧跟 int 长度 + UTF-8 字节；字段数为 -1 表示结束
+ * long   以上内容的 CRC32
+ * </pre>
+ * ptype、主体、角色、域等取值大量重复，字典使文件远小于逐行保存，读取时同一取值也只解码一次。
+ * 字典随规则内联写入，写入与读取都是单遍流式的，不需要先在内存中收集全部规则。
+ * <p>
+ * 读取通过 {@link FileChannel} 进行，不使用内存映射，关闭后文件即可被替换或删除。
+ *
+ * @author mapleafgo
+ */
+@Getter
+public class PolicySnapshot implements AutoCloseable {
+    private static final int MAGIC = 0x43534E50;
+    private static final int FORMAT_VERSION = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 策略表名
+     */
+    private final String table;
+    /**
+     * 数据版本
+     */
+    private final long version;
+    /**
+     * 数据指纹
+     */
+    private final long fingerprint;
+    private final FileChannel channel;
+    private final DataInputStream in;
+
+    private PolicySnapshot(String table, long version, long fingerprint, FileChannel channel, DataInputStream in) {
+        this.table = table;
+        this.version = version;
+        this.fingerprint = fingerprint;
+        this.channel = channel;
+        this.in = in;
+    }
+
+    /**
+     * 打开快照：先校验整个文件的 CRC，再读取文件头，规则由 {@link #forEachRule} 读取
+     *
+     * @param file 快照文件
+     * @return 快照，用完需关闭；文件不存在、格式不符或校验失败时返回 null
+     * @throws IOException 读取失败
+     */
+    public static PolicySnapshot open(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < 8 || !checksum(channel, size)) {
+                channel.close();
+                return null;
+            }
+            Metrics.value(Metrics.ADAPTER_SNAPSHOT_BYTES, size);
+            channel.position(0);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                channel.close();
+                return null;
+            }
+            return new PolicySnapshot(readUtf(in), in.readLong(), in.readLong(), channel, in);
+        } catch (EOFException | RuntimeException e) {
+            // 截断或损坏的文件按不存在处理
+            channel.close();
+            return null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 按写入顺序逐条读取规则，只能调用一次
+     *
+     * @param consumer 规则消费者，规则第一个元素为 ptype
+     * @throws IOException 读取失败或内容损坏
+     */
+    public void forEachRule(Consumer<List<String>> consumer) throws IOException {
+        List<String> strings = new ArrayList<>();
+        try {
+            int size;
+            while ((size = in.readInt()) >= 0) {
+                String[] rule = new String[size];
+                for (int k = 0; k < size; k++) {
+                    int index = in.readInt();
+                    if (index == strings.size()) {
+                        strings.add(readUtf(in));
+                    }
+                    rule[k] = strings.get(index);
+                }
+                consumer.accept(Arrays.asList(rule));
+            }
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("corrupted casbin snapshot", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 创建快照写入器，规则逐条写入临时文件，{@link Writer#commit()} 时原子替换快照文件
+     *
+     * @param file        快照文件，所在目录不存在时会自动创建
+     * @param table       策略表名
+     * @param version     数据版本
+     * @param fingerprint 数据指纹
+     * @return 写入器，用完需关闭
+     * @throws IOException 创建临时文件失败
+     */
+    public static Writer writer(Path file, String table, long version, long fingerprint) throws IOException {
+        return new Writer(file, table, version, fingerprint);
+    }
+
+    private static boolean checksum(FileChannel channel, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        long remaining = size - 8;
+        while (remaining > 0) {
+            buf.clear().limit((int) Math.min(buf.capacity(), remaining));
+            int n = channel.read(buf);
+            if (n < 0) {
+                return false;
+            }
+            crc.update(buf.flip());
+            remaining -= n;
+        }
+        buf.clear().limit(8);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) {
+                return false;
+            }
+        }
+        return crc.getValue() == buf.flip().getLong();
+    }
+
+    private static void writeUtf(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readUtf(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 快照写入器：先写临时文件再原子替换，读取方不会看到写了一半的文件。
+     * 写入失败时记录第一个异常并停止写入，由 {@link #commit()} 抛出，规则的消费方不受影响
+     */
+    public static final class Writer implements Consumer<List<String>>, AutoCloseable {
+        private final Path file;
+        private final Path tmp;
+        private final CRC32 crc = new CRC32();
+        private final DataOutputStream out;
+        private final DataOutputStream body;
+        private final Map<String, Integer> dict = new HashMap<>();
+        private IOException failure;
+        private boolean committed;
+
+        private Writer(Path file, String table, long version, long fingerprint) throws IOException {
+            this.file = file;
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            this.tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE));
+            this.body = new DataOutputStream(new CheckedOutputStream(out, crc));
+            try {
+                body.writeInt(MAGIC);
+                body.writeInt(FORMAT_VERSION);
+                writeUtf(body, table);
+                body.writeLong(version);
+                body.writeLong(fingerprint);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void accept(List<String> rule) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                body.writeInt(rule.size());
+                for (String value : rule) {
+                    Integer index = dict.get(value);
+                    if (index != null) {
+                        body.writeInt(index);
+                    } else {
+                        body.writeInt(dict.size());
+                        writeUtf(body, value);
+                        dict.put(value, dict.size());
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * 写入结束标记与校验和，替换快照文件
+         *
+         * @throws IOException 写入或替换失败
+         */
+        public void commit() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            body.writeInt(-1);
+            body.flush();
+            out.writeLong(crc.getValue());
+            Metrics.value(Metrics.ADAPTER_SNAPSHOT_BYTES, out.size());
+            out.close();
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            committed = true;
+        }
+
+        /**
+         * 未提交时删除临时文件
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                try {
+                    out.close();
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.mapleafgo.jcasbin.entity.CasbinRule;
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import lombok.Setter;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.model.Model;
+import org.casbin.jcasbin.persist.BatchAdapter;
+import org.casbin.jcasbin.persist.FilteredAdapter;
+import org.casbin.jcasbin.persist.UpdatableAdapter;
+import org.casbin.jcasbin.persist.file_adapter.FilteredAdapter.Filter;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Casbin Redis 适配器，规则保存在 Redis 集合中。
+ * <p>
+ * 每个 ptype 一个集合 {@code {prefix}{ptype}}，成员为逗号连接的规则字段（{@code %}、{@code ,} 与 {@code :} 会被转义）；
+ * 通过 {@link #setDomainField} 为某个 ptype 指定域字段后，该 ptype 的规则按域拆分到 {@code {prefix}{ptype}:{domain}}，
+ * 带域条件的过滤加载只读取对应域的集合。所有规则集合登记在 {@code {prefix}keys} 中，加载时无需 SCAN 整个库。
+ * <p>
+ * 加载使用 SSCAN 分页，每一轮把所有集合的 SSCAN 放在同一个 pipeline 中发送；写入使用 MULTI/EXEC 保证原子性。
+ *
+ * @author mapleafgo
+ */
+public class RedisAdapter implements BatchAdapter, UpdatableAdapter, FilteredAdapter {
+    private static final String REGISTRY = "keys";
+    private static final int DEFAULT_SCAN_COUNT = 1000;
+    private static final int MAX_WATCH_RETRIES = 5;
+
+    private final JedisPool pool;
+    /**
+     * key 前缀
+     */
+    @Getter
+    private final String prefix;
+    /**
+     * SSCAN 每次建议返回的成员数
+     */
+    @Getter
+    @Setter
+    private int scanCount = DEFAULT_SCAN_COUNT;
+    private final Map<String, Integer> domainFields = new ConcurrentHashMap<>();
+    private boolean isFiltered = false;
+
+    /**
+     * @param pool   连接池
+     * @param prefix key 前缀，例如 {@code "casbin:policy:"}
+     */
+    public RedisAdapter(JedisPool pool, String prefix) {
+        this.pool = Objects.requireNonNull(pool);
+        this.prefix = Objects.requireNonNull(prefix);
+    }
+
+    /**
+     * 指定 ptype 的域字段，该 ptype 的规则按域字段的值拆分保存。需在写入任何规则之前设置，之后修改需重新 {@link #savePolicy}
+     *
+     * @param ptype      策略类型，例如 {@code "p"}
+     * @param fieldIndex 域字段下标（不含 ptype），例如 {@code p, sub, dom, obj, act} 为 1，{@code g, user, role, dom} 为 2
+     */
+    public void setDomainField(String ptype, int fieldIndex) {
+        domainFields.put(ptype, fieldIndex);
+    }
+
+    @Override
+    public void loadPolicy(Model model) {
+        long start = Metrics.start();
+        try (Jedis j = pool.getResource()) {
+            scan(j, j.smembers(prefix + REGISTRY), rule -> HutoolDBAdapter.loadPolicyLine(rule, model));
+        } catch (Exception e) {
+            throw new CasbinAdapterException("加载 casbin policy 失败", e);
+        } finally {
+            PolicyLoader.recordLoad(model, start);
+        }
+        isFiltered = false;
+    }
+
+    @Override
+    public void loadFilteredPolicy(Model model, Object filter) throws CasbinAdapterException {
+        if (filter == null) {
+            loadPolicy(model);
+            return;
+        }
+        PolicyFilter policyFilter;
+        if (filter instanceof PolicyFilter) {
+            policyFilter = (PolicyFilter) filter;
+        } else if (filter instanceof Filter) {
+            policyFilter = PolicyFilter.of((Filter) filter);
+        } else {
+            throw new CasbinAdapterException("Invalid filter type.");
+        }
+        long start = Metrics.start();
+        try (Jedis j = pool.getResource()) {
+            Set<String> registry = null;
+            Set<String> names = new HashSet<>();
+            for (String ptype : policyFilter.getPtypes()) {
+                Integer domainField = domainFields.get(ptype);
+                List<Set<String>> fields = policyFilter.fields(ptype);
+                if (domainField == null) {
+                    names.add(ptype);
+                } else if (domainField < fields.size() && !PolicyFilter.isWildcard(fields.get(domainField))) {
+                    for (String domain : fields.get(domainField)) {
+                        names.add(ptype + ":" + escape(domain));
+                    }
+                } else {
+                    if (registry == null) {
+                        registry = j.smembers(prefix + REGISTRY);
+                    }
+                    for (String name : registry) {
+                        if (name.startsWith(ptype + ":")) {
+                            names.add(name);
+                        }
+                    }
+                }
+            }
+            scan(j, names, rule -> {
+                if (policyFilter.match(rule)) {
+                    HutoolDBAdapter.loadPolicyLine(rule, model);
+                }
+            });
+        } catch (Exception e) {
+            throw new CasbinAdapterException("加载 casbin policy 失败", e);
+        } finally {
+            PolicyLoader.recordLoad(model, start);
+        }
+        isFiltered = true;
+    }
+
+    @Override
+    public boolean isFiltered() {
+        return isFiltered;
+    }
+
+    @Override
+    public void savePolicy(Model model) {
+        if (isFiltered) {
+            throw new CasbinAdapterException("cannot save a filtered policy");
+        }
+        long start = Metrics.start();
+        Map<String, List<String>> sets = new LinkedHashMap<>();
+        Set<List<String>> rules = CasbinRule.transformToRules(model);
+        Metrics.value(Metrics.ADAPTER_SAVE_ROWS, rules.size());
+        for (List<String> rule : rules) {
+            List<String> values = rule.subList(1, rule.size());
+            sets.computeIfAbsent(setName(rule.get(0), values), k -> new ArrayList<>()).add(member(values));
+        }
+        try (Jedis j = pool.getResource()) {
+            String registryKey = prefix + REGISTRY;
+            // WATCH 登记表，避免清空时漏掉并发新建的集合
+            for (int attempt = 0; attempt < MAX_WATCH_RETRIES; attempt++) {
+                j.watch(registryKey);
+                Set<String> old = j.smembers(registryKey);
+                Transaction t = j.multi();
+                for (String name : old) {
+                    t.del(prefix + name);
+                }
+                t.del(registryKey);
+                for (Map.Entry<String, List<String>> e : sets.entrySet()) {
+                    t.sadd(prefix + e.getKey(), e.getValue().toArray(new String[0]));
+                    t.sadd(registryKey, e.getKey());
+                }
+                if (t.exec() != null) {
+                    return;
+                }
+            }
+            throw new CasbinAdapterException("casbin policy 保存失败：并发修改冲突");
+        } catch (CasbinAdapterException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 保存失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_SAVE, start);
+        }
+    }
+
+    @Override
+    public void addPolicy(String sec, String ptype, List<String> rule) {
+        addPolicies(sec, ptype, Collections.singletonList(rule));
+    }
+
+    @Override
+    public void removePolicy(String sec, String ptype, List<String> rule) {
+        removePolicies(sec, ptype, Collections.singletonList(rule));
+    }
+
+    @Override
+    public void addPolicies(String sec, String ptype, List<List<String>> rules) {
+        if (CollUtil.isEmpty(rules)) {
+            return;
+        }
+        Metrics.value(Metrics.ADAPTER_BATCH_SIZE, rules.size());
+        long start = Metrics.start();
+        try (Jedis j = pool.getResource()) {
+            Transaction t = j.multi();
+            group(ptype, rules).forEach((name, members) -> {
+                t.sadd(prefix + name, members.toArray(new String[0]));
+                t.sadd(prefix + REGISTRY, name);
+            });
+            t.exec();
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 批量新增失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_ADD, start);
+        }
+    }
+
+    @Override
+    public void removePolicies(String sec, String ptype, List<List<String>> rules) {
+        if (CollUtil.isEmpty(rules)) {
+            return;
+        }
+        Metrics.value(Metrics.ADAPTER_BATCH_SIZE, rules.size());
+        long start = Metrics.start();
+        try (Jedis j = pool.getResource()) {
+            Transaction t = j.multi();
+            group(ptype, rules).forEach((name, members) -> t.srem(prefix + name, members.toArray(new String[0])));
+            t.exec();
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 批量移除失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_REMOVE, start);
+        }
+    }
+
+    @Override
+    public void updatePolicy(String sec, String ptype, List<String> oldRule, List<String> newPolicy) {
+        String oldName = setName(ptype, oldRule);
+        String newName = setName(ptype, newPolicy);
+        long start = Metrics.start();
+        try (Jedis j = pool.getResource()) {
+            Transaction t = j.multi();
+            t.srem(prefix + oldName, member(oldRule));
+            t.sadd(prefix + newName, member(newPolicy));
+            t.sadd(prefix + REGISTRY, newName);
+            t.exec();
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 变更失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_UPDATE, start);
+        }
+    }
+
+    @Override
+    public void removeFilteredPolicy(String sec, String ptype, int fieldIndex, String... fieldValues) {
+        long start = Metrics.start();
+        try (Jedis j = pool.getResource()) {
+            Collection<String> names = filteredSetNames(j, ptype, fieldIndex, fieldValues);
+            String[] keys = names.stream().map(name -> prefix + name).toArray(String[]::new);
+            if (keys.length == 0) {
+                return;
+            }
+            // 先读后删，用 WATCH 保证读取期间集合没有被其他客户端修改，否则重试
+            for (int attempt = 0; attempt < MAX_WATCH_RETRIES; attempt++) {
+                j.watch(keys);
+                Map<String, List<String>> matched = new HashMap<>();
+                scanMembers(j, names, (name, member) -> {
+                    List<String> rule = parseMember(member);
+                    if (matches(rule, fieldIndex, fieldValues)) {
+                        matched.computeIfAbsent(name, k -> new ArrayList<>()).add(member);
+                    }
+                });
+                if (matched.isEmpty()) {
+                    j.unwatch();
+                    return;
+                }
+                Transaction t = j.multi();
+                matched.forEach((name, members) -> t.srem(prefix + name, members.toArray(new String[0])));
+                if (t.exec() != null) {
+                    return;
+                }
+            }
+            throw new CasbinAdapterException("casbin policy 按条件移除失败：并发修改冲突");
+        } catch (CasbinAdapterException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CasbinAdapterException("casbin policy 按条件移除失败", e);
+        } finally {
+            Metrics.time(Metrics.ADAPTER_REMOVE_FILTERED, start);
+        }
+    }
+
+    /**
+     * 规则所在集合的名称（不含前缀）
+     */
+    private String setName(String ptype, List<String> rule) {
+        Integer domainField = domainFields.get(ptype);
+        if (domainField == null) {
+            return ptype;
+        }
+        return ptype + ":" + escape(domainField < rule.size() ? rule.get(domainField) : "");
+    }
+
+    private Collection<String> filteredSetNames(Jedis j, String ptype, int fieldIndex, String[] fieldValues) {
+        Integer domainField = domainFields.get(ptype);
+        if (domainField == null) {
+            return Collections.singletonList(ptype);
+        }
+        int pos = domainField - fieldIndex;
+        if (pos >= 0 && pos < fieldValues.length && !fieldValues[pos].isEmpty()) {
+            return Collections.singletonList(ptype + ":" + escape(fieldValues[pos]));
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : j.smembers(prefix + REGISTRY)) {
+            if (name.startsWith(ptype + ":")) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private Map<String, List<String>> group(String ptype, List<List<String>> rules) {
+        Map<String, List<String>> sets = new LinkedHashMap<>();
+        for (List<String> rule : rules) {
+            if (CollUtil.isEmpty(rule)) {
+                continue;
+            }
+            sets.computeIfAbsent(setName(ptype, rule), k -> new ArrayList<>()).add(member(rule));
+        }
+        return sets;
+    }
+
+    private void scan(Jedis j, Collection<String> names, Consumer<List<String>> consumer) {
+        scanMembers(j, names, (name, member) -> {
+            int sep = name.indexOf(':');
+            List<String> rule = new ArrayList<>();
+            rule.add(sep < 0 ? name : name.substring(0, sep));
+            rule.addAll(parseMember(member));
+            consumer.accept(rule);
+        });
+    }
+
+    /**
+     * 分轮 SSCAN 所有集合：每一轮把所有未结束游标的 SSCAN 放进同一个 pipeline
+     */
+    private void scanMembers(Jedis j, Collection<String> names, BiConsumer<String, String> consumer) {
+        ScanParams params = new ScanParams().count(scanCount);
+        Map<String, String> cursors = new LinkedHashMap<>();
+        for (String name : names) {
+            cursors.put(name, ScanParams.SCAN_POINTER_START);
+        }
+        while (!cursors.isEmpty()) {
+            Map<String, Response<ScanResult<String>>> responses = new LinkedHashMap<>();
+            Pipeline p = j.pipelined();
+            cursors.forEach((name, cursor) -> responses.put(name, p.sscan(prefix + name, cursor, params)));
+            p.sync();
+            cursors.clear();
+            responses.forEach((name, response) -> {
+                ScanResult<String> result = response.get();
+                for (String member : result.getResult()) {
+                    consumer.accept(name, member);
+                }
+                if (!result.isCompleteIteration()) {
+                    cursors.put(name, result.getCursor());
+                }
+            });
+        }
+    }
+
+    private static boolean matches(List<String> rule, int fieldIndex, String[] fieldValues) {
+        for (int i = 0; i < fieldValues.length; i++) {
+            if (fieldValues[i].isEmpty()) {
+                continue;
+            }
+            int pos = fieldIndex + i;
+            if (rule.size() <= pos || !fieldValues[i].equals(rule.get(pos))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String member(List<String> rule) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rule.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(escape(rule.get(i)));
+        }
+        return sb.toString();
+    }
+
+    private static List<String> parseMember(String member) {
+        List<String> rule = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= member.length(); i++) {
+            if (i == member.length() || member.charAt(i) == ',') {
+                rule.add(unescape(member.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        return rule;
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('%') < 0 && value.indexOf(',') < 0 && value.indexOf(':') < 0) {
+            return value;
+        }
+        return value.replace("%", "%25").replace(",", "%2C").replace(":", "%3A");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length()) {
+                sb.append((char) Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,268 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import cn.mapleafgo.jcasbin.db.LeafDb;
+import cn.mapleafgo.jcasbin.entity.PolicyChange;
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.model.Assertion;
+import org.casbin.jcasbin.model.Model;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * 带本地快照的 Casbin HutoolDB 适配器，用于大量实例同时启动时减轻数据库压力。
+ * <p>
+ * 每次全量加载后把策略写入本地二进制快照（格式见 {@link PolicySnapshot}）；下次加载时先用一次廉价查询校验快照：
+ * <ul>
+ *     <li>开启变更日志时比较版本号，快照落后则只从变更日志读取增量应用到快照上；</li>
+ *     <li>未开启时比较规则数与最大主键，不一致则全量加载。</li>
+ * </ul>
+ * 遇到全量保存、变更日志已被压缩或快照损坏时退回全量加载。规则从快照或数据库逐条填充到模型（遵循 {@link #isCompactLoad()}），
+ * 全量加载时同时流式写入新快照，不会在内存中另外收集一份完整的规则集合。快照写入失败只记录日志，不影响加载。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class SnapshotAdapter extends HutoolDBAdapter {
+    /**
+     * 快照文件
+     */
+    @Getter
+    private final Path snapshotFile;
+
+    /**
+     * @param dataSource   数据源
+     * @param table        策略表结构
+     * @param changeLog    是否开启变更日志，开启后快照过期时可以只加载增量
+     * @param snapshotFile 快照文件，所在目录不存在时会自动创建
+     * @throws SQLException 数据库操作异常
+     */
+    public SnapshotAdapter(DataSource dataSource, CasbinTable table, boolean changeLog, Path snapshotFile) throws SQLException {
+        super(dataSource, table, changeLog);
+        this.snapshotFile = Objects.requireNonNull(snapshotFile);
+    }
+
+    @Override
+    public void loadPolicy(Model model) {
+        long start = Metrics.start();
+        try {
+            if (getChangeLog() != null) {
+                loadWithChangeLog(model);
+            } else {
+                loadWithFingerprint(model);
+            }
+        } catch (SQLException e) {
+            throw new CasbinAdapterException("加载 casbin policy 失败", e);
+        } finally {
+            PolicyLoader.recordLoad(model, start);
+        }
+    }
+
+    private void loadWithChangeLog(Model model) throws SQLException {
+        // 先取版本号再读取，期间提交的变更下次会重复应用，增删规则均是幂等的
+        long current = getChangeLog().currentVersion();
+        long replayed = -1;
+        try (PolicySnapshot snapshot = openSnapshot()) {
+            if (snapshot != null && snapshot.getVersion() == current && loadSnapshot(snapshot, model, null)) {
+                log.debug("casbin snapshot {} is up to date at version {}", snapshotFile, current);
+                return;
+            }
+            if (snapshot != null && snapshot.getVersion() < current) {
+                replayed = replay(snapshot, model);
+            }
+        } catch (IOException e) {
+            log.warn("failed to close casbin snapshot {}", snapshotFile, e);
+        }
+        if (replayed >= 0) {
+            // 旧快照关闭后再替换，Windows 上打开中的文件无法被替换
+            writeSnapshot(model, replayed);
+            return;
+        }
+        loadFromDatabase(model, current, 0);
+    }
+
+    private void loadWithFingerprint(Model model) throws SQLException {
+        long[] stat = LeafDb.withConnection(LeafDb.use(dataSource), conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(table.statSql());
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new long[]{rs.getLong(1), rs.getLong(2)};
+            }
+        });
+        try (PolicySnapshot snapshot = openSnapshot()) {
+            if (snapshot != null && snapshot.getVersion() == stat[0] && snapshot.getFingerprint() == stat[1] && loadSnapshot(snapshot, model, null)) {
+                log.debug("casbin snapshot {} is up to date", snapshotFile);
+                return;
+            }
+        } catch (IOException e) {
+            log.warn("failed to close casbin snapshot {}", snapshotFile, e);
+        }
+        loadFromDatabase(model, stat[0], stat[1]);
+    }
+
+    /**
+     * 把快照中的规则逐条填充到模型
+     *
+     * @param unknown 不为 null 时记录模型中没有定义的 ptype 是否出现过
+     * @return 读取失败时清空模型中的策略并返回 false
+     */
+    private boolean loadSnapshot(PolicySnapshot snapshot, Model model, boolean[] unknown) {
+        Consumer<List<String>> loader = modelLoader(model, null);
+        try {
+            snapshot.forEachRule(unknown == null ? loader : rule -> {
+                if (!hasAssertion(model, rule.get(0))) {
+                    unknown[0] = true;
+                }
+                loader.accept(rule);
+            });
+            return true;
+        } catch (IOException e) {
+            log.warn("failed to read casbin snapshot {}", snapshotFile, e);
+            model.clearPolicy();
+            return false;
+        }
+    }
+
+    /**
+     * 加载落后的快照，再把之后的变更应用到模型上。
+     * 快照或变更中出现模型未定义的 ptype 时，模型中的策略不等于整张表，无法据此重写快照，改为全量加载
+     *
+     * @return 应用到的版本号；需要改为全量加载时清空模型中的策略并返回 -1
+     */
+    private long replay(PolicySnapshot snapshot, Model model) throws SQLException {
+        boolean[] unknown = {false};
+        if (!loadSnapshot(snapshot, model, unknown)) {
+            return -1;
+        }
+        long[] applied = {snapshot.getVersion()};
+        boolean continuous = !unknown[0] && getChangeLog().read(snapshot.getVersion(), getFetchSize(), change -> {
+            if (change.getOperation() == PolicyChange.Operation.SAVE || !hasAssertion(model, change.getPtype())) {
+                unknown[0] = true;
+                return false;
+            }
+            apply(model, change);
+            applied[0] = change.getVersion();
+            return true;
+        });
+        if (!continuous || unknown[0]) {
+            model.clearPolicy();
+            return -1;
+        }
+        log.info("casbin snapshot {} replayed from version {} to {}", snapshotFile, snapshot.getVersion(), applied[0]);
+        return applied[0];
+    }
+
+    /**
+     * 用模型中的策略重写快照
+     */
+    private void writeSnapshot(Model model, long version) {
+        try (PolicySnapshot.Writer writer = PolicySnapshot.writer(snapshotFile, tableName, version, 0)) {
+            for (String sec : new String[]{"p", "g"}) {
+                Map<String, Assertion> astMap = model.model.get(sec);
+                if (astMap == null) {
+                    continue;
+                }
+                for (Map.Entry<String, Assertion> entry : astMap.entrySet()) {
+                    for (List<String> policy : entry.getValue().policy) {
+                        List<String> rule = new ArrayList<>(policy.size() + 1);
+                        rule.add(entry.getKey());
+                        rule.addAll(policy);
+                        writer.accept(rule);
+                    }
+                }
+            }
+            writer.commit();
+        } catch (IOException e) {
+            log.warn("failed to write casbin snapshot {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * 从主库逐行读取策略，同时填充模型与写入新快照；快照以主库的版本标记，内容也必须读自主库
+     */
+    private void loadFromDatabase(Model model, long version, long fingerprint) throws SQLException {
+        Consumer<List<String>> loader = modelLoader(model, isCompactLoad() ? countRules(dataSource) : null);
+        PolicySnapshot.Writer writer;
+        try {
+            writer = PolicySnapshot.writer(snapshotFile, tableName, version, fingerprint);
+        } catch (IOException e) {
+            log.warn("failed to write casbin snapshot {}", snapshotFile, e);
+            writer = null;
+        }
+        if (writer == null) {
+            fetchRules(dataSource, loader);
+            return;
+        }
+        long[] count = {0};
+        try (PolicySnapshot.Writer w = writer) {
+            fetchRules(dataSource, rule -> {
+                loader.accept(rule);
+                w.accept(rule);
+                count[0]++;
+            });
+            log.info("casbin snapshot {} is stale or missing, loaded {} rules from database", snapshotFile, count[0]);
+            w.commit();
+        } catch (IOException e) {
+            log.warn("failed to write casbin snapshot {}", snapshotFile, e);
+        }
+    }
+
+    private PolicySnapshot openSnapshot() {
+        try {
+            PolicySnapshot snapshot = PolicySnapshot.open(snapshotFile);
+            if (snapshot != null && !tableName.equals(snapshot.getTable())) {
+                snapshot.close();
+                return null;
+            }
+            return snapshot;
+        } catch (IOException e) {
+            log.warn("failed to read casbin snapshot {}", snapshotFile, e);
+            return null;
+        }
+    }
+
+    private static boolean hasAssertion(Model model, String ptype) {
+        Map<String, Assertion> astMap = model.model.get(ptype.substring(0, 1));
+        return astMap != null && astMap.containsKey(ptype);
+    }
+
+    /**
+     * 把一条变更应用到模型，删除语义与数据库一致，见 {@link CasbinTable#removes}
+     */
+    private void apply(Model model, PolicyChange change) {
+        String sec = change.getSec();
+        String ptype = change.getPtype();
+        List<String> values = change.getValues();
+        switch (change.getOperation()) {
+            case ADD -> model.addPolicy(sec, ptype, values);
+            case REMOVE -> {
+                if (table.isRuleHash()) {
+                    model.removePolicy(sec, ptype, values);
+                } else {
+                    List<List<String>> removed = new ArrayList<>();
+                    for (List<String> rule : model.model.get(sec).get(ptype).policy) {
+                        if (table.removes(values, rule)) {
+                            removed.add(rule);
+                        }
+                    }
+                    model.removePolicies(sec, ptype, removed);
+                }
+            }
+            case REMOVE_FILTERED -> model.removeFilteredPolicy(sec, ptype, change.getFieldIndex(), values.toArray(new String[0]));
+            default -> throw new IllegalStateException("unexpected operation " + change.getOperation());
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.mapleafgo.jcasbin.entity.PolicyChange;
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.model.Model;
+import org.casbin.jcasbin.persist.BatchAdapter;
+import org.casbin.jcasbin.persist.UpdatableAdapter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 异步写回适配器：写操作进入队列后立即返回，由后台把排队的变更合并成批、在一个事务中提交。
+ * <p>
+ * <ul>
+ *     <li>同一条规则在提交前的多次增删只保留最后一次，例如先新增再删除只执行一次删除；删除后再新增时两者都保留；</li>
+ *     <li>合并后的变更保持调用顺序，非哈希模式下按字段前缀删除的结果与逐条执行一致；</li>
+ *     <li>提交期间到达的变更全部进入下一个事务（group commit），每个事务最多 {@link #getMaxBatchSize()} 条规则；</li>
+ *     <li>排队的规则数达到 {@link #getMaxPending()} 时，写操作阻塞到队列有空位为止；</li>
+ *     <li>按条件删除与全量保存会等待之前的变更提交后再执行，之后的变更排在它们之后；</li>
+ *     <li>{@link #loadPolicy} 前先等待队列清空，{@link #close()} 提交全部排队的变更后才返回。</li>
+ * </ul>
+ * {@code *Async} 方法返回在变更提交后完成的 future；jcasbin 调用的同步方法不等待提交，提交失败只能从日志或 future 得知，
+ * 此时 enforcer 的内存模型与数据库不一致，需重新加载。
+ * <p>
+ * 内部只使用 {@link ReentrantLock}，提交任务可以运行在虚拟线程上（JDK 21+ 可传入 {@code Executors.newVirtualThreadPerTaskExecutor()}）。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class WriteBehindAdapter implements BatchAdapter, UpdatableAdapter, AutoCloseable {
+    private static final int DEFAULT_MAX_PENDING = 10_000;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private final HutoolDBAdapter delegate;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    /**
+     * 排队规则数上限，达到后写操作阻塞
+     */
+    @Getter
+    private volatile int maxPending = DEFAULT_MAX_PENDING;
+    /**
+     * 每个事务最多提交的规则数
+     */
+    @Getter
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    /**
+     * 按提交顺序排列的 {@link RuleBatch} 与 {@link Barrier}
+     */
+    private final Deque<Object> queue = new ArrayDeque<>();
+    private int pending;
+    private boolean running;
+    private boolean closed;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+
+    /**
+     * 使用单个后台线程提交
+     *
+     * @param delegate 实际写入数据库的适配器
+     */
+    public WriteBehindAdapter(HutoolDBAdapter delegate) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.ownedExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "casbin-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor = ownedExecutor;
+    }
+
+    /**
+     * @param delegate 实际写入数据库的适配器
+     * @param executor 执行提交的线程池，同一时刻只占用其中一个线程；关闭适配器时不会关闭该线程池
+     */
+    public WriteBehindAdapter(HutoolDBAdapter delegate, Executor executor) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.executor = Objects.requireNonNull(executor);
+        this.ownedExecutor = null;
+    }
+
+    public void setMaxPending(int maxPending) {
+        if (maxPending <= 0) {
+            throw new IllegalArgumentException("maxPending must be positive");
+        }
+        this.maxPending = maxPending;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void loadPolicy(Model model) {
+        lock.lock();
+        CompletableFuture<Void> flushed;
+        try {
+            // 关闭后队列已经清空
+            flushed = closed ? CompletableFuture.completedFuture(null) : flush();
+        } finally {
+            lock.unlock();
+        }
+        await(flushed);
+        delegate.loadPolicy(model);
+    }
+
+    @Override
+    public void savePolicy(Model model) {
+        await(enqueue(() -> delegate.savePolicy(model)));
+    }
+
+    @Override
+    public void addPolicy(String sec, String ptype, List<String> rule) {
+        addPolicyAsync(sec, ptype, rule);
+    }
+
+    @Override
+    public void removePolicy(String sec, String ptype, List<String> rule) {
+        removePolicyAsync(sec, ptype, rule);
+    }
+
+    @Override
+    public void removeFilteredPolicy(String sec, String ptype, int fieldIndex, String... fieldValues) {
+        removeFilteredPolicyAsync(sec, ptype, fieldIndex, fieldValues);
+    }
+
+    @Override
+    public void addPolicies(String sec, String ptype, List<List<String>> rules) {
+        addPoliciesAsync(sec, ptype, rules);
+    }
+
+    @Override
+    public void removePolicies(String sec, String ptype, List<List<String>> rules) {
+        removePoliciesAsync(sec, ptype, rules);
+    }
+
+    @Override
+    public void updatePolicy(String sec, String ptype, List<String> oldRule, List<String> newPolicy) {
+        updatePolicyAsync(sec, ptype, oldRule, newPolicy);
+    }
+
+    public CompletableFuture<Void> addPolicyAsync(String sec, String ptype, List<String> rule) {
+        return enqueue(ptype, List.of(rule), List.of());
+    }
+
+    public CompletableFuture<Void> removePolicyAsync(String sec, String ptype, List<String> rule) {
+        return enqueue(ptype, List.of(), List.of(rule));
+    }
+
+    public CompletableFuture<Void> addPoliciesAsync(String sec, String ptype, List<List<String>> rules) {
+        return enqueue(ptype, rules, List.of());
+    }
+
+    public CompletableFuture<Void> removePoliciesAsync(String sec, String ptype, List<List<String>> rules) {
+        return enqueue(ptype, List.of(), rules);
+    }
+
+    /**
+     * 删除旧规则与新增新规则进入同一批，在同一个事务中提交
+     */
+    public CompletableFuture<Void> updatePolicyAsync(String sec, String ptype, List<String> oldRule, List<String> newPolicy) {
+        return enqueue(ptype, List.of(newPolicy), List.of(oldRule));
+    }
+
+    public CompletableFuture<Void> removeFilteredPolicyAsync(String sec, String ptype, int fieldIndex, String... fieldValues) {
+        String[] values = fieldValues.clone();
+        return enqueue(() -> delegate.removeFilteredPolicy(sec, ptype, fieldIndex, values));
+    }
+
+    /**
+     * @return 在此之前排队的变更全部提交后完成的 future
+     */
+    public CompletableFuture<Void> flush() {
+        return enqueue(null);
+    }
+
+    /**
+     * 不再接受新的变更，提交全部排队的变更后返回
+     */
+    @Override
+    public void close() {
+        CompletableFuture<Void> done;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            done = enqueue(null);
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            log.error("casbin write-behind flush on close failed", e.getCause());
+        } finally {
+            if (ownedExecutor != null) {
+                ownedExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @return 当前排队的规则数
+     */
+    public int getPending() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 提交的规则变更总数
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * @return 被同一规则的后续变更合并掉的变更数
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return 已写入数据库的规则变更数
+     */
+    public long getCommitted() {
+        return committed.get();
+    }
+
+    /**
+     * @return 已执行的事务数
+     */
+    public long getTransactions() {
+        return transactions.get();
+    }
+
+    private CompletableFuture<Void> enqueue(String ptype, List<List<String>> adds, List<List<String>> removes) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        int count = adds.size() + removes.size();
+        if (count == 0) {
+            future.complete(null);
+            return future;
+        }
+        lock.lock();
+        try {
+            ensureOpen();
+            // 一次调用的规则不拆分到多个批次，超过上限时只等待队列清空
+            while (pending > 0 && pending + count > maxPending) {
+                notFull.awaitUninterruptibly();
+                ensureOpen();
+            }
+            RuleBatch batch = queue.peekLast() instanceof RuleBatch last && last.ops.size() < maxBatchSize ? last : null;
+            if (batch == null) {
+                batch = new RuleBatch();
+                queue.addLast(batch);
+            }
+            for (List<String> rule : removes) {
+                put(batch, ptype, rule, PolicyChange.Operation.REMOVE);
+            }
+            for (List<String> rule : adds) {
+                put(batch, ptype, rule, PolicyChange.Operation.ADD);
+            }
+            batch.futures.add(future);
+            startLocked(batch);
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    private CompletableFuture<Void> enqueue(Runnable action) {
+        Barrier barrier = new Barrier(action);
+        lock.lock();
+        try {
+            ensureOpen();
+            queue.addLast(barrier);
+            startLocked(barrier);
+        } finally {
+            lock.unlock();
+        }
+        return barrier.future;
+    }
+
+    private void put(RuleBatch batch, String ptype, List<String> rule, PolicyChange.Operation operation) {
+        if (CollUtil.isEmpty(rule)) {
+            return;
+        }
+        submitted.incrementAndGet();
+        int dropped = coalesce(batch.ops, new PolicyChange(operation, ptype, 0, List.copyOf(rule)));
+        coalesced.addAndGet(dropped);
+        pending += 1 - dropped;
+    }
+
+    /**
+     * 把变更追加到末尾，并去掉被它覆盖的同一规则的旧变更：删除覆盖之前的增删，新增只覆盖之前的新增。
+     * 删除之后的新增不能省略删除，非哈希模式下删除按前缀匹配，还会删掉以该规则开头的更长规则
+     *
+     * @param ops    按调用顺序排列的变更
+     * @param change 新的变更
+     * @return 去掉的旧变更数
+     */
+    private static int coalesce(Map<List<String>, PolicyChange> ops, PolicyChange change) {
+        int dropped = 0;
+        if (ops.remove(key(PolicyChange.Operation.ADD, change)) != null) {
+            dropped++;
+        }
+        if (change.getOperation() == PolicyChange.Operation.REMOVE && ops.remove(key(PolicyChange.Operation.REMOVE, change)) != null) {
+            dropped++;
+        }
+        ops.put(key(change.getOperation(), change), change);
+        return dropped;
+    }
+
+    private static List<String> key(PolicyChange.Operation operation, PolicyChange change) {
+        List<String> key = new ArrayList<>(change.getValues().size() + 2);
+        key.add(operation.name());
+        key.add(change.getPtype());
+        key.addAll(change.getValues());
+        return key;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new CasbinAdapterException("write-behind adapter is closed");
+        }
+    }
+
+    /**
+     * 启动提交任务；被线程池拒绝时撤回刚加入队列的内容，调用方收到异常后变更不会再被提交
+     *
+     * @param added 刚加入队列的批次或屏障；提交任务未运行时队列中只有它
+     */
+    private void startLocked(Object added) {
+        if (running) {
+            return;
+        }
+        running = true;
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            running = false;
+            queue.remove(added);
+            if (added instanceof RuleBatch batch) {
+                pending -= batch.ops.size();
+                notFull.signalAll();
+            }
+            throw new CasbinAdapterException("casbin write-behind executor rejected the commit task", e);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Object head;
+            List<RuleBatch> group = new ArrayList<>();
+            lock.lock();
+            try {
+                head = queue.peekFirst();
+                if (head == null) {
+                    running = false;
+                    return;
+                }
+                if (head instanceof RuleBatch) {
+                    Metrics.value(Metrics.ADAPTER_PENDING, pending);
+                    int size = 0;
+                    while (queue.peekFirst() instanceof RuleBatch batch && (group.isEmpty() || size + batch.ops.size() <= maxBatchSize)) {
+                        queue.pollFirst();
+                        group.add(batch);
+                        size += batch.ops.size();
+                    }
+                } else {
+                    queue.pollFirst();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (head instanceof Barrier barrier) {
+                runBarrier(barrier);
+            } else {
+                commit(group);
+            }
+        }
+    }
+
+    private void runBarrier(Barrier barrier) {
+        try {
+            if (barrier.action != null) {
+                barrier.action.run();
+            }
+            barrier.future.complete(null);
+        } catch (Throwable t) {
+            log.error("casbin write-behind operation failed", t);
+            barrier.future.completeExceptionally(t);
+        }
+    }
+
+    private void commit(List<RuleBatch> group) {
+        // 批次之间按顺序合并，规则与批次内相同
+        Map<List<String>, PolicyChange> ops = new LinkedHashMap<>();
+        for (RuleBatch batch : group) {
+            for (PolicyChange change : batch.ops.values()) {
+                coalesced.addAndGet(coalesce(ops, change));
+            }
+        }
+        Throwable error = null;
+        try {
+            delegate.commitChanges(new ArrayList<>(ops.values()));
+            committed.addAndGet(ops.size());
+            transactions.incrementAndGet();
+        } catch (Throwable t) {
+            log.error("casbin write-behind commit of {} rules failed", ops.size(), t);
+            error = t;
+        }
+        int released = 0;
+        for (RuleBatch batch : group) {
+            released += batch.ops.size();
+        }
+        lock.lock();
+        try {
+            pending -= released;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (RuleBatch batch : group) {
+            for (CompletableFuture<Void> future : batch.futures) {
+                if (error == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(error);
+                }
+            }
+        }
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof CasbinAdapterException ce) {
+                throw ce;
+            }
+            throw new CasbinAdapterException("casbin write-behind 提交失败", e.getCause());
+        }
+    }
+
+    /**
+     * 一批按规则合并、保持调用顺序的增删
+     */
+    private static final class RuleBatch {
+        private final Map<List<String>, PolicyChange> ops = new LinkedHashMap<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    }
+
+    /**
+     * 需要等待之前的变更提交后单独执行的操作，action 为 null 时只作为刷新标记
+     */
+    private static final class Barrier {
+        private final Runnable action;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Barrier(Runnable action) {
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package cn.mapleafgo.jcasbin.db;
+
+import cn.hutool.db.dialect.DialectName;
+import lombok.Getter;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * casbin 策略表结构描述，负责规则与 JDBC 参数、结果集之间的直接映射。
+ * <p>
+ * 所有 SQL 在构造时一次性拼好，映射过程不使用反射、Bean 内省或逐行格式化字符串。
+ * <p>
+ * 开启 ruleHash 后表中额外保存 (ptype, v0..vN) 的摘要列 {@code rule_hash} 并建立唯一索引，
+ * 新增规则改为单条幂等插入，删除规则改为按摘要的索引查找。注意此模式下按规则删除是精确匹配，
+ * 不再像默认模式那样删除以该规则为前缀的更长规则。
+ *
+ * @author mapleafgo
+ */
+public class CasbinTable {
+    /**
+     * 默认规则字段列数（v0..v4）
+     */
+    public static final int DEFAULT_FIELD_COUNT = 5;
+    /**
+     * 默认规则字段宽度
+     */
+    public static final int DEFAULT_FIELD_LENGTH = 100;
+    /**
+     * 规则字段列数上限
+     */
+    public static final int MAX_FIELD_COUNT = 12;
+    private static final String[] FIELD_COLUMNS = {"v0", "v1", "v2", "v3", "v4", "v5", "v6", "v7", "v8", "v9", "v10", "v11"};
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Getter
+    private final String name;
+    /**
+     * 规则字段列数
+     */
+    @Getter
+    private final int fieldCount;
+    /**
+     * 规则字段宽度
+     */
+    @Getter
+    private final int fieldLength;
+    /**
+     * 是否使用规则摘要列去重
+     */
+    @Getter
+    private final boolean ruleHash;
+    private final String fieldColumns;
+    private final String columns;
+    private final String values;
+    private final String selectSql;
+    private final String selectWithIdSql;
+    private final String insertSql;
+    private final String[] deleteSql;
+    private final String deleteByHashSql;
+    private final String deleteByIdSql;
+
+    /**
+     * @param name 表名，调用方需保证已经过安全校验
+     */
+    public CasbinTable(String name) {
+        this(name, false);
+    }
+
+    /**
+     * @param name     表名，调用方需保证已经过安全校验
+     * @param ruleHash 是否使用规则摘要列去重
+     */
+    public CasbinTable(String name, boolean ruleHash) {
+        this(name, DEFAULT_FIELD_COUNT, DEFAULT_FIELD_LENGTH, ruleHash);
+    }
+
+    /**
+     * @param name        表名，调用方需保证已经过安全校验
+     * @param fieldCount  规则字段列数，1 ~ {@value MAX_FIELD_COUNT}
+     * @param fieldLength 规则字段宽度
+     * @param ruleHash    是否使用规则摘要列去重
+     */
+    public CasbinTable(String name, int fieldCount, int fieldLength, boolean ruleHash) {
+        if (fieldCount < 1 || fieldCount > MAX_FIELD_COUNT) {
+            throw new IllegalArgumentException("fieldCount must be between 1 and " + MAX_FIELD_COUNT);
+        }
+        if (fieldLength < 1) {
+            throw new IllegalArgumentException("fieldLength must be positive");
+        }
+        this.name = name;
+        this.fieldCount = fieldCount;
+        this.fieldLength = fieldLength;
+        this.ruleHash = ruleHash;
+        List<String> fields = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            fields.add(FIELD_COLUMNS[i]);
+        }
+        this.fieldColumns = String.join(", ", fields);
+        this.columns = "id, ptype, " + fieldColumns + (ruleHash ? ", rule_hash" : "");
+        this.values = String.join(", ", Collections.nCopies(fieldCount + (ruleHash ? 3 : 2), "?"));
+        this.selectSql = "SELECT ptype, " + fieldColumns + " FROM " + name;
+        this.selectWithIdSql = "SELECT id, ptype, " + fieldColumns + " FROM " + name;
+        this.insertSql = "INSERT INTO " + name + " (" + columns + ") VALUES (" + values + ")";
+        this.deleteSql = new String[fieldCount + 1];
+        for (int i = 0; i <= fieldCount; i++) {
+            this.deleteSql[i] = "DELETE FROM " + name + " WHERE " + ruleCondition(i);
+        }
+        this.deleteByHashSql = "DELETE FROM " + name + " WHERE rule_hash = ?";
+        this.deleteByIdSql = "DELETE FROM " + name + " WHERE id = ?";
+    }
+
+    /**
+     * 获取第 index 个规则字段的列名
+     *
+     * @param index 字段下标，从 0 开始
+     * @return 列名
+     */
+    public static String fieldColumn(int index) {
+        return FIELD_COLUMNS[index];
+    }
+
+    /**
+     * @return 规则字段列名，以逗号分隔
+     */
+    public String fieldColumns() {
+        return fieldColumns;
+    }
+
+    /**
+     * @return 查询全部规则的语句，列顺序为 ptype, v0..vN
+     */
+    public String selectSql() {
+        return selectSql;
+    }
+
+    /**
+     * @param condition WHERE 条件，为空时不加条件
+     * @return 查询满足条件规则的语句，列顺序为 ptype, v0..vN
+     */
+    public String selectSql(String condition) {
+        if (condition == null || condition.isEmpty()) {
+            return selectSql;
+        }
+        return selectSql + " WHERE " + condition;
+    }
+
+    /**
+     * @return 查询全部规则及主键的语句，列顺序为 id, ptype, v0..vN
+     */
+    public String selectWithIdSql() {
+        return selectWithIdSql;
+    }
+
+    /**
+     * @return 按主键闭区间查询规则的语句，按主键排序，参数为区间下界与上界，列顺序为 ptype, v0..vN
+     */
+    public String selectRangeSql() {
+        return selectSql + " WHERE id >= ? AND id <= ? ORDER BY id";
+    }
+
+    /**
+     * @return 查询最小与最大主键的语句
+     */
+    public String idRangeSql() {
+        return "SELECT MIN(id), MAX(id) FROM " + name;
+    }
+
+    /**
+     * @return 统计规则数与最大主键的语句，可作为表内容的廉价指纹：新增会改变最大主键，删除会改变行数
+     */
+    public String statSql() {
+        return "SELECT COUNT(*), MAX(id) FROM " + name;
+    }
+
+    /**
+     * @return 按 ptype 统计规则数的语句，列顺序为 ptype, count
+     */
+    public String countByPtypeSql() {
+        return "SELECT ptype, COUNT(*) FROM " + name + " GROUP BY ptype";
+    }
+
+    /**
+     * @return 插入单条规则的语句，参数见 {@link #bindInsert(PreparedStatement, long, String, List)}
+     */
+    public String insertSql() {
+        return insertSql;
+    }
+
+    /**
+     * 幂等插入语句，规则已存在时不做任何操作，参数与 {@link #insertSql()} 相同
+     *
+     * @param dialectName Hutool 方言名，见 {@link DialectName}
+     * @return 幂等插入语句；未开启 ruleHash 或数据库不支持时返回 null
+     */
+    public String upsertSql(String dialectName) {
+        if (!ruleHash || dialectName == null) {
+            return null;
+        }
+        if (SchemaManager.isSqlServer(dialectName)) {
+            // 唯一索引开启了 IGNORE_DUP_KEY，重复键的插入被忽略而不是报错
+            return insertSql;
+        }
+        return switch (DialectName.valueOf(dialectName)) {
+            case MYSQL -> "INSERT IGNORE INTO " + name + " (" + columns + ") VALUES (" + values + ")";
+            case POSTGRESQL -> insertSql + " ON CONFLICT (rule_hash) DO NOTHING";
+            case SQLITE3 -> "INSERT OR IGNORE INTO " + name + " (" + columns + ") VALUES (" + values + ")";
+            case H2 -> h2InsertIfAbsentSql();
+            case ORACLE -> "INSERT /*+ IGNORE_ROW_ON_DUPKEY_INDEX(" + name + ", " + hashIndex() + ") */ INTO "
+                + name + " (" + columns + ") VALUES (" + values + ")";
+            default -> null;
+        };
+    }
+
+    /**
+     * H2 的 {@code MERGE ... KEY} 会覆盖已存在的行并改变其 id，这里用标准 MERGE 只在摘要不存在时插入
+     */
+    private String h2InsertIfAbsentSql() {
+        List<String> source = new ArrayList<>(fieldCount + 3);
+        List<String> target = new ArrayList<>(fieldCount + 3);
+        source.add("CAST(? AS BIGINT)");
+        for (int i = 0; i < fieldCount + 2; i++) {
+            source.add("CAST(? AS VARCHAR)");
+        }
+        for (String column : columns.split(", ")) {
+            target.add("s." + column);
+        }
+        return "MERGE INTO " + name + " t USING (VALUES (" + String.join(", ", source) + ")) s (" + columns + ")"
+            + " ON t.rule_hash = s.rule_hash WHEN NOT MATCHED THEN INSERT (" + columns + ") VALUES (" + String.join(", ", target) + ")";
+    }
+
+    /**
+     * 清空表的语句。只有 PostgreSQL 与 SQL Server 的 TRUNCATE 可以参与事务，其余数据库使用 DELETE
+     *
+     * @param dialectName Hutool 方言名，见 {@link DialectName}
+     * @return 清空表的语句
+     */
+    public String truncateSql(String dialectName) {
+        if (DialectName.POSTGRESQL.name().equals(dialectName) || SchemaManager.isSqlServer(dialectName)) {
+            return "TRUNCATE TABLE " + name;
+        }
+        return "DELETE FROM " + name;
+    }
+
+    /**
+     * 按规则精确删除的语句，只匹配 ptype 与规则中实际存在的字段
+     *
+     * @param fieldCount 规则字段数
+     * @return 删除语句，参数见 {@link #bindRule(PreparedStatement, int, String, List)}
+     */
+    public String deleteSql(int fieldCount) {
+        return deleteSql[Math.min(fieldCount, this.fieldCount)];
+    }
+
+    /**
+     * 判断按规则删除时某条规则是否会被一并删除，供回放变更时与数据库保持一致：
+     * 开启 ruleHash 时精确匹配；否则只比较表中存在的列，以被删除规则为前缀的更长规则同样会被删除
+     *
+     * @param removed 被删除的规则，不含 ptype
+     * @param rule    待判断的规则，不含 ptype
+     * @return 会被删除时返回 true
+     */
+    public boolean removes(List<String> removed, List<String> rule) {
+        if (ruleHash) {
+            return removed.equals(rule);
+        }
+        int size = Math.min(removed.size(), fieldCount);
+        return rule.size() >= size && rule.subList(0, size).equals(removed.subList(0, size));
+    }
+
+    /**
+     * @return 按规则摘要删除的语句，参数为 {@link #ruleHash(String, List)}
+     */
+    public String deleteByHashSql() {
+        return deleteByHashSql;
+    }
+
+    /**
+     * @return 按主键删除的语句
+     */
+    public String deleteByIdSql() {
+        return deleteByIdSql;
+    }
+
+    /**
+     * 按字段条件删除的语句，fieldValues 中的 "" 表示不限制该字段
+     *
+     * @param ptype       策略类型
+     * @param fieldIndex  起始字段下标
+     * @param fieldValues 字段值
+     * @param params      参数列表，按顺序追加
+     * @return 删除语句
+     * @throws CasbinAdapterException 非空字段值超出表的列数时抛出，避免忽略该条件后扩大删除范围
+     */
+    public String deleteFilteredSql(String ptype, int fieldIndex, String[] fieldValues, List<Object> params) {
+        StringBuilder sb = new StringBuilder("DELETE FROM ").append(name).append(" WHERE ptype = ?");
+        params.add(ptype);
+        for (int i = 0; i < fieldValues.length; i++) {
+            if (fieldValues[i] == null || fieldValues[i].isEmpty()) {
+                continue;
+            }
+            if (fieldIndex + i < 0 || fieldIndex + i >= fieldCount) {
+                throw new CasbinAdapterException("过滤字段 v" + (fieldIndex + i) + " 超出策略表 " + name + " 的列数 " + fieldCount);
+            }
+            sb.append(" AND ").append(FIELD_COLUMNS[fieldIndex + i]).append(" = ?");
+            params.add(fieldValues[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成匹配 ptype 与前 fieldCount 个字段的条件
+     *
+     * @param fieldCount 参与匹配的字段数
+     * @return 形如 {@code ptype = ? AND v0 = ?} 的条件
+     */
+    public String ruleCondition(int fieldCount) {
+        StringBuilder sb = new StringBuilder("ptype = ?");
+        for (int i = 0; i < Math.min(fieldCount, this.fieldCount); i++) {
+            sb.append(" AND ").append(FIELD_COLUMNS[i]).append(" = ?");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 读取结果集当前行为规则，遇到第一个 null 字段即截止
+     *
+     * @param rs     结果集
+     * @param column ptype 所在列，其后依次为 v0..vN
+     * @return 列表形式规则，第一个元素为 ptype；ptype 为空时返回空列表
+     * @throws SQLException 数据库操作异常
+     */
+    public List<String> readRule(ResultSet rs, int column) throws SQLException {
+        String ptype = rs.getString(column);
+        if (ptype == null) {
+            return List.of();
+        }
+        List<String> rule = new ArrayList<>(fieldCount + 1);
+        rule.add(ptype);
+        for (int i = 1; i <= fieldCount; i++) {
+            String value = rs.getString(column + i);
+            if (value == null) {
+                break;
+            }
+            rule.add(value);
+        }
+        return rule;
+    }
+
+    /**
+     * 绑定插入参数
+     *
+     * @param ps    由 {@link #insertSql()} 创建的语句
+     * @param id    主键
+     * @param ptype 策略类型
+     * @param rule  策略规则，不含 ptype
+     * @throws SQLException 数据库操作异常
+     */
+    public void bindInsert(PreparedStatement ps, long id, String ptype, List<String> rule) throws SQLException {
+        ps.setLong(1, id);
+        ps.setString(2, ptype);
+        int size = Math.min(rule.size(), fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            if (i < size) {
+                ps.setString(i + 3, rule.get(i));
+            } else {
+                ps.setNull(i + 3, Types.VARCHAR);
+            }
+        }
+        if (ruleHash) {
+            ps.setString(fieldCount + 3, ruleHash(ptype, rule));
+        }
+    }
+
+    /**
+     * 绑定 {@link #ruleCondition(int)} 生成的条件参数
+     *
+     * @param ps    语句
+     * @param index 起始参数下标
+     * @param ptype 策略类型
+     * @param rule  策略规则，不含 ptype
+     * @return 下一个可用的参数下标
+     * @throws SQLException 数据库操作异常
+     */
+    public int bindRule(PreparedStatement ps, int index, String ptype, List<String> rule) throws SQLException {
+        ps.setString(index++, ptype);
+        int size = Math.min(rule.size(), fieldCount);
+        for (int i = 0; i < size; i++) {
+            ps.setString(index++, rule.get(i));
+        }
+        return index;
+    }
+
+    /**
+     * 计算规则摘要：各字段以「长度:值」拼接后取 MD5，共 32 个十六进制字符
+     *
+     * @param ptype 策略类型
+     * @param rule  策略规则，不含 ptype，超出列数的字段不参与计算
+     * @return 规则摘要
+     */
+    public String ruleHash(String ptype, List<String> rule) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(ptype.length()).append(':').append(ptype);
+        for (int i = 0; i < Math.min(rule.size(), fieldCount); i++) {
+            String value = rule.get(i);
+            sb.append(value.length()).append(':').append(value);
+        }
+        byte[] digest = md5().digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @return 规则摘要唯一索引名
+     */
+    public String hashIndex() {
+        return name + "_hash_uk";
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
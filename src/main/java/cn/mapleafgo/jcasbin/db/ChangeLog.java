@@ -0,0 +1,245 @@
+package cn.mapleafgo.jcasbin.db;
+
+import cn.hutool.db.AbstractDb;
+import cn.mapleafgo.jcasbin.entity.PolicyChange;
+import lombok.Getter;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 策略变更日志：{@code {table}_changelog} 按版本号记录每次策略变更，{@code {table}_version} 只有一行，
+ * 保存最新版本号与已压缩到的版本号。
+ * <p>
+ * 写入方在修改策略表的同一事务中调用 {@link #append}，版本行上的更新锁使写入方串行分配版本号，
+ * 因此已提交的日志版本号总是连续的；读取方据此只拉取自己位置之后的变更，发现断档或位置早于压缩点时需要全量重新加载。
+ * <p>
+ * PostgreSQL 上追加时会在同一事务中向 {@link #notifyChannel} 发送 NOTIFY，提交后送达监听方，回滚时丢弃。
+ *
+ * @author mapleafgo
+ */
+public class ChangeLog {
+    private final DataSource dataSource;
+    /**
+     * 策略表结构，日志的字段列数与宽度与其一致
+     */
+    @Getter
+    private final CasbinTable table;
+    @Getter
+    private final String logTable;
+    @Getter
+    private final String versionTable;
+    private final String insertSql;
+    private final String selectSql;
+    private final String channel;
+    private final AtomicLong lastAppended = new AtomicLong();
+    private volatile Boolean postgres;
+
+    /**
+     * @param dataSource 数据源
+     * @param table      策略表结构，表名需已经过安全校验
+     */
+    public ChangeLog(DataSource dataSource, CasbinTable table) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.logTable = table.getName() + "_changelog";
+        this.versionTable = table.getName() + "_version";
+        this.insertSql = "INSERT INTO " + logTable + " (version, op, ptype, field_index, " + table.fieldColumns() + ") VALUES ("
+            + String.join(", ", Collections.nCopies(table.getFieldCount() + 4, "?")) + ")";
+        this.selectSql = "SELECT version, op, ptype, field_index, " + table.fieldColumns() + " FROM " + logTable
+            + " WHERE version > ? ORDER BY version";
+        this.channel = notifyChannel(table.getName());
+    }
+
+    /**
+     * PostgreSQL 上版本变更通知的 channel，未加引号的 LISTEN 标识符会被转为小写，因此统一使用小写
+     *
+     * @param tableName 策略表名
+     * @return channel 名称
+     */
+    public static String notifyChannel(String tableName) {
+        return (tableName + "_version").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 在当前事务中追加变更并分配版本号
+     *
+     * @param s       数据库会话，需与策略表的修改处于同一事务
+     * @param changes 变更，分配的版本号会回写到条目中
+     * @return 最后一条变更的版本号；changes 为空时返回 -1
+     * @throws SQLException 数据库操作异常
+     */
+    public long append(AbstractDb s, List<PolicyChange> changes) throws SQLException {
+        if (changes.isEmpty()) {
+            return -1;
+        }
+        return LeafDb.withConnection(s, conn -> {
+            // 先更新再读取，版本行在事务提交前保持锁定
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE " + versionTable + " SET current_version = current_version + ? WHERE id = 1")) {
+                ps.setLong(1, changes.size());
+                if (ps.executeUpdate() != 1) {
+                    throw new SQLException("missing version row in " + versionTable);
+                }
+            }
+            long last = currentVersion(conn);
+            long version = last - changes.size();
+            try (PreparedStatement ps = conn.prepareStatement(insertSql)) {
+                for (PolicyChange change : changes) {
+                    change.setVersion(++version);
+                    bind(ps, change);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            if (isPostgres(conn)) {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+                    ps.setString(1, channel);
+                    ps.setString(2, Long.toString(last));
+                    ps.execute();
+                }
+            }
+            lastAppended.accumulateAndGet(last, Math::max);
+            return last;
+        });
+    }
+
+    /**
+     * 本实例追加过的最大版本号，供读取方判断只读副本是否已包含本实例的写入；
+     * 追加后事务回滚时该版本号不会提交，可能大于数据库中的最新版本
+     *
+     * @return 版本号，未追加过时为 0
+     */
+    public long getLastAppendedVersion() {
+        return lastAppended.get();
+    }
+
+    /**
+     * @return 最新的版本号，没有任何变更时为 0
+     * @throws SQLException 数据库操作异常
+     */
+    public long currentVersion() throws SQLException {
+        return currentVersion(dataSource);
+    }
+
+    /**
+     * 读取指定数据源（例如只读副本）上的最新版本号
+     *
+     * @param source 数据源
+     * @return 最新的版本号，没有任何变更时为 0
+     * @throws SQLException 数据库操作异常
+     */
+    public long currentVersion(DataSource source) throws SQLException {
+        return LeafDb.withConnection(LeafDb.use(source), this::currentVersion);
+    }
+
+    /**
+     * 按版本顺序读取 after 之后的变更
+     *
+     * @param after     读取方已应用到的版本号
+     * @param fetchSize 每批从数据库拉取的行数
+     * @param consumer  变更消费者，返回 false 时停止读取
+     * @return 读取是否连续：after 早于压缩点或日志出现断档时返回 false，此时读取方需要全量重新加载
+     * @throws SQLException 数据库操作异常
+     */
+    public boolean read(long after, int fetchSize, Predicate<PolicyChange> consumer) throws SQLException {
+        boolean[] continuous = {true};
+        LeafDb.use(dataSource).tx(db -> {
+            long compacted = LeafDb.withConnection(db, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT compacted_version FROM " + versionTable + " WHERE id = 1");
+                     ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+            if (after < compacted) {
+                continuous[0] = false;
+                return;
+            }
+            long[] expected = {after + 1};
+            boolean[] stopped = {false};
+            LeafDb.fetch(db, selectSql, fetchSize, rs -> {
+                if (stopped[0]) {
+                    return;
+                }
+                PolicyChange change = readChange(rs);
+                if (change.getVersion() != expected[0]) {
+                    continuous[0] = false;
+                    stopped[0] = true;
+                    return;
+                }
+                expected[0]++;
+                stopped[0] = !consumer.test(change);
+            }, after);
+        });
+        return continuous[0];
+    }
+
+    /**
+     * 删除 version 及之前的变更，并将压缩点推进到 version；位置早于压缩点的读取方将全量重新加载
+     *
+     * @param version 压缩到的版本号，超过最新版本号时按最新版本号处理
+     * @return 删除的条目数
+     * @throws SQLException 数据库操作异常
+     */
+    public int compact(long version) throws SQLException {
+        int[] deleted = {0};
+        LeafDb.use(dataSource).tx(db -> {
+            long upTo = Math.min(version, LeafDb.withConnection(db, this::currentVersion));
+            db.execute("UPDATE " + versionTable + " SET compacted_version = ? WHERE id = 1 AND compacted_version < ?", upTo, upTo);
+            deleted[0] = db.execute("DELETE FROM " + logTable + " WHERE version <= ?", upTo);
+        });
+        return deleted[0];
+    }
+
+    private long currentVersion(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT current_version FROM " + versionTable + " WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private boolean isPostgres(Connection conn) throws SQLException {
+        Boolean pg = postgres;
+        if (pg == null) {
+            pg = "PostgreSQL".equals(conn.getMetaData().getDatabaseProductName());
+            postgres = pg;
+        }
+        return pg;
+    }
+
+    private void bind(PreparedStatement ps, PolicyChange change) throws SQLException {
+        ps.setLong(1, change.getVersion());
+        ps.setString(2, change.getOperation().name());
+        ps.setString(3, change.getPtype());
+        ps.setInt(4, change.getFieldIndex());
+        List<String> values = change.getValues() == null ? List.of() : change.getValues();
+        for (int i = 0; i < table.getFieldCount(); i++) {
+            if (i < values.size()) {
+                ps.setString(i + 5, values.get(i));
+            } else {
+                ps.setNull(i + 5, Types.VARCHAR);
+            }
+        }
+    }
+
+    private PolicyChange readChange(ResultSet rs) throws SQLException {
+        List<String> values = new ArrayList<>(table.getFieldCount());
+        for (int i = 0; i < table.getFieldCount(); i++) {
+            String value = rs.getString(i + 5);
+            if (value == null) {
+                break;
+            }
+            values.add(value);
+        }
+        return new PolicyChange(rs.getLong(1), PolicyChange.Operation.valueOf(rs.getString(2)), rs.getString(3), rs.getInt(4), values);
+    }
+}
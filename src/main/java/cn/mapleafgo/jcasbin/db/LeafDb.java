@@ -1,12 +1,17 @@
 package cn.mapleafgo.jcasbin.db;
 
 import cn.hutool.core.lang.func.VoidFunc1;
+import cn.hutool.db.AbstractDb;
 import cn.hutool.db.Db;
+import cn.hutool.db.StatementUtil;
 import cn.hutool.db.transaction.TransactionLevel;
+import cn.mapleafgo.jcasbin.metrics.Metrics;
 
 import javax.sql.DataSource;
 import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 /**
@@ -62,8 +67,28 @@ public class LeafDb extends Db {
         super.closeConnection(conn);
     }
 
+    /**
+     * 启用 {@link Metrics} 时记录获取连接并开启事务的耗时，以及事务占用连接的时间
+     */
     @Override
     public LeafDb tx(TransactionLevel level, VoidFunc1<Db> callback) throws SQLException {
+        long start = Metrics.start();
+        if (start == 0) {
+            return doTx(level, callback);
+        }
+        long[] begun = new long[1];
+        try {
+            return doTx(level, db -> {
+                Metrics.time(Metrics.DB_CONNECTION_ACQUIRE, start);
+                begun[0] = System.nanoTime();
+                callback.call(db);
+            });
+        } finally {
+            Metrics.time(Metrics.DB_TRANSACTION, begun[0]);
+        }
+    }
+
+    private LeafDb doTx(TransactionLevel level, VoidFunc1<Db> callback) throws SQLException {
         try {
             Class<?> txMgr = Class.forName("org.springframework.transaction.support.TransactionSynchronizationManager");
             java.lang.reflect.Method isActive = txMgr.getMethod("isActualTransactionActive");
@@ -79,4 +104,97 @@ public class LeafDb extends Db {
         }
         return (LeafDb) super.tx(level, callback);
     }
+
+    /**
+     * 以游标方式流式读取查询结果，逐行交给 handler 处理，不在内存中保留完整的结果集。
+     * <p>
+     * 查询放在事务中执行：PostgreSQL 等驱动只有在关闭自动提交时才会按 fetchSize 分批拉取；
+     * MySQL 需要在连接串中开启 {@code useCursorFetch=true} 才会使用服务端游标。
+     *
+     * @param sql       查询语句
+     * @param fetchSize 每批从数据库拉取的行数，小于等于 0 时使用驱动默认值
+     * @param handler   行处理器
+     * @param params    查询参数
+     * @throws SQLException 数据库操作异常
+     */
+    public void fetch(String sql, int fetchSize, RowHandler handler, Object... params) throws SQLException {
+        tx(db -> fetch(db, sql, fetchSize, handler, params));
+    }
+
+    /**
+     * 在 db 当前使用的连接上以游标方式流式读取查询结果，用于已处于事务中的场景
+     *
+     * @param db        数据库会话
+     * @param sql       查询语句
+     * @param fetchSize 每批从数据库拉取的行数，小于等于 0 时使用驱动默认值
+     * @param handler   行处理器
+     * @param params    查询参数
+     * @throws SQLException 数据库操作异常
+     * @see #fetch(String, int, RowHandler, Object...)
+     */
+    public static void fetch(AbstractDb db, String sql, int fetchSize, RowHandler handler, Object... params) throws SQLException {
+        withConnection(db, conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                StatementUtil.fillParams(ps, params);
+                if (fetchSize > 0) {
+                    ps.setFetchSize(fetchSize);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.handle(rs);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 在 db 当前使用的连接上执行 JDBC 操作，处于事务中时复用事务连接
+     *
+     * @param db       数据库会话
+     * @param callback 连接回调
+     * @param <T>      返回值类型
+     * @return 回调返回值
+     * @throws SQLException 数据库操作异常
+     */
+    public static <T> T withConnection(AbstractDb db, ConnectionCallback<T> callback) throws SQLException {
+        Connection conn = db.getConnection();
+        try {
+            return callback.call(conn);
+        } finally {
+            db.closeConnection(conn);
+        }
+    }
+
+    /**
+     * 结果集行处理器
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * 处理当前行
+         *
+         * @param rs 已定位到当前行的结果集
+         * @throws SQLException 数据库操作异常
+         */
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * 连接回调
+     *
+     * @param <T> 返回值类型
+     */
+    @FunctionalInterface
+    public interface ConnectionCallback<T> {
+        /**
+         * 使用连接执行操作
+         *
+         * @param conn 数据库连接
+         * @return 执行结果
+         * @throws SQLException 数据库操作异常
+         */
+        T call(Connection conn) throws SQLException;
+    }
 }
@@ -0,0 +1,329 @@
+package cn.mapleafgo.jcasbin.db;
+
+import cn.hutool.db.dialect.DialectFactory;
+import cn.hutool.db.dialect.DialectName;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * casbin 策略表的建表、索引与迁移管理，按数据库方言生成 DDL。
+ * <p>
+ * 表不存在时按 {@link CasbinTable} 的描述建表；表已存在时在原表上补齐缺失的规则字段列、
+ * 放宽宽度不足的列，并在开启 ruleHash 时回填摘要列、清理重复规则后建立唯一索引。
+ * 同时建立适配器访问路径所需的 (ptype, v0)、(ptype, v1) 复合索引；开启变更日志时另见 {@link #initChangeLog(ChangeLog)}。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class SchemaManager {
+    private static final int BACKFILL_PAGE_SIZE = 1000;
+
+    private final DataSource dataSource;
+    private final CasbinTable table;
+    /**
+     * Hutool 方言名，见 {@link DialectName}
+     */
+    @Getter
+    private final String dialectName;
+
+    public SchemaManager(DataSource dataSource, CasbinTable table) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.dialectName = DialectFactory.getDialect(dataSource).dialectName();
+    }
+
+    /**
+     * 建表或迁移已有表，并建立索引
+     *
+     * @throws SQLException 数据库操作异常
+     */
+    public void init() throws SQLException {
+        Map<String, Integer> columns = columns(table.getName());
+        if (columns.isEmpty()) {
+            execute(createTableSql());
+        } else {
+            migrate(columns);
+        }
+        createIndexes();
+    }
+
+    /**
+     * 建立变更日志表与版本表，已存在时跳过
+     *
+     * @param changeLog 变更日志
+     * @throws SQLException 数据库操作异常
+     */
+    public void initChangeLog(ChangeLog changeLog) throws SQLException {
+        if (columns(changeLog.getLogTable()).isEmpty()) {
+            StringBuilder sb = new StringBuilder("CREATE TABLE ").append(changeLog.getLogTable()).append(" (\n")
+                .append("    version     ").append(bigintType()).append(" NOT NULL PRIMARY KEY,\n")
+                .append("    op          ").append(varcharType(16)).append(" NOT NULL,\n")
+                .append("    ptype       ").append(varcharType(10)).append(" DEFAULT NULL,\n")
+                .append("    field_index int NOT NULL");
+            for (int i = 0; i < table.getFieldCount(); i++) {
+                sb.append(",\n    ").append(CasbinTable.fieldColumn(i)).append("          ").append(varcharType(table.getFieldLength())).append(" DEFAULT NULL");
+            }
+            execute(sb.append("\n)").toString());
+        }
+        if (columns(changeLog.getVersionTable()).isEmpty()) {
+            execute("CREATE TABLE " + changeLog.getVersionTable() + " (\n"
+                + "    id                int NOT NULL PRIMARY KEY,\n"
+                + "    current_version   " + bigintType() + " NOT NULL,\n"
+                + "    compacted_version " + bigintType() + " NOT NULL\n)");
+        }
+        LeafDb db = LeafDb.use(dataSource);
+        if (db.queryNumber("SELECT COUNT(*) FROM " + changeLog.getVersionTable() + " WHERE id = 1").intValue() == 0) {
+            try {
+                execute("INSERT INTO " + changeLog.getVersionTable() + " (id, current_version, compacted_version) VALUES (1, 0, 0)");
+            } catch (SQLException e) {
+                // 多个实例同时初始化时，版本行可能已被其他实例写入
+                if (db.queryNumber("SELECT COUNT(*) FROM " + changeLog.getVersionTable() + " WHERE id = 1").intValue() == 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成建表语句
+     *
+     * @return 建表语句
+     */
+    public String createTableSql() {
+        StringBuilder sb = new StringBuilder("CREATE TABLE ").append(table.getName()).append(" (\n")
+            .append("    id    ").append(bigintType()).append(" NOT NULL PRIMARY KEY,\n")
+            .append("    ptype ").append(varcharType(10)).append(" NOT NULL");
+        for (int i = 0; i < table.getFieldCount(); i++) {
+            sb.append(",\n    ").append(CasbinTable.fieldColumn(i)).append("    ").append(varcharType(table.getFieldLength())).append(" DEFAULT NULL");
+        }
+        if (table.isRuleHash()) {
+            sb.append(",\n    rule_hash char(32) NOT NULL");
+        }
+        return sb.append("\n)").toString();
+    }
+
+    private void migrate(Map<String, Integer> columns) throws SQLException {
+        for (int i = 0; i < table.getFieldCount(); i++) {
+            String column = CasbinTable.fieldColumn(i);
+            Integer size = columns.get(column);
+            if (size == null) {
+                log.info("casbin schema: add column {}.{}", table.getName(), column);
+                execute(addColumnSql(column, varcharType(table.getFieldLength())));
+            } else if (size > 0 && size < table.getFieldLength()) {
+                String sql = widenColumnSql(column);
+                if (sql != null) {
+                    log.info("casbin schema: widen column {}.{} from {} to {}", table.getName(), column, size, table.getFieldLength());
+                    execute(sql);
+                }
+            }
+        }
+        if (table.isRuleHash() && !columns.containsKey("rule_hash")) {
+            log.info("casbin schema: add column {}.rule_hash", table.getName());
+            execute(addColumnSql("rule_hash", "char(32)"));
+        }
+        if (table.isRuleHash()) {
+            backfillRuleHash();
+        }
+    }
+
+    /**
+     * 分页回填缺失的规则摘要，并删除摘要重复的多余规则，为唯一索引做准备
+     */
+    private void backfillRuleHash() throws SQLException {
+        String select = table.selectWithIdSql() + " WHERE rule_hash IS NULL AND id > ? ORDER BY id";
+        String update = "UPDATE " + table.getName() + " SET rule_hash = ? WHERE id = ?";
+        long lastId = Long.MIN_VALUE;
+        long total = 0;
+        while (true) {
+            List<Object[]> page = new ArrayList<>(BACKFILL_PAGE_SIZE);
+            long from = lastId;
+            LeafDb.use(dataSource).tx(db -> LeafDb.withConnection(db, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(select)) {
+                    ps.setLong(1, from);
+                    ps.setMaxRows(BACKFILL_PAGE_SIZE);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            List<String> rule = table.readRule(rs, 2);
+                            String hash = rule.isEmpty() ? table.ruleHash("", List.of()) : table.ruleHash(rule.get(0), rule.subList(1, rule.size()));
+                            page.add(new Object[]{hash, rs.getLong(1)});
+                        }
+                    }
+                }
+                if (!page.isEmpty()) {
+                    try (PreparedStatement ps = conn.prepareStatement(update)) {
+                        for (Object[] row : page) {
+                            ps.setString(1, (String) row[0]);
+                            ps.setLong(2, (Long) row[1]);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+                return null;
+            }));
+            if (page.isEmpty()) {
+                break;
+            }
+            total += page.size();
+            lastId = (Long) page.get(page.size() - 1)[1];
+        }
+        if (total > 0) {
+            log.info("casbin schema: backfilled rule_hash for {} rows of {}", total, table.getName());
+        }
+        if (indexes().containsKey(table.hashIndex().toLowerCase(Locale.ROOT))) {
+            return;
+        }
+        // 保留每个摘要 id 最小的一行
+        String duplicates = "SELECT rule_hash, MIN(id) FROM " + table.getName() + " GROUP BY rule_hash HAVING COUNT(*) > 1";
+        String delete = "DELETE FROM " + table.getName() + " WHERE rule_hash = ? AND id <> ?";
+        LeafDb.use(dataSource).tx(db -> LeafDb.withConnection(db, conn -> {
+            List<Object[]> rows = new ArrayList<>();
+            try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(duplicates)) {
+                while (rs.next()) {
+                    rows.add(new Object[]{rs.getString(1), rs.getLong(2)});
+                }
+            }
+            if (rows.isEmpty()) {
+                return null;
+            }
+            log.info("casbin schema: removing duplicates of {} rules from {}", rows.size(), table.getName());
+            try (PreparedStatement ps = conn.prepareStatement(delete)) {
+                for (Object[] row : rows) {
+                    ps.setString(1, (String) row[0]);
+                    ps.setLong(2, (Long) row[1]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return null;
+        }));
+    }
+
+    private void createIndexes() throws SQLException {
+        Map<String, Boolean> indexes = indexes();
+        String name = table.getName();
+        if (table.isRuleHash() && !indexes.containsKey(table.hashIndex().toLowerCase(Locale.ROOT))) {
+            String sql = "CREATE UNIQUE INDEX " + table.hashIndex() + " ON " + name + " (rule_hash)";
+            if (isSqlServer(dialectName)) {
+                // 重复键的插入被忽略而不是报错，普通 INSERT 即可幂等
+                sql += " WITH (IGNORE_DUP_KEY = ON)";
+            }
+            execute(sql);
+        }
+        for (int i = 0; i < Math.min(2, table.getFieldCount()); i++) {
+            String column = CasbinTable.fieldColumn(i);
+            String index = name + "_ptype_" + column + "_idx";
+            if (!indexes.containsKey(index.toLowerCase(Locale.ROOT))) {
+                execute("CREATE INDEX " + index + " ON " + name + " (ptype, " + column + ")");
+            }
+        }
+    }
+
+    /**
+     * 读取表的列及其宽度，表不存在时返回空
+     *
+     * @param name 表名
+     * @return 小写列名到宽度的映射
+     */
+    private Map<String, Integer> columns(String name) throws SQLException {
+        return LeafDb.withConnection(LeafDb.use(dataSource), conn -> {
+            Map<String, Integer> columns = new HashMap<>();
+            DatabaseMetaData meta = conn.getMetaData();
+            for (String tableName : candidates(name)) {
+                try (ResultSet rs = meta.getColumns(conn.getCatalog(), schema(conn), tableName, null)) {
+                    while (rs.next()) {
+                        columns.put(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT), rs.getInt("COLUMN_SIZE"));
+                    }
+                }
+                if (!columns.isEmpty()) {
+                    break;
+                }
+            }
+            return columns;
+        });
+    }
+
+    /**
+     * 读取表上已有的索引
+     *
+     * @return 小写索引名到是否唯一的映射
+     */
+    private Map<String, Boolean> indexes() throws SQLException {
+        return LeafDb.withConnection(LeafDb.use(dataSource), conn -> {
+            Map<String, Boolean> indexes = new HashMap<>();
+            DatabaseMetaData meta = conn.getMetaData();
+            for (String tableName : candidates(table.getName())) {
+                try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), schema(conn), tableName, false, true)) {
+                    while (rs.next()) {
+                        String index = rs.getString("INDEX_NAME");
+                        if (index != null) {
+                            indexes.put(index.toLowerCase(Locale.ROOT), !rs.getBoolean("NON_UNIQUE"));
+                        }
+                    }
+                }
+                if (!indexes.isEmpty()) {
+                    break;
+                }
+            }
+            return indexes;
+        });
+    }
+
+    private String addColumnSql(String column, String type) {
+        return "ALTER TABLE " + table.getName() + " ADD " + column + " " + type;
+    }
+
+    /**
+     * 放宽列宽度的语句，SQLite 不限制 varchar 长度，返回 null
+     */
+    private String widenColumnSql(String column) {
+        String type = varcharType(table.getFieldLength());
+        String name = table.getName();
+        if (isSqlServer(dialectName)) {
+            return "ALTER TABLE " + name + " ALTER COLUMN " + column + " " + type;
+        }
+        return switch (DialectName.valueOf(dialectName)) {
+            case MYSQL -> "ALTER TABLE " + name + " MODIFY " + column + " " + type;
+            case POSTGRESQL -> "ALTER TABLE " + name + " ALTER COLUMN " + column + " TYPE " + type;
+            case H2 -> "ALTER TABLE " + name + " ALTER COLUMN " + column + " SET DATA TYPE " + type;
+            case ORACLE -> "ALTER TABLE " + name + " MODIFY (" + column + " " + type + ")";
+            default -> null;
+        };
+    }
+
+    private String bigintType() {
+        return DialectName.ORACLE.name().equals(dialectName) ? "NUMBER(19)" : "bigint";
+    }
+
+    private String varcharType(int length) {
+        return (DialectName.ORACLE.name().equals(dialectName) ? "varchar2(" : "varchar(") + length + ")";
+    }
+
+    private void execute(String sql) throws SQLException {
+        LeafDb.use(dataSource).execute(sql);
+    }
+
+    static boolean isSqlServer(String dialectName) {
+        return DialectName.SQLSERVER.name().equals(dialectName) || DialectName.SQLSERVER2012.name().equals(dialectName);
+    }
+
+    /**
+     * 元数据中的表名大小写因数据库而异，依次尝试原样、大写、小写
+     */
+    private static Set<String> candidates(String name) {
+        return new LinkedHashSet<>(List.of(name, name.toUpperCase(Locale.ROOT), name.toLowerCase(Locale.ROOT)));
+    }
+
+    private static String schema(Connection conn) {
+        try {
+            return conn.getSchema();
+        } catch (Throwable e) {
+            // 部分旧驱动未实现 getSchema
+            return null;
+        }
+    }
+}
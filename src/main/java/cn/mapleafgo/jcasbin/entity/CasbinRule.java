@@ -2,8 +2,8 @@ package cn.mapleafgo.jcasbin.entity;
 
 import cn.hutool.core.util.ArrayUtil;
 import cn.hutool.core.util.IdUtil;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
 import lombok.Data;
-import lombok.SneakyThrows;
 import org.casbin.jcasbin.model.Model;
 
 import java.util.*;
@@ -40,6 +40,23 @@ public class CasbinRule {
         return new ArrayList<>(casbinRules);
     }
 
+    /**
+     * 从 Model 获取去重后的列表形式规则
+     *
+     * @param model casbin model 对象
+     * @return 规则集合，每条规则第一个元素为 ptype
+     */
+    public static Set<List<String>> transformToRules(Model model) {
+        Set<List<String>> rules = new LinkedHashSet<>();
+        model.model.values().forEach(x -> x.values().forEach(y -> y.policy.forEach(z -> {
+            List<String> rule = new ArrayList<>(z.size() + 1);
+            rule.add(y.key);
+            rule.addAll(z);
+            rules.add(rule);
+        })));
+        return rules;
+    }
+
     /**
      * 填充 casbinrule
      *
@@ -56,7 +73,7 @@ public class CasbinRule {
         HashMap<String, Object> ruleMap = new HashMap<>();
         ruleMap.put("ptype", ptype);
         for (int i = 0; i < fieldValues.length; i++) {
-            ruleMap.put(String.format("v%d", fieldIndex + i), fieldValues[i]);
+            ruleMap.put(CasbinTable.fieldColumn(fieldIndex + i), fieldValues[i]);
         }
         return ruleMap;
     }
@@ -66,12 +83,11 @@ public class CasbinRule {
      *
      * @return 返回列表形式规则
      */
-    @SneakyThrows
     public List<String> getRule() {
-        List<String> rule = new ArrayList<>();
+        List<String> rule = new ArrayList<>(CasbinTable.DEFAULT_FIELD_COUNT + 1);
         rule.add(ptype);
-        for (int i = 0; i < 5; i++) {
-            String value = (String) CasbinRule.class.getMethod(String.format("getV%d", i)).invoke(this);
+        for (int i = 0; i < CasbinTable.DEFAULT_FIELD_COUNT; i++) {
+            String value = getField(i);
             if (Objects.isNull(value)) {
                 break;
             }
@@ -85,13 +101,35 @@ public class CasbinRule {
      *
      * @param rule 权限关键字
      */
-    @SneakyThrows
     public void setRule(List<String> rule) {
         if (rule.isEmpty()) {
             return;
         }
-        for (int i = 0; i < Math.min(5, rule.size()); i++) {
-            CasbinRule.class.getMethod(String.format("setV%d", i), String.class).invoke(this, rule.get(i));
+        for (int i = 0; i < Math.min(CasbinTable.DEFAULT_FIELD_COUNT, rule.size()); i++) {
+            setField(i, rule.get(i));
+        }
+    }
+
+    private String getField(int index) {
+        return switch (index) {
+            case 0 -> v0;
+            case 1 -> v1;
+            case 2 -> v2;
+            case 3 -> v3;
+            case 4 -> v4;
+            default -> null;
+        };
+    }
+
+    private void setField(int index, String value) {
+        switch (index) {
+            case 0 -> v0 = value;
+            case 1 -> v1 = value;
+            case 2 -> v2 = value;
+            case 3 -> v3 = value;
+            case 4 -> v4 = value;
+            default -> {
+            }
         }
     }
 }
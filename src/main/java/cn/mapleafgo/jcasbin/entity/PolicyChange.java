@@ -0,0 +1,59 @@
+package cn.mapleafgo.jcasbin.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 策略变更日志条目
+ *
+ * @author mapleafgo
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PolicyChange {
+    /**
+     * 变更版本号，写入日志时分配，严格递增且连续
+     */
+    private long version;
+    private Operation operation;
+    /**
+     * 策略类型，{@link Operation#SAVE} 时为 null
+     */
+    private String ptype;
+    /**
+     * {@link Operation#REMOVE_FILTERED} 的起始字段下标，其余操作为 0
+     */
+    private int fieldIndex;
+    /**
+     * 规则字段，不含 ptype；{@link Operation#REMOVE_FILTERED} 时为过滤值，"" 表示不限制
+     */
+    private List<String> values;
+
+    public PolicyChange(Operation operation, String ptype, int fieldIndex, List<String> values) {
+        this(0, operation, ptype, fieldIndex, values);
+    }
+
+    /**
+     * @return 策略所属的 section，即 ptype 的首字母
+     */
+    public String getSec() {
+        return ptype.substring(0, 1);
+    }
+
+    /**
+     * 变更操作
+     */
+    public enum Operation {
+        ADD,
+        REMOVE,
+        REMOVE_FILTERED,
+        /**
+         * 全量保存，日志中不记录规则，回放时需要全量重新加载
+         */
+        SAVE
+    }
+}
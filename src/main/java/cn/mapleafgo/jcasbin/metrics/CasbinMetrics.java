@@ -0,0 +1,35 @@
+package cn.mapleafgo.jcasbin.metrics;
+
+/**
+ * 指标扩展点：适配器与观察者在关键路径上通过 {@link Metrics} 上报耗时、计数与分布值，
+ * 由实现类转交给具体的监控系统，例如 {@link MicrometerMetrics}、{@link JfrMetrics}。
+ * <p>
+ * 实现类会在业务线程上被同步调用，必须线程安全且足够轻量，不应抛出异常。
+ *
+ * @author mapleafgo
+ */
+public interface CasbinMetrics {
+    /**
+     * 记录一次耗时
+     *
+     * @param name  指标名，见 {@link Metrics} 中的常量
+     * @param nanos 耗时（纳秒）
+     */
+    void recordTime(String name, long nanos);
+
+    /**
+     * 计数器累加
+     *
+     * @param name   指标名
+     * @param amount 增量
+     */
+    void increment(String name, long amount);
+
+    /**
+     * 记录一个分布值，例如行数、字节数、批大小、队列深度
+     *
+     * @param name  指标名
+     * @param value 取值
+     */
+    void recordValue(String name, long value);
+}
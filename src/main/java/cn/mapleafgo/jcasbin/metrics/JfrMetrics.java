@@ -0,0 +1,84 @@
+package cn.mapleafgo.jcasbin.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR 绑定：每次上报提交一个 JFR 事件，可在 JDK Mission Control 中与 GC、锁、IO 事件对照查看。
+ * <p>
+ * 事件默认开启、不记录调用栈；录制未开启或事件被关闭时，只有创建事件对象的开销。
+ * <pre>{@code
+ * Metrics.set(new JfrMetrics());
+ * }</pre>
+ *
+ * @author mapleafgo
+ */
+public class JfrMetrics implements CasbinMetrics {
+    @Override
+    public void recordTime(String name, long nanos) {
+        TimerEvent event = new TimerEvent();
+        if (event.isEnabled()) {
+            event.name = name;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void increment(String name, long amount) {
+        CounterEvent event = new CounterEvent();
+        if (event.isEnabled()) {
+            event.name = name;
+            event.amount = amount;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void recordValue(String name, long value) {
+        ValueEvent event = new ValueEvent();
+        if (event.isEnabled()) {
+            event.name = name;
+            event.value = value;
+            event.commit();
+        }
+    }
+
+    @Name("cn.mapleafgo.jcasbin.Timer")
+    @Label("Casbin Timer")
+    @Category("Casbin")
+    @StackTrace(false)
+    static class TimerEvent extends Event {
+        @Label("Name")
+        String name;
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("cn.mapleafgo.jcasbin.Counter")
+    @Label("Casbin Counter")
+    @Category("Casbin")
+    @StackTrace(false)
+    static class CounterEvent extends Event {
+        @Label("Name")
+        String name;
+        @Label("Amount")
+        long amount;
+    }
+
+    @Name("cn.mapleafgo.jcasbin.Value")
+    @Label("Casbin Value")
+    @Category("Casbin")
+    @StackTrace(false)
+    static class ValueEvent extends Event {
+        @Label("Name")
+        String name;
+        @Label("Value")
+        long value;
+    }
+}
@@ -0,0 +1,192 @@
+package cn.mapleafgo.jcasbin.metrics;
+
+/**
+ * 全局指标入口，默认未启用。
+ * <p>
+ * 未通过 {@link #set(CasbinMetrics)} 设置实现时，所有方法只读取一次 volatile 字段后立即返回，
+ * {@link #start()} 也不会读取时钟，因此关闭时没有额外开销。典型用法：
+ * <pre>{@code
+ * long start = Metrics.start();
+ * try {
+ *     ...
+ * } finally {
+ *     Metrics.time(Metrics.ADAPTER_LOAD, start);
+ * }
+ * }</pre>
+ *
+ * @author mapleafgo
+ */
+public final class Metrics {
+    /**
+     * 加载策略的耗时，包括全量、过滤、快照与按域加载
+     */
+    public static final String ADAPTER_LOAD = "casbin.adapter.load";
+    /**
+     * 每次加载的规则数
+     */
+    public static final String ADAPTER_LOAD_ROWS = "casbin.adapter.load.rows";
+    /**
+     * 每次加载读取的字节数，只有能直接得到数据大小的适配器才会上报
+     */
+    public static final String ADAPTER_LOAD_BYTES = "casbin.adapter.load.bytes";
+    /**
+     * 全量保存的耗时
+     */
+    public static final String ADAPTER_SAVE = "casbin.adapter.save";
+    /**
+     * 每次全量保存的规则数
+     */
+    public static final String ADAPTER_SAVE_ROWS = "casbin.adapter.save.rows";
+    /**
+     * 新增规则的耗时，包括单条与批量
+     */
+    public static final String ADAPTER_ADD = "casbin.adapter.add";
+    /**
+     * 删除规则的耗时，包括单条与批量
+     */
+    public static final String ADAPTER_REMOVE = "casbin.adapter.remove";
+    /**
+     * 按条件删除规则的耗时
+     */
+    public static final String ADAPTER_REMOVE_FILTERED = "casbin.adapter.remove_filtered";
+    /**
+     * 修改规则的耗时
+     */
+    public static final String ADAPTER_UPDATE = "casbin.adapter.update";
+    /**
+     * 合并提交（{@code WriteBehindAdapter}）一个事务的耗时
+     */
+    public static final String ADAPTER_COMMIT = "casbin.adapter.commit";
+    /**
+     * 每次写操作涉及的规则数
+     */
+    public static final String ADAPTER_BATCH_SIZE = "casbin.adapter.batch.size";
+    /**
+     * 异步写入时排队等待提交的规则数，每次提交前上报
+     */
+    public static final String ADAPTER_PENDING = "casbin.adapter.pending";
+    /**
+     * 读写本地快照文件的字节数
+     */
+    public static final String ADAPTER_SNAPSHOT_BYTES = "casbin.adapter.snapshot.bytes";
+    /**
+     * 获取连接并开启事务的耗时
+     */
+    public static final String DB_CONNECTION_ACQUIRE = "casbin.db.connection.acquire";
+    /**
+     * 事务占用连接的时间，从开启事务到提交或回滚完成
+     */
+    public static final String DB_TRANSACTION = "casbin.db.transaction";
+    /**
+     * 观察者发布一次更新的耗时
+     */
+    public static final String WATCHER_PUBLISH = "casbin.watcher.publish";
+    /**
+     * 轮询式观察者（{@code JdbcWatcherHub}）每轮读取版本行的耗时
+     */
+    public static final String WATCHER_POLL = "casbin.watcher.poll";
+    /**
+     * 从发布到本实例收到通知的延迟，只有消息自带发布时间的观察者（{@code RedisStreamWatcher}）才会上报
+     */
+    public static final String WATCHER_DELIVERY = "casbin.watcher.delivery";
+    /**
+     * 观察者收到并接受的通知数
+     */
+    public static final String WATCHER_RECEIVED = "casbin.watcher.received";
+    /**
+     * 从收到第一条未处理通知到开始执行回调的延迟，包括合并等待与排队时间
+     */
+    public static final String WATCHER_CALLBACK_LATENCY = "casbin.watcher.callback.latency";
+    /**
+     * 回调本身的耗时
+     */
+    public static final String WATCHER_CALLBACK = "casbin.watcher.callback";
+    /**
+     * 每次回调合并的通知数，即回调开始时积压的通知数
+     */
+    public static final String WATCHER_QUEUE_DEPTH = "casbin.watcher.callback.queue";
+
+    private static volatile CasbinMetrics current;
+
+    private Metrics() {
+    }
+
+    /**
+     * 设置指标实现，传入 null 关闭
+     *
+     * @param metrics 指标实现
+     */
+    public static void set(CasbinMetrics metrics) {
+        current = metrics;
+    }
+
+    /**
+     * @return 当前的指标实现，未启用时为 null
+     */
+    public static CasbinMetrics get() {
+        return current;
+    }
+
+    public static boolean isEnabled() {
+        return current != null;
+    }
+
+    /**
+     * @return 启用时返回当前的 {@link System#nanoTime()}，未启用时返回 0
+     */
+    public static long start() {
+        return current == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * 记录从 start 到现在的耗时
+     *
+     * @param name  指标名
+     * @param start {@link #start()} 的返回值，为 0 时不记录
+     */
+    public static void time(String name, long start) {
+        CasbinMetrics m = current;
+        if (m != null && start != 0) {
+            m.recordTime(name, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 记录一次已知的耗时
+     *
+     * @param name  指标名
+     * @param nanos 耗时（纳秒）
+     */
+    public static void duration(String name, long nanos) {
+        CasbinMetrics m = current;
+        if (m != null) {
+            m.recordTime(name, nanos);
+        }
+    }
+
+    /**
+     * 计数器累加
+     *
+     * @param name   指标名
+     * @param amount 增量
+     */
+    public static void count(String name, long amount) {
+        CasbinMetrics m = current;
+        if (m != null) {
+            m.increment(name, amount);
+        }
+    }
+
+    /**
+     * 记录一个分布值
+     *
+     * @param name  指标名
+     * @param value 取值
+     */
+    public static void value(String name, long value) {
+        CasbinMetrics m = current;
+        if (m != null) {
+            m.recordValue(name, value);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package cn.mapleafgo.jcasbin.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer 绑定：耗时记为 {@link Timer}，计数记为 {@link Counter}，分布值记为 {@link DistributionSummary}。
+ * <p>
+ * 本库对 micrometer-core 只是可选依赖，使用时需要自行引入。
+ * <pre>{@code
+ * Metrics.set(new MicrometerMetrics(registry, "application", "order-service"));
+ * }</pre>
+ *
+ * @author mapleafgo
+ */
+public class MicrometerMetrics implements CasbinMetrics {
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * @param registry 指标注册表
+     * @param tags     附加到所有指标上的标签，键值交替
+     */
+    public MicrometerMetrics(MeterRegistry registry, String... tags) {
+        this.registry = registry;
+        this.tags = Tags.of(tags);
+    }
+
+    @Override
+    public void recordTime(String name, long nanos) {
+        timers.computeIfAbsent(name, n -> Timer.builder(n).tags(tags).register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void increment(String name, long amount) {
+        counters.computeIfAbsent(name, n -> Counter.builder(n).tags(tags).register(registry)).increment(amount);
+    }
+
+    @Override
+    public void recordValue(String name, long value) {
+        summaries.computeIfAbsent(name, n -> DistributionSummary.builder(n).tags(tags).register(registry)).record(value);
+    }
+}
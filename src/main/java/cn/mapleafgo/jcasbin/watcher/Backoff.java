@@ -0,0 +1,37 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带抖动的指数退避：每次等待在当前值的一半到当前值之间随机取值，之后当前值翻倍直到上限，
+ * 避免大量实例在同一时刻重连。只由一个重连线程使用，不是线程安全的。
+ *
+ * @author mapleafgo
+ */
+final class Backoff {
+    private final long initialMillis;
+    private final long maxMillis;
+    private long current;
+
+    Backoff(long initialMillis, long maxMillis) {
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+        this.current = initialMillis;
+    }
+
+    /**
+     * @return 本次等待的毫秒数
+     */
+    long next() {
+        long delay = ThreadLocalRandom.current().nextLong(current / 2, current + 1);
+        current = Math.min(current * 2, maxMillis);
+        return delay;
+    }
+
+    /**
+     * 连接成功建立过，下次从初始值重新开始
+     */
+    void reset() {
+        current = initialMillis;
+    }
+}
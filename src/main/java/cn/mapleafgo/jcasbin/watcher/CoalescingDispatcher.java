@@ -0,0 +1,197 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 观察者通知的合并分发器：把一连串通知合并为一次回调。
+ * <p>
+ * 收到通知后等待 quietPeriod 内没有新通知再触发回调，但距离第一条未处理通知最多等待 maxDelay；
+ * 同一时刻最多只有一次回调在执行、最多只有一次回调在排队，回调执行期间到达的通知全部合并进排队的那一次。
+ * 回调只收到合并期间的最后一条消息。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class CoalescingDispatcher implements AutoCloseable {
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "casbin-watcher-coalescer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Executor callbackExecutor;
+    private final Consumer<String> target;
+    /**
+     * 安静期，默认 0：不等待，只合并回调执行期间到达的通知
+     */
+    @Getter
+    private volatile Duration quietPeriod = Duration.ZERO;
+    /**
+     * 从第一条未处理通知起的最长等待时间，默认 1 秒
+     */
+    @Getter
+    private volatile Duration maxDelay = Duration.ofSeconds(1);
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+
+    private boolean pending;
+    /**
+     * 尚未回调的通知数
+     */
+    private int pendingCount;
+    private boolean running;
+    private boolean closed;
+    private String lastMessage;
+    private long firstAt;
+    private long lastAt;
+    private ScheduledFuture<?> timer;
+
+    /**
+     * @param callbackExecutor 执行回调的线程池
+     * @param target           回调，参数为合并期间的最后一条消息
+     */
+    public CoalescingDispatcher(Executor callbackExecutor, Consumer<String> target) {
+        this.callbackExecutor = Objects.requireNonNull(callbackExecutor);
+        this.target = Objects.requireNonNull(target);
+    }
+
+    public void setQuietPeriod(Duration quietPeriod) {
+        if (quietPeriod.isNegative()) {
+            throw new IllegalArgumentException("quietPeriod must not be negative");
+        }
+        this.quietPeriod = quietPeriod;
+    }
+
+    public void setMaxDelay(Duration maxDelay) {
+        if (maxDelay.isNegative()) {
+            throw new IllegalArgumentException("maxDelay must not be negative");
+        }
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * 提交一条通知
+     *
+     * @param message 通知内容
+     */
+    public synchronized void signal(String message) {
+        if (closed) {
+            return;
+        }
+        received.incrementAndGet();
+        Metrics.count(Metrics.WATCHER_RECEIVED, 1);
+        long now = System.nanoTime();
+        if (pending) {
+            merged.incrementAndGet();
+            pendingCount++;
+        } else {
+            pending = true;
+            pendingCount = 1;
+            firstAt = now;
+        }
+        lastAt = now;
+        lastMessage = message;
+        if (!running) {
+            schedule(now);
+        }
+    }
+
+    /**
+     * @return 收到的通知总数
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return 被合并而没有单独触发回调的通知数
+     */
+    public long getMerged() {
+        return merged.get();
+    }
+
+    /**
+     * @return 实际触发的回调次数
+     */
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        pending = false;
+        pendingCount = 0;
+        lastMessage = null;
+        cancelTimer();
+    }
+
+    private void schedule(long now) {
+        cancelTimer();
+        long deadline = Math.min(lastAt + quietPeriod.toNanos(), firstAt + maxDelay.toNanos());
+        timer = SCHEDULER.schedule(this::fire, Math.max(deadline - now, 0), TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+    }
+
+    private synchronized void fire() {
+        if (closed || running || !pending) {
+            return;
+        }
+        String message = lastMessage;
+        long signaledAt = firstAt;
+        Metrics.value(Metrics.WATCHER_QUEUE_DEPTH, pendingCount);
+        pending = false;
+        pendingCount = 0;
+        lastMessage = null;
+        running = true;
+        timer = null;
+        dispatched.incrementAndGet();
+        try {
+            callbackExecutor.execute(() -> {
+                long start = Metrics.start();
+                if (start != 0) {
+                    Metrics.duration(Metrics.WATCHER_CALLBACK_LATENCY, start - signaledAt);
+                }
+                try {
+                    target.accept(message);
+                } catch (Throwable t) {
+                    log.error("error running watcher callback", t);
+                } finally {
+                    Metrics.time(Metrics.WATCHER_CALLBACK, start);
+                    finish();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("watcher callback rejected", e);
+            running = false;
+        }
+    }
+
+    private synchronized void finish() {
+        running = false;
+        if (pending && !closed) {
+            schedule(System.nanoTime());
+        }
+    }
+}
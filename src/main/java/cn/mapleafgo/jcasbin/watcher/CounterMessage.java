@@ -0,0 +1,50 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+/**
+ * {@link RedisWatcher} 与 {@link RedisWatcherHub} 的 pub/sub 消息，格式为「计数器值:实例 ID」
+ *
+ * @author mapleafgo
+ */
+final class CounterMessage {
+    /**
+     * 计数器值，无法解析时为 -1
+     */
+    final long counter;
+    /**
+     * 发布者实例 ID，旧格式的消息没有时为 null
+     */
+    final String origin;
+
+    private CounterMessage(long counter, String origin) {
+        this.counter = counter;
+        this.origin = origin;
+    }
+
+    static String format(long counter, String instanceId) {
+        return counter + ":" + instanceId;
+    }
+
+    static CounterMessage parse(String message) {
+        int sep = message.indexOf(':');
+        if (sep < 0) {
+            return new CounterMessage(parseCounter(message), null);
+        }
+        return new CounterMessage(parseCounter(message.substring(0, sep)), message.substring(sep + 1));
+    }
+
+    /**
+     * 解析计数器 key 的值
+     *
+     * @return key 不存在或无法解析时返回 -1
+     */
+    static long parseCounter(String s) {
+        if (s == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(s.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
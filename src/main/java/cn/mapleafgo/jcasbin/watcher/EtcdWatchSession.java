@@ -0,0 +1,173 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * {@link EtcdWatcher} 与 {@link EtcdWatcherHub} 共用的可续传监听：记录最后处理的 revision，出错或重启后从该 revision 继续，
+ * revision 已被压缩时回调一次后从压缩点继续。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+final class EtcdWatchSession {
+    private static final int IO_TIMEOUT_SECONDS = 5;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final Client client;
+    private final ByteSequence key;
+    private final boolean prefix;
+    private final String name;
+    private final Consumer<WatchEvent> onEvent;
+    private final LongConsumer onCompacted;
+    private AutoCloseable watcher;
+    private volatile boolean watching;
+    /**
+     * 最后处理的事件 revision，首次监听前为 0
+     */
+    private volatile long lastRevision;
+
+    /**
+     * @param client      etcd 客户端
+     * @param key         监听的 key 或前缀
+     * @param prefix      是否按前缀监听
+     * @param name        日志中的名称
+     * @param onEvent     revision 大于最后处理值的事件
+     * @param onCompacted revision 被压缩时的回调，参数为压缩点
+     */
+    EtcdWatchSession(Client client, ByteSequence key, boolean prefix, String name, Consumer<WatchEvent> onEvent, LongConsumer onCompacted) {
+        this.client = client;
+        this.key = key;
+        this.prefix = prefix;
+        this.name = name;
+        this.onEvent = onEvent;
+        this.onCompacted = onCompacted;
+    }
+
+    long getLastRevision() {
+        return lastRevision;
+    }
+
+    boolean isWatching() {
+        return watching;
+    }
+
+    /**
+     * 开始监听：首次从当前版本之后开始，之后总是从最后处理的 revision 继续
+     */
+    synchronized void start() {
+        closeCurrent();
+        watching = true;
+        if (lastRevision == 0) {
+            lastRevision = currentRevision();
+        }
+        watchFrom(lastRevision + 1);
+    }
+
+    synchronized void stop() {
+        watching = false;
+        closeCurrent();
+    }
+
+    private long currentRevision() {
+        try {
+            return client.getKVClient().get(key).get(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS).getHeader().getRevision();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (Exception e) {
+            log.warn("{} failed to read current revision, starting from the watch creation revision", name, e);
+            return 0;
+        }
+    }
+
+    private synchronized void watchFrom(long revision) {
+        if (!watching) {
+            return;
+        }
+        // 空闲时也通过进度通知推进 revision，降低重连时落入压缩点之前的概率
+        WatchOption.Builder option = WatchOption.builder().isPrefix(prefix).withProgressNotify(true).withCreateNotify(true);
+        if (revision > 1) {
+            option.withRevision(revision);
+        }
+        watcher = client.getWatchClient().watch(key, option.build(), Watch.listener(this::onResponse, this::onError, this::onCompleted));
+    }
+
+    private void onResponse(WatchResponse response) {
+        if (response.isCreatedNotify()) {
+            // 读取当前 revision 失败时监听从建立时开始，以建立时的 revision 为起点，之后的重连不会再从「现在」开始
+            if (lastRevision == 0) {
+                lastRevision = response.getHeader().getRevision();
+            }
+            return;
+        }
+        if (response.isProgressNotify()) {
+            lastRevision = Math.max(lastRevision, response.getHeader().getRevision());
+            return;
+        }
+        for (WatchEvent e : response.getEvents()) {
+            long revision = e.getKeyValue().getModRevision();
+            if (revision <= lastRevision) {
+                continue;
+            }
+            lastRevision = revision;
+            onEvent.accept(e);
+        }
+    }
+
+    private void onError(Throwable t) {
+        Throwable cause = t;
+        while (cause != null && !(cause instanceof CompactedException)) {
+            cause = cause.getCause();
+        }
+        if (cause != null) {
+            long compacted = ((CompactedException) cause).getCompactedRevision();
+            log.warn("{} revision {} was compacted (compact revision {}), triggering full reload", name, lastRevision + 1, compacted);
+            // 压缩点之前的事件已无法获取，通知一次全量重新加载后从压缩点继续监听
+            lastRevision = Math.max(lastRevision, compacted - 1);
+            onCompacted.accept(compacted);
+            restart(0);
+            return;
+        }
+        log.error("{} error, resuming from revision {}", name, lastRevision + 1, t);
+        restart(RETRY_DELAY_MILLIS);
+    }
+
+    private void onCompleted() {
+        if (watching) {
+            log.warn("{} completed unexpectedly, resuming from revision {}", name, lastRevision + 1);
+            restart(RETRY_DELAY_MILLIS);
+        }
+    }
+
+    private void restart(long delayMillis) {
+        CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            synchronized (this) {
+                closeCurrent();
+                watchFrom(lastRevision + 1);
+            }
+        });
+    }
+
+    private synchronized void closeCurrent() {
+        try {
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+            }
+        } catch (Exception e) {
+            log.warn("error closing etcd watcher", e);
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package cn.mapleafgo.jcasbin.watcher;
 
+import cn.mapleafgo.jcasbin.metrics.Metrics;
 import io.etcd.jetcd.ByteSequence;
 import io.etcd.jetcd.Client;
-import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.kv.PutResponse;
 import io.etcd.jetcd.watch.WatchEvent;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.casbin.jcasbin.persist.Watcher;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
@@ -18,6 +19,11 @@ import java.util.function.Consumer;
 
 /**
  * casbin etcd 观察者
+ * <p>
+ * 通知经 {@link CoalescingDispatcher} 合并后再回调，可通过 {@link #getDispatcher()} 调整安静期与最长等待时间。
+ * <p>
+ * 更新只做一次 PUT，以 etcd 的 mod revision 识别每次更新；监听记录最后处理的 revision，
+ * 出错或重启后从该 revision 继续，revision 已被压缩时触发一次全量重新加载。
  *
  * @author 慕枫
  */
@@ -25,11 +31,19 @@ import java.util.function.Consumer;
 public class EtcdWatcher implements Watcher, AutoCloseable {
     private final Client client;
     private final String keyName;
-    private final Executor callbackExecutor;
-
-    private volatile Runnable callback;
-    private volatile Consumer<String> callbackConsumer;
-    private AutoCloseable watcher;
+    /**
+     * 通知合并分发器
+     */
+    @Getter
+    private final CoalescingDispatcher dispatcher;
+    /**
+     * 事件来源过滤，可设置实例 ID、是否回调本实例的事件，并提供跳过与回调的事件数
+     */
+    @Getter
+    private final OriginFilter originFilter = new OriginFilter();
+
+    private final WatcherCallbacks callbacks = new WatcherCallbacks();
+    private final EtcdWatchSession session;
     private static final int IO_TIMEOUT_SECONDS = 5;
     private static final Charset CHARSET = StandardCharsets.UTF_8;
 
@@ -40,7 +54,9 @@ public class EtcdWatcher implements Watcher, AutoCloseable {
     public EtcdWatcher(Client client, String keyName, Executor callbackExecutor) {
         this.client = client;
         this.keyName = keyName;
-        this.callbackExecutor = callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor;
+        this.dispatcher = new CoalescingDispatcher(callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor, callbacks::run);
+        this.session = new EtcdWatchSession(client, getKeyName(), false, "casbin watcher", this::onEvent,
+            compacted -> dispatcher.signal("casbin watcher compacted: " + compacted));
     }
 
     public ByteSequence getKeyName() {
@@ -49,27 +65,22 @@ public class EtcdWatcher implements Watcher, AutoCloseable {
 
     @Override
     public void setUpdateCallback(Runnable runnable) {
-        this.callback = runnable;
+        callbacks.set(runnable);
     }
 
     @Override
     public void setUpdateCallback(Consumer<String> consumer) {
-        this.callbackConsumer = consumer;
+        callbacks.set(consumer);
     }
 
     @Override
     public void update() {
+        long start = Metrics.start();
         try {
-            int v = 0;
-            GetResponse resp = client.getKVClient().get(getKeyName()).get(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-            if (resp.getCount() != 0) {
-                String valueStr = resp.getKvs().get(0).getValue().toString(CHARSET);
-                v = parseIntOrZero(valueStr);
-                log.info("casbin watcher Get: {}", v);
-                v += 1;
-            }
-            // ensure put completes with timeout so errors are observed and we don't block indefinitely
-            client.getKVClient().put(getKeyName(), ByteSequence.from(String.valueOf(v), CHARSET)).get(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            // 只写一次，依靠 etcd 为每次写入分配的 mod revision 区分更新，并发写入也不会丢失；值为本实例 ID
+            PutResponse resp = client.getKVClient().put(getKeyName(), ByteSequence.from(originFilter.getInstanceId(), CHARSET))
+                .get(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            log.info("casbin watcher Put: revision {}", resp.getHeader().getRevision());
         } catch (InterruptedException ie) {
             Thread.currentThread().interrupt();
             log.warn("casbin watcher interrupted", ie);
@@ -77,67 +88,42 @@ public class EtcdWatcher implements Watcher, AutoCloseable {
             log.error("casbin watcher timeout", te);
         } catch (Exception e) {
             log.error("casbin watcher execution error", e.getCause() != null ? e.getCause() : e);
+        } finally {
+            Metrics.time(Metrics.WATCHER_PUBLISH, start);
         }
     }
 
+    /**
+     * 开始监听：首次从当前版本之后开始，之后总是从最后处理的 revision 继续，不会漏掉重连期间的事件
+     */
     public void startWatch() {
-        // close existing watcher if present to avoid resource leak
-        closeWatch();
-        // store watcher so we can close it later
-        AutoCloseable w = client.getWatchClient().watch(getKeyName(), watchResponse -> {
-            List<WatchEvent> eventList = watchResponse.getEvents();
-            Runnable cb = this.callback; // capture volatile to local
-            Consumer<String> cbConsumer = this.callbackConsumer;
-            if (cb != null) {
-                callbackExecutor.execute(() -> safeExecute(() -> eventList.forEach(e -> cb.run())));
-            }
-            if (cbConsumer != null) {
-                callbackExecutor.execute(() -> safeExecute(() -> eventList.forEach(e -> cbConsumer.accept(formatEvent(e)))));
-            }
-        });
-        if (w != null) {
-            watcher = w;
-        }
+        session.start();
     }
 
-    public synchronized void closeWatch() {
-        try {
-            if (watcher != null) {
-                watcher.close();
-                watcher = null;
-            }
-        } catch (Exception e) {
-            log.warn("error closing etcd watcher", e);
-        }
+    public void closeWatch() {
+        session.stop();
+    }
+
+    /**
+     * @return 最后处理的事件 revision，首次监听前为 0
+     */
+    public long getLastRevision() {
+        return session.getLastRevision();
     }
 
     @Override
     public void close() {
         closeWatch();
+        dispatcher.close();
     }
 
-    private int parseIntOrZero(String s) {
-        if (s == null) {
-            return 0;
-        }
-        try {
-            return Integer.parseInt(s);
-        } catch (NumberFormatException ex) {
-            log.warn("casbin watcher value is not an integer: {}", s);
-            return 0;
+    private void onEvent(WatchEvent e) {
+        if (originFilter.accept(e.getKeyValue().getValue().toString(CHARSET))) {
+            dispatcher.signal(formatEvent(e));
         }
     }
 
     private String formatEvent(WatchEvent e) {
         return String.format("casbin watcher Get: %s", e.getKeyValue().getValue().toString(CHARSET));
     }
-
-    private void safeExecute(Runnable r) {
-        try {
-            r.run();
-        } catch (Throwable t) {
-            log.error("error running watcher callback", t);
-        }
-    }
-
 }
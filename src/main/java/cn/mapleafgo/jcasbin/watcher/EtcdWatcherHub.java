@@ -0,0 +1,139 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.watch.WatchEvent;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多路复用的 etcd 观察者：整个 hub 只建立一个对 {@code prefix} 的前缀监听，再按 key 分发给注册的 {@link HubWatcher}。
+ * <p>
+ * 更新与续传方式同 {@link EtcdWatcher}：每次更新一次 PUT，监听从最后处理的 revision 继续，
+ * revision 被压缩时通知所有观察者全量重新加载一次。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class EtcdWatcherHub implements AutoCloseable {
+    private static final int IO_TIMEOUT_SECONDS = 5;
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    private final Client client;
+    /**
+     * key 前缀
+     */
+    @Getter
+    private final String prefix;
+    private final Executor callbackExecutor;
+    /**
+     * 本实例 ID，所有注册的观察者共用
+     */
+    @Getter
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, HubWatcher> watchers = new ConcurrentHashMap<>();
+    private final EtcdWatchSession session;
+
+    public EtcdWatcherHub(Client client, String prefix) {
+        this(client, prefix, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param client           etcd 客户端
+     * @param prefix           key 前缀，例如 {@code "/casbin/"}
+     * @param callbackExecutor 执行回调的线程池，为 null 时使用 {@link ForkJoinPool#commonPool()}
+     */
+    public EtcdWatcherHub(Client client, String prefix, Executor callbackExecutor) {
+        this.client = Objects.requireNonNull(client);
+        this.prefix = Objects.requireNonNull(prefix);
+        this.callbackExecutor = callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor;
+        this.session = new EtcdWatchSession(client, ByteSequence.from(prefix, CHARSET), true, "casbin watcher hub", this::onEvent,
+            compacted -> watchers.values().forEach(w -> w.receive("casbin watcher compacted: " + compacted, null)));
+    }
+
+    /**
+     * @return 最后处理的事件 revision
+     */
+    public long getLastRevision() {
+        return session.getLastRevision();
+    }
+
+    /**
+     * 获取或注册名称对应的观察者，首次注册时启动共享监听
+     *
+     * @param name 名称，例如模型或租户标识
+     * @return 观察者，同名多次调用返回同一实例
+     */
+    public HubWatcher watcher(String name) {
+        HubWatcher w = watchers.computeIfAbsent(name, n -> new HubWatcher(n, instanceId, callbackExecutor, this::publish, this::unregister));
+        start();
+        return w;
+    }
+
+    /**
+     * @return 已注册的观察者数
+     */
+    public int size() {
+        return watchers.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        session.stop();
+        watchers.values().forEach(w -> w.getDispatcher().close());
+        watchers.clear();
+    }
+
+    private void publish(HubWatcher w) {
+        long start = Metrics.start();
+        try {
+            long revision = client.getKVClient().put(key(w.getName()), ByteSequence.from(instanceId, CHARSET))
+                .get(IO_TIMEOUT_SECONDS, TimeUnit.SECONDS).getHeader().getRevision();
+            log.info("casbin watcher hub Put {}: revision {}", w.getName(), revision);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.warn("casbin watcher hub interrupted", ie);
+        } catch (Exception e) {
+            log.error("casbin watcher hub update failed", e.getCause() != null ? e.getCause() : e);
+        } finally {
+            Metrics.time(Metrics.WATCHER_PUBLISH, start);
+        }
+    }
+
+    private void unregister(HubWatcher w) {
+        watchers.remove(w.getName(), w);
+    }
+
+    private ByteSequence key(String name) {
+        return ByteSequence.from(prefix + name, CHARSET);
+    }
+
+    private synchronized void start() {
+        if (!session.isWatching()) {
+            session.start();
+        }
+    }
+
+    private void onEvent(WatchEvent e) {
+        if (e.getEventType() != WatchEvent.EventType.PUT) {
+            return;
+        }
+        String key = e.getKeyValue().getKey().toString(CHARSET);
+        HubWatcher w = watchers.get(key.substring(prefix.length()));
+        if (w != null) {
+            String value = e.getKeyValue().getValue().toString(CHARSET);
+            w.receive("casbin watcher Get: " + value, value);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import lombok.Getter;
+import org.casbin.jcasbin.persist.Watcher;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * 注册在 {@link RedisWatcherHub}、{@link EtcdWatcherHub} 或 {@link JdbcWatcherHub} 上的观察者，不占用单独的连接与线程，
+ * 由 hub 的共享订阅按名称分发事件。
+ *
+ * @author mapleafgo
+ */
+public class HubWatcher implements Watcher, AutoCloseable {
+    /**
+     * 在 hub 中的名称，对应的 channel 或 key 为 hub 前缀加名称
+     */
+    @Getter
+    private final String name;
+    /**
+     * 通知合并分发器
+     */
+    @Getter
+    private final CoalescingDispatcher dispatcher;
+    /**
+     * 事件来源过滤，实例 ID 与 hub 一致
+     */
+    @Getter
+    private final OriginFilter originFilter = new OriginFilter();
+    private final Consumer<HubWatcher> publisher;
+    private final Consumer<HubWatcher> onClose;
+    private final WatcherCallbacks callbacks = new WatcherCallbacks();
+    /**
+     * 最后收到或确认的计数器值，供 {@link RedisWatcherHub} 检测断线期间错过的更新；{@link JdbcWatcherHub} 中为最后读到的版本号
+     */
+    volatile long lastSeenCounter = -1;
+
+    HubWatcher(String name, String instanceId, Executor callbackExecutor, Consumer<HubWatcher> publisher, Consumer<HubWatcher> onClose) {
+        this.name = name;
+        this.originFilter.setInstanceId(instanceId);
+        this.dispatcher = new CoalescingDispatcher(callbackExecutor, callbacks::run);
+        this.publisher = publisher;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public void setUpdateCallback(Runnable runnable) {
+        callbacks.set(runnable);
+    }
+
+    @Override
+    public void setUpdateCallback(Consumer<String> consumer) {
+        callbacks.set(consumer);
+    }
+
+    @Override
+    public void update() {
+        publisher.accept(this);
+    }
+
+    /**
+     * 从 hub 注销
+     */
+    @Override
+    public void close() {
+        onClose.accept(this);
+        dispatcher.close();
+    }
+
+    /**
+     * 计数器只前进不后退，hub 的订阅线程与注册线程都可能更新
+     *
+     * @param counter 收到或读到的计数器值
+     */
+    synchronized void advanceCounter(long counter) {
+        if (counter > lastSeenCounter) {
+            lastSeenCounter = counter;
+        }
+    }
+
+    /**
+     * hub 收到本观察者的事件
+     *
+     * @param message 事件描述
+     * @param origin  发布者实例 ID，未知时为 null
+     */
+    void receive(String message, String origin) {
+        if (originFilter.accept(origin)) {
+            dispatcher.signal(message);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.db.ChangeLog;
+import cn.mapleafgo.jcasbin.db.LeafDb;
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于数据库的观察者，不需要 Redis 或 etcd：适配器开启变更日志后，每次写入都会在同一事务中递增 {@code {table}_version} 的版本行，
+ * hub 用一个线程轮询所有注册表的版本行（主键查询），版本变化时通知对应的 {@link HubWatcher}。
+ * <p>
+ * 轮询间隔自适应：发现变更后回到 {@link #setMinIntervalMillis}，空闲时逐次翻倍直到 {@link #setMaxIntervalMillis}。
+ * PostgreSQL 上额外用一个连接 LISTEN 版本通知（见 {@link ChangeLog}），收到通知立即轮询，驱动通过反射调用，不需要编译期依赖；
+ * 等待通知时每隔 {@link #setMinIntervalMillis} 检查一次唤醒，新注册的表最迟在这之后开始 LISTEN，期间的变更由随后的轮询补上。
+ * <pre>{@code
+ * HutoolDBAdapter adapter = new HutoolDBAdapter(dataSource, new CasbinTable("casbin_rule"), true);
+ * JdbcWatcherHub hub = new JdbcWatcherHub(dataSource);
+ * enforcer.setWatcher(hub.watcher("casbin_rule"));
+ * }</pre>
+ * 版本行不记录写入方，本实例的写入同样会触发回调；配合 {@link cn.mapleafgo.jcasbin.adapter.PolicyReplayer} 使用时只回放增量，重复应用是幂等的。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class JdbcWatcherHub implements AutoCloseable {
+    private static final String REGEX_TABLE_NAME = "^[a-zA-Z0-9_]+$";
+
+    private final DataSource dataSource;
+    private final Executor callbackExecutor;
+    /**
+     * 本实例 ID，所有注册的观察者共用
+     */
+    @Getter
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, HubWatcher> watchers = new ConcurrentHashMap<>();
+    private final AtomicLong polls = new AtomicLong();
+    private final Object wakeup = new Object();
+    private boolean woken;
+    private volatile Thread poller;
+    /**
+     * 发现变更后的轮询间隔，默认 100 毫秒
+     */
+    @Getter
+    @Setter
+    private volatile long minIntervalMillis = 100;
+    /**
+     * 空闲时的最长轮询间隔，默认 5 秒
+     */
+    @Getter
+    @Setter
+    private volatile long maxIntervalMillis = 5000;
+    /**
+     * 是否在 PostgreSQL 上使用 LISTEN/NOTIFY，默认 true，需在注册第一个观察者前设置
+     */
+    @Getter
+    @Setter
+    private volatile boolean listenNotify = true;
+    /**
+     * 当前是否通过 LISTEN/NOTIFY 接收通知
+     */
+    @Getter
+    private volatile boolean listening;
+    /**
+     * 当前的轮询间隔
+     */
+    @Getter
+    private volatile long intervalMillis;
+
+    public JdbcWatcherHub(DataSource dataSource) {
+        this(dataSource, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param dataSource       策略表所在的数据源
+     * @param callbackExecutor 执行回调的线程池，为 null 时使用 {@link ForkJoinPool#commonPool()}
+     */
+    public JdbcWatcherHub(DataSource dataSource, Executor callbackExecutor) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.callbackExecutor = callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor;
+    }
+
+    /**
+     * 获取或注册策略表对应的观察者，首次注册时启动共享轮询；注册后的第一次轮询只记录当前版本
+     *
+     * @param tableName 策略表名，适配器需开启变更日志
+     * @return 观察者，同名多次调用返回同一实例
+     */
+    public HubWatcher watcher(String tableName) {
+        if (!tableName.matches(REGEX_TABLE_NAME)) {
+            throw new IllegalArgumentException("table name must only contain letters, digits and underscores");
+        }
+        HubWatcher watcher = watchers.computeIfAbsent(tableName, n -> new HubWatcher(n, instanceId, callbackExecutor, this::publish, this::unregister));
+        start();
+        wake();
+        return watcher;
+    }
+
+    /**
+     * @return 已注册的观察者数
+     */
+    public int size() {
+        return watchers.size();
+    }
+
+    /**
+     * @return 已执行的轮询次数
+     */
+    public long getPolls() {
+        return polls.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        Thread t = poller;
+        poller = null;
+        if (t != null) {
+            t.interrupt();
+        }
+        watchers.values().forEach(w -> w.getDispatcher().close());
+        watchers.clear();
+    }
+
+    /**
+     * 版本行已由适配器在写入事务中递增，这里只唤醒轮询线程，使间隔回到最小值
+     */
+    private void publish(HubWatcher watcher) {
+        log.debug("jdbc watcher hub update {}", watcher.getName());
+        wake();
+    }
+
+    private void unregister(HubWatcher watcher) {
+        watchers.remove(watcher.getName(), watcher);
+    }
+
+    private void wake() {
+        synchronized (wakeup) {
+            woken = true;
+            wakeup.notifyAll();
+        }
+    }
+
+    private synchronized void start() {
+        if (poller != null) {
+            return;
+        }
+        Thread t = new Thread(this::pollLoop, "casbin-jdbc-watcher-hub");
+        t.setDaemon(true);
+        poller = t;
+        t.start();
+    }
+
+    private void pollLoop() {
+        long interval = minIntervalMillis;
+        PgListener listener = null;
+        long nextListen = listenNotify ? 0 : Long.MAX_VALUE;
+        while (poller == Thread.currentThread()) {
+            if (listener == null && System.currentTimeMillis() >= nextListen) {
+                try {
+                    listener = PgListener.open(dataSource);
+                    if (listener == null) {
+                        nextListen = Long.MAX_VALUE;
+                    }
+                } catch (SQLException e) {
+                    log.warn("jdbc watcher hub failed to listen for notifications, polling only", e);
+                    nextListen = System.currentTimeMillis() + maxIntervalMillis;
+                }
+            }
+            if (listener != null) {
+                try {
+                    listener.listen(watchers.keySet());
+                } catch (SQLException e) {
+                    log.warn("jdbc watcher hub failed to listen for notifications, polling only", e);
+                    listener = closeListener(listener);
+                    nextListen = System.currentTimeMillis() + maxIntervalMillis;
+                }
+            }
+            listening = listener != null;
+            boolean changed = poll();
+            interval = changed ? minIntervalMillis : Math.min(Math.max(interval, 1) * 2, maxIntervalMillis);
+            intervalMillis = interval;
+            try {
+                if (listener != null ? awaitNotification(listener, interval) : awaitWakeup(interval)) {
+                    interval = minIntervalMillis;
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (SQLException e) {
+                log.warn("jdbc watcher hub lost notification connection, polling only", e);
+                listener = closeListener(listener);
+                nextListen = System.currentTimeMillis() + maxIntervalMillis;
+            }
+        }
+        closeListener(listener);
+        listening = false;
+    }
+
+    /**
+     * 等待唤醒，最长 millis 毫秒
+     *
+     * @return 是否被唤醒
+     */
+    private boolean awaitWakeup(long millis) throws InterruptedException {
+        synchronized (wakeup) {
+            if (!woken) {
+                wakeup.wait(Math.max(millis, 1));
+            }
+            boolean w = woken;
+            woken = false;
+            return w;
+        }
+    }
+
+    /**
+     * @return 是否有未处理的唤醒，不等待
+     */
+    private boolean takeWakeup() {
+        synchronized (wakeup) {
+            boolean w = woken;
+            woken = false;
+            return w;
+        }
+    }
+
+    /**
+     * 等待通知，最长 millis 毫秒；驱动的等待不响应唤醒，按最小间隔分段等待，
+     * 使新注册的表尽快 LISTEN、本实例的写入尽快轮询
+     *
+     * @return 是否收到通知或被唤醒
+     */
+    private boolean awaitNotification(PgListener listener, long millis) throws InterruptedException, SQLException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (poller == Thread.currentThread()) {
+            if (takeWakeup()) {
+                return true;
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            if (listener.await(Math.min(left, Math.max(minIntervalMillis, 1)))) {
+                return true;
+            }
+        }
+        throw new InterruptedException();
+    }
+
+    /**
+     * 在一个连接上依次读取所有注册表的版本行，版本与上次不同时通知对应观察者
+     *
+     * @return 是否有观察者收到通知
+     */
+    private boolean poll() {
+        List<HubWatcher> list = new ArrayList<>(watchers.values());
+        if (list.isEmpty()) {
+            return false;
+        }
+        long start = Metrics.start();
+        try {
+            return LeafDb.withConnection(LeafDb.use(dataSource), conn -> {
+                boolean changed = false;
+                for (HubWatcher watcher : list) {
+                    try (PreparedStatement ps = conn.prepareStatement("SELECT current_version FROM " + watcher.getName() + "_version WHERE id = 1");
+                         ResultSet rs = ps.executeQuery()) {
+                        long current = rs.next() ? rs.getLong(1) : 0L;
+                        long seen = watcher.lastSeenCounter;
+                        watcher.lastSeenCounter = current;
+                        // 版本回退说明表被重建，同样需要通知
+                        if (seen >= 0 && current != seen) {
+                            watcher.receive("casbin watcher version: " + current, null);
+                            changed = true;
+                        }
+                    } catch (SQLException e) {
+                        log.warn("jdbc watcher hub failed to read version of {}", watcher.getName(), e);
+                    }
+                }
+                return changed;
+            });
+        } catch (SQLException e) {
+            log.warn("jdbc watcher hub poll failed", e);
+            return false;
+        } finally {
+            polls.incrementAndGet();
+            Metrics.time(Metrics.WATCHER_POLL, start);
+        }
+    }
+
+    private static PgListener closeListener(PgListener listener) {
+        if (listener != null) {
+            listener.close();
+        }
+        return null;
+    }
+
+    /**
+     * PostgreSQL 的 LISTEN 连接，通过反射调用驱动的 {@code PGConnection#getNotifications(int)}
+     */
+    private static final class PgListener implements AutoCloseable {
+        private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+
+        private final Connection conn;
+        private final Object pgConnection;
+        private final Method getNotifications;
+        private final Set<String> channels = new HashSet<>();
+
+        private PgListener(Connection conn, Object pgConnection, Method getNotifications) {
+            this.conn = conn;
+            this.pgConnection = pgConnection;
+            this.getNotifications = getNotifications;
+        }
+
+        /**
+         * @return 不是 PostgreSQL 或驱动不支持时返回 null
+         */
+        static PgListener open(DataSource dataSource) throws SQLException {
+            Connection conn = dataSource.getConnection();
+            try {
+                if (!"PostgreSQL".equals(conn.getMetaData().getDatabaseProductName())) {
+                    conn.close();
+                    return null;
+                }
+                Class<?> type = Class.forName(PG_CONNECTION, false, conn.getClass().getClassLoader());
+                Object pg = conn.unwrap(type);
+                Method method = type.getMethod("getNotifications", int.class);
+                conn.setAutoCommit(true);
+                return new PgListener(conn, pg, method);
+            } catch (ReflectiveOperationException e) {
+                log.info("jdbc watcher hub: PostgreSQL driver does not support notifications, polling only");
+                conn.close();
+                return null;
+            } catch (SQLException | RuntimeException e) {
+                conn.close();
+                throw e;
+            }
+        }
+
+        void listen(Collection<String> tableNames) throws SQLException {
+            for (String tableName : tableNames) {
+                String channel = ChangeLog.notifyChannel(tableName);
+                if (!channels.contains(channel)) {
+                    try (Statement st = conn.createStatement()) {
+                        st.execute("LISTEN " + channel);
+                    }
+                    channels.add(channel);
+                }
+            }
+        }
+
+        /**
+         * 等待通知，最长 millis 毫秒
+         *
+         * @return 是否收到通知
+         */
+        boolean await(long millis) throws SQLException {
+            try {
+                Object[] notifications = (Object[]) getNotifications.invoke(pgConnection, (int) Math.min(Integer.MAX_VALUE, Math.max(1, millis)));
+                return notifications != null && notifications.length > 0;
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw new SQLException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new SQLException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                log.warn("error closing notification connection", e);
+            }
+        }
+    }
+}
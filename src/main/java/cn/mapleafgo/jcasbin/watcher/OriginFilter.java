@@ -0,0 +1,63 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 观察者的事件来源过滤：发布的更新带上本实例 ID，收到自己发布的事件时默认不触发回调，
+ * 避免刚写入策略的实例再重新加载一次。
+ *
+ * @author mapleafgo
+ */
+public class OriginFilter {
+    /**
+     * 本实例 ID，默认随机生成；需要跨重启保持不变时请在 startWatch 之前设置
+     */
+    @Getter
+    private volatile String instanceId = UUID.randomUUID().toString();
+    /**
+     * 是否仍回调本实例发布的事件，默认 false
+     */
+    @Getter
+    @Setter
+    private volatile boolean deliverOwnEvents;
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    public void setInstanceId(String instanceId) {
+        this.instanceId = Objects.requireNonNull(instanceId);
+    }
+
+    /**
+     * 判断事件是否需要回调，并计数
+     *
+     * @param origin 事件的来源实例 ID，未知时为 null
+     * @return 需要回调时返回 true
+     */
+    public boolean accept(String origin) {
+        if (!deliverOwnEvents && instanceId.equals(origin)) {
+            suppressed.incrementAndGet();
+            return false;
+        }
+        delivered.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return 因来自本实例而跳过的事件数
+     */
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    /**
+     * @return 交给回调的事件数
+     */
+    public long getDelivered() {
+        return delivered.get();
+    }
+}
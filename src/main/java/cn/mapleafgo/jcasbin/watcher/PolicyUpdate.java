@@ -0,0 +1,242 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.casbin.jcasbin.main.Enforcer;
+import org.casbin.jcasbin.model.Model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 观察者传递的策略增量，可直接应用到其他实例的内存模型
+ *
+ * @author mapleafgo
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PolicyUpdate {
+    private Operation operation;
+    private String sec;
+    private String ptype;
+    /**
+     * {@link Operation#REMOVE_FILTERED_POLICY} 的起始字段下标
+     */
+    private int fieldIndex;
+    /**
+     * 受影响的规则，不含 ptype；{@link Operation#REMOVE_FILTERED_POLICY} 时只有一条，为过滤值
+     */
+    private List<List<String>> rules;
+    /**
+     * {@link Operation#UPDATE_POLICY} 的新规则，与 rules 一一对应
+     */
+    private List<List<String>> newRules;
+
+    public PolicyUpdate(Operation operation, String sec, String ptype, List<List<String>> rules) {
+        this(operation, sec, ptype, 0, rules, List.of());
+    }
+
+    /**
+     * 是否需要全量重新加载才能同步
+     *
+     * @return 不携带规则或缺少 ptype 时返回 true
+     */
+    public boolean isFullReload() {
+        return switch (operation) {
+            case UPDATE, SAVE_POLICY -> true;
+            case UPDATE_POLICY -> ptype == null;
+            default -> false;
+        };
+    }
+
+    /**
+     * 将增量应用到 enforcer 的内存模型，g 规则同时增量更新角色关系；需要全量同步时调用 {@link Enforcer#loadPolicy()}
+     *
+     * @param enforcer enforcer
+     */
+    public void applyTo(Enforcer enforcer) {
+        if (isFullReload()) {
+            enforcer.loadPolicy();
+            return;
+        }
+        switch (operation) {
+            case ADD_POLICY, ADD_POLICIES -> addPolicies(enforcer, sec, ptype, rules);
+            case REMOVE_POLICY, REMOVE_POLICIES -> removePolicies(enforcer, sec, ptype, rules);
+            case REMOVE_FILTERED_POLICY -> removeFilteredPolicy(enforcer, sec, ptype, fieldIndex, rules.isEmpty() ? List.of() : rules.get(0));
+            case UPDATE_POLICY -> {
+                removePolicies(enforcer, sec, ptype, rules);
+                addPolicies(enforcer, sec, ptype, newRules);
+            }
+            default -> throw new IllegalStateException("unexpected operation " + operation);
+        }
+    }
+
+    /**
+     * 向内存模型添加规则，已存在的规则跳过
+     *
+     * @param enforcer enforcer
+     * @param sec      section
+     * @param ptype    策略类型
+     * @param rules    规则
+     */
+    public static void addPolicies(Enforcer enforcer, String sec, String ptype, List<List<String>> rules) {
+        Model model = enforcer.getModel();
+        List<List<String>> effects = new ArrayList<>(rules.size());
+        for (List<String> rule : rules) {
+            if (model.addPolicy(sec, ptype, rule)) {
+                effects.add(rule);
+            }
+        }
+        buildRoleLinks(enforcer, Model.PolicyOperations.POLICY_ADD, sec, ptype, effects);
+    }
+
+    /**
+     * 从内存模型移除规则，不存在的规则跳过
+     *
+     * @param enforcer enforcer
+     * @param sec      section
+     * @param ptype    策略类型
+     * @param rules    规则
+     */
+    public static void removePolicies(Enforcer enforcer, String sec, String ptype, List<List<String>> rules) {
+        Model model = enforcer.getModel();
+        List<List<String>> effects = new ArrayList<>(rules.size());
+        for (List<String> rule : rules) {
+            if (model.removePolicy(sec, ptype, rule)) {
+                effects.add(rule);
+            }
+        }
+        buildRoleLinks(enforcer, Model.PolicyOperations.POLICY_REMOVE, sec, ptype, effects);
+    }
+
+    /**
+     * 按字段过滤移除内存模型中的规则
+     *
+     * @param enforcer    enforcer
+     * @param sec         section
+     * @param ptype       策略类型
+     * @param fieldIndex  起始字段下标
+     * @param fieldValues 过滤值，"" 表示不限制
+     */
+    public static void removeFilteredPolicy(Enforcer enforcer, String sec, String ptype, int fieldIndex, List<String> fieldValues) {
+        List<List<String>> effects = enforcer.getModel().removeFilteredPolicyReturnsEffects(sec, ptype, fieldIndex, fieldValues.toArray(new String[0]));
+        buildRoleLinks(enforcer, Model.PolicyOperations.POLICY_REMOVE, sec, ptype, effects);
+    }
+
+    private static void buildRoleLinks(Enforcer enforcer, Model.PolicyOperations op, String sec, String ptype, List<List<String>> effects) {
+        if (!effects.isEmpty() && "g".equals(sec)) {
+            enforcer.getModel().buildIncrementalRoleLinks(enforcer.getRmMap(), op, sec, ptype, effects);
+        }
+    }
+
+    /**
+     * 编码为消息字段
+     *
+     * @return 字段名到值的映射
+     */
+    public Map<String, String> toFields() {
+        Map<String, String> fields = new HashMap<>(8);
+        fields.put("op", operation.name());
+        if (sec != null) {
+            fields.put("sec", sec);
+        }
+        if (ptype != null) {
+            fields.put("ptype", ptype);
+        }
+        if (fieldIndex != 0) {
+            fields.put("fieldIndex", String.valueOf(fieldIndex));
+        }
+        if (rules != null && !rules.isEmpty()) {
+            fields.put("rules", encodeRules(rules));
+        }
+        if (newRules != null && !newRules.isEmpty()) {
+            fields.put("newRules", encodeRules(newRules));
+        }
+        return fields;
+    }
+
+    /**
+     * 从消息字段解码
+     *
+     * @param fields 由 {@link #toFields()} 生成的字段
+     * @return 策略增量
+     * @throws IllegalArgumentException 字段格式不正确
+     */
+    public static PolicyUpdate fromFields(Map<String, String> fields) {
+        String op = fields.get("op");
+        if (op == null) {
+            throw new IllegalArgumentException("missing op");
+        }
+        return new PolicyUpdate(Operation.valueOf(op), fields.get("sec"), fields.get("ptype"),
+            Integer.parseInt(fields.getOrDefault("fieldIndex", "0")),
+            decodeRules(fields.get("rules")), decodeRules(fields.get("newRules")));
+    }
+
+    /**
+     * 规则编码为「规则数;字段数,长度:值长度:值...」形式，值中可以包含任意字符
+     */
+    static String encodeRules(List<List<String>> rules) {
+        StringBuilder sb = new StringBuilder().append(rules.size()).append(';');
+        for (List<String> rule : rules) {
+            sb.append(rule.size()).append(',');
+            for (String value : rule) {
+                sb.append(value.length()).append(':').append(value);
+            }
+        }
+        return sb.toString();
+    }
+
+    static List<List<String>> decodeRules(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return List.of();
+        }
+        int[] pos = {0};
+        int count = readInt(encoded, pos, ';');
+        List<List<String>> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int size = readInt(encoded, pos, ',');
+            List<String> rule = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                int length = readInt(encoded, pos, ':');
+                if (length < 0 || pos[0] + length > encoded.length()) {
+                    throw new IllegalArgumentException("truncated rules");
+                }
+                rule.add(encoded.substring(pos[0], pos[0] + length));
+                pos[0] += length;
+            }
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    private static int readInt(String s, int[] pos, char terminator) {
+        int end = s.indexOf(terminator, pos[0]);
+        if (end < 0) {
+            throw new IllegalArgumentException("malformed rules");
+        }
+        int value = Integer.parseInt(s, pos[0], end, 10);
+        pos[0] = end + 1;
+        return value;
+    }
+
+    /**
+     * 增量操作，与 jcasbin WatcherEx 的方法对应
+     */
+    public enum Operation {
+        /**
+         * 未携带增量的通知
+         */
+        UPDATE,
+        ADD_POLICY,
+        REMOVE_POLICY,
+        REMOVE_FILTERED_POLICY,
+        SAVE_POLICY,
+        ADD_POLICIES,
+        REMOVE_POLICIES,
+        UPDATE_POLICY
+    }
+}
@@ -0,0 +1,328 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.casbin.jcasbin.model.Model;
+import org.casbin.jcasbin.persist.WatcherEx;
+import org.casbin.jcasbin.persist.WatcherUpdatable;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.params.XReadParams;
+import redis.clients.jedis.resps.StreamEntry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * 基于 Redis Streams（XADD / XREAD）的观察者，每条消息携带策略增量。
+ * <p>
+ * 与 pub/sub 不同，断线期间的消息仍保留在 Stream 中，重连后从最后处理的消息 ID 继续读取，不会丢失更新；
+ * 只有当该 ID 已被 MAXLEN 裁剪掉时，才通知一次全量重新加载，并从当前末尾继续读取。
+ * 启动时读取不到 Stream 末尾的，由读取线程退避重试，读到后同样通知一次全量重新加载，不会重放历史消息。
+ * <p>
+ * 设置了 {@link #setDeltaCallback(Consumer)} 时，增量按 Stream 顺序在读取线程上逐条回调，
+ * 可直接调用 {@link PolicyUpdate#applyTo} 原地应用；否则退化为普通观察者，经 {@link CoalescingDispatcher} 合并后回调。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class RedisStreamWatcher implements WatcherEx, WatcherUpdatable, AutoCloseable {
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final String ORIGIN_FIELD = "origin";
+
+    private final JedisPool pool;
+    private final String streamKey;
+    /**
+     * 通知合并分发器，仅在未设置增量回调时使用
+     */
+    @Getter
+    private final CoalescingDispatcher dispatcher;
+    /**
+     * 事件来源过滤，可设置实例 ID、是否回调本实例的事件，并提供跳过与回调的事件数
+     */
+    @Getter
+    private final OriginFilter originFilter = new OriginFilter();
+    /**
+     * Stream 保留的大致消息数，超出后由 XADD 近似裁剪
+     */
+    @Getter
+    @Setter
+    private volatile long maxLength = 10_000;
+    /**
+     * XREAD 每次阻塞等待的毫秒数，需小于连接池的 socket 超时
+     */
+    @Getter
+    @Setter
+    private volatile int blockMillis = 1000;
+    /**
+     * XREAD 每次读取的最大消息数
+     */
+    @Getter
+    @Setter
+    private volatile int readCount = 100;
+
+    private final WatcherCallbacks callbacks = new WatcherCallbacks();
+    private volatile Consumer<PolicyUpdate> deltaCallback;
+    /**
+     * 最后处理的消息 ID，启动时未能读取 Stream 末尾时为 null
+     */
+    @Getter
+    private volatile StreamEntryID lastId;
+    private volatile Thread reader;
+
+    public RedisStreamWatcher(JedisPool pool, String streamKey) {
+        this(pool, streamKey, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool             连接池
+     * @param streamKey        Stream 键名
+     * @param callbackExecutor 合并回调使用的线程池，为 null 时使用 {@link ForkJoinPool#commonPool()}
+     */
+    public RedisStreamWatcher(JedisPool pool, String streamKey, Executor callbackExecutor) {
+        this.pool = Objects.requireNonNull(pool);
+        this.streamKey = Objects.requireNonNull(streamKey);
+        this.dispatcher = new CoalescingDispatcher(callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor, callbacks::run);
+    }
+
+    @Override
+    public void setUpdateCallback(Runnable runnable) {
+        callbacks.set(runnable);
+    }
+
+    @Override
+    public void setUpdateCallback(Consumer<String> consumer) {
+        callbacks.set(consumer);
+    }
+
+    /**
+     * 设置增量回调，设置后不再触发 {@link #setUpdateCallback} 设置的回调
+     *
+     * @param consumer 增量消费者，例如 {@code update -> update.applyTo(enforcer)}
+     */
+    public void setDeltaCallback(Consumer<PolicyUpdate> consumer) {
+        this.deltaCallback = consumer;
+    }
+
+    @Override
+    public void update() {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.UPDATE, null, null, List.of()));
+    }
+
+    @Override
+    public void updateForAddPolicy(String sec, String ptype, String... params) {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.ADD_POLICY, sec, ptype, List.of(Arrays.asList(params))));
+    }
+
+    @Override
+    public void updateForRemovePolicy(String sec, String ptype, String... params) {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.REMOVE_POLICY, sec, ptype, List.of(Arrays.asList(params))));
+    }
+
+    @Override
+    public void updateForRemoveFilteredPolicy(String sec, String ptype, int fieldIndex, String... fieldValues) {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.REMOVE_FILTERED_POLICY, sec, ptype, fieldIndex, List.of(Arrays.asList(fieldValues)), List.of()));
+    }
+
+    @Override
+    public void updateForSavePolicy(Model model) {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.SAVE_POLICY, null, null, List.of()));
+    }
+
+    @Override
+    public void updateForAddPolicies(String sec, String ptype, List<List<String>> rules) {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.ADD_POLICIES, sec, ptype, rules));
+    }
+
+    @Override
+    public void updateForRemovePolicies(String sec, String ptype, List<List<String>> rules) {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.REMOVE_POLICIES, sec, ptype, rules));
+    }
+
+    /**
+     * jcasbin 不传递 ptype，其他实例收到后需全量重新加载；知道 ptype 时请使用 {@link #updateForUpdatePolicy(String, String, List, List)}
+     */
+    @Override
+    public void updateForUpdatePolicy(List<String> oldRule, List<String> newRule) {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.UPDATE_POLICY, null, null, 0, List.of(oldRule), List.of(newRule)));
+    }
+
+    /**
+     * 通知规则变更
+     *
+     * @param sec     section
+     * @param ptype   策略类型
+     * @param oldRule 旧规则
+     * @param newRule 新规则
+     */
+    public void updateForUpdatePolicy(String sec, String ptype, List<String> oldRule, List<String> newRule) {
+        publish(new PolicyUpdate(PolicyUpdate.Operation.UPDATE_POLICY, sec, ptype, 0, List.of(oldRule), List.of(newRule)));
+    }
+
+    /**
+     * 追加一条增量消息
+     *
+     * @param update 策略增量
+     */
+    public void publish(PolicyUpdate update) {
+        long start = Metrics.start();
+        try (Jedis j = pool.getResource()) {
+            Map<String, String> fields = update.toFields();
+            fields.put(ORIGIN_FIELD, originFilter.getInstanceId());
+            StreamEntryID id = j.xadd(streamKey, XAddParams.xAddParams().maxLen(maxLength).approximateTrimming(), fields);
+            log.debug("redis stream watcher XADD {} {} -> {}", streamKey, update.getOperation(), id);
+        } catch (Exception e) {
+            log.error("redis stream watcher publish failed", e);
+        } finally {
+            Metrics.time(Metrics.WATCHER_PUBLISH, start);
+        }
+    }
+
+    /**
+     * 启动读取线程，从当前 Stream 末尾开始读取；重复调用无效
+     */
+    public synchronized void startWatch() {
+        if (reader != null) {
+            return;
+        }
+        if (lastId == null) {
+            try (Jedis j = pool.getResource()) {
+                lastId = tailId(j);
+            } catch (Exception e) {
+                log.warn("redis stream watcher failed to read stream tail, retrying in reader", e);
+            }
+        }
+        Thread t = new Thread(this::readLoop, "casbin-redis-stream-watcher");
+        t.setDaemon(true);
+        reader = t;
+        t.start();
+    }
+
+    public synchronized void closeWatch() {
+        Thread t = reader;
+        reader = null;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        closeWatch();
+        dispatcher.close();
+    }
+
+    private StreamEntryID tailId(Jedis j) {
+        List<StreamEntry> last = j.xrevrange(streamKey, "+", "-", 1);
+        return last.isEmpty() ? new StreamEntryID() : last.get(0).getID();
+    }
+
+    private void readLoop() {
+        Backoff backoff = new Backoff(INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+        boolean reconnected = false;
+        while (reader == Thread.currentThread()) {
+            try (Jedis j = pool.getResource()) {
+                if (lastId == null) {
+                    // 启动后到读到末尾之间的消息无法确定，从末尾开始并通知一次全量重新加载
+                    lastId = tailId(j);
+                    log.warn("redis stream watcher resolved stream tail {} late, requesting full reload", lastId);
+                    deliver(new PolicyUpdate(PolicyUpdate.Operation.UPDATE, null, null, List.of()), "tail");
+                } else if (reconnected) {
+                    checkTrimmed(j);
+                }
+                reconnected = false;
+                backoff.reset();
+                while (reader == Thread.currentThread()) {
+                    List<Map.Entry<String, List<StreamEntry>>> result = j.xread(
+                        XReadParams.xReadParams().block(blockMillis).count(readCount), Map.of(streamKey, lastId));
+                    if (result == null) {
+                        continue;
+                    }
+                    for (Map.Entry<String, List<StreamEntry>> stream : result) {
+                        for (StreamEntry entry : stream.getValue()) {
+                            handle(entry);
+                            lastId = entry.getID();
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (reader != Thread.currentThread()) {
+                    break;
+                }
+                long delay = backoff.next();
+                log.warn("redis stream watcher read failed, retrying in {} ms", delay, e);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                reconnected = true;
+            }
+        }
+    }
+
+    /**
+     * 最后处理的消息已被裁剪时，其后的消息可能也已丢失，通知一次全量重新加载；
+     * 重新加载已包含当前末尾之前的变更，之后从末尾继续读取
+     */
+    private void checkTrimmed(Jedis j) {
+        if (lastId.getTime() == 0 && lastId.getSequence() == 0) {
+            return;
+        }
+        if (j.xrange(streamKey, lastId, lastId, 1).isEmpty()) {
+            StreamEntryID tail = tailId(j);
+            log.warn("redis stream watcher position {} was trimmed, requesting full reload and resuming from {}", lastId, tail);
+            deliver(new PolicyUpdate(PolicyUpdate.Operation.UPDATE, null, null, List.of()), "trimmed");
+            lastId = tail;
+        }
+    }
+
+    private void handle(StreamEntry entry) {
+        PolicyUpdate update;
+        try {
+            update = PolicyUpdate.fromFields(entry.getFields());
+        } catch (Exception e) {
+            log.warn("redis stream watcher skipped malformed entry {}", entry.getID(), e);
+            return;
+        }
+        if (!originFilter.accept(entry.getFields().get(ORIGIN_FIELD))) {
+            return;
+        }
+        if (Metrics.isEnabled()) {
+            // Stream ID 的毫秒部分由 Redis 服务端生成，结果包含两端的时钟偏差
+            Metrics.duration(Metrics.WATCHER_DELIVERY, Math.max(System.currentTimeMillis() - entry.getID().getTime(), 0) * 1_000_000);
+        }
+        deliver(update, entry.getID().toString());
+    }
+
+    private void deliver(PolicyUpdate update, String id) {
+        Consumer<PolicyUpdate> consumer = deltaCallback;
+        if (consumer == null) {
+            dispatcher.signal(formatEvent(id, update));
+            return;
+        }
+        Metrics.count(Metrics.WATCHER_RECEIVED, 1);
+        long start = Metrics.start();
+        try {
+            consumer.accept(update);
+        } catch (Throwable t) {
+            log.error("error running watcher delta callback", t);
+        } finally {
+            Metrics.time(Metrics.WATCHER_CALLBACK, start);
+        }
+    }
+
+    private String formatEvent(String id, PolicyUpdate update) {
+        return String.format("casbin watcher Get: %s %s", id, update.getOperation());
+    }
+}
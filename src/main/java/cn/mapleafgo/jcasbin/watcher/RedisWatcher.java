@@ -1,5 +1,7 @@
 package cn.mapleafgo.jcasbin.watcher;
 
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.casbin.jcasbin.persist.Watcher;
 import redis.clients.jedis.Jedis;
@@ -10,24 +12,67 @@ import java.util.Objects;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
  * 使用 JedisPool 和 Executor 进行并发的现代 Redis 观察器。
+ * <p>
+ * {@link #update()} 递增 {@code keyName} 计数器并把新值与本实例 ID 发布到 {@code channelName}，默认不回调本实例发布的消息。订阅断开后按带抖动的指数退避自动重新订阅，
+ * 重新订阅成功时对比计数器与最后收到的值，只有确实错过了更新才触发一次补偿回调。
  *
  * @author 慕枫
  */
 @Slf4j
 public class RedisWatcher implements Watcher, AutoCloseable {
+    private static final long INITIAL_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
     private final JedisPool pool;
     private final String keyName;
     private final String channelName;
-    private final Executor callbackExecutor;
+    /**
+     * 通知合并分发器，可调整安静期与最长等待时间
+     */
+    @Getter
+    private final CoalescingDispatcher dispatcher;
+    /**
+     * 事件来源过滤，可设置实例 ID、是否回调本实例的事件，并提供跳过与回调的事件数
+     */
+    @Getter
+    private final OriginFilter originFilter = new OriginFilter();
     private final ExecutorService subscriberExecutor;
     private final boolean shutdownSubscriberExecutorOnClose;
-    private volatile Runnable callback;
-    private volatile Consumer<String> callbackConsumer;
+    private final WatcherCallbacks callbacks = new WatcherCallbacks();
     private volatile JedisPubSub pubSub;
+    private volatile boolean watching;
+    /**
+     * 订阅循环的代次，每次 startWatch 与 closeWatch 递增；循环发现代次变化即退出，
+     * 避免 closeWatch 后立即 startWatch 时旧循环继续重连，与新循环争用订阅
+     */
+    private volatile long generation;
+    /**
+     * 最近一次成功建立订阅的实例
+     */
+    private volatile JedisPubSub subscribed;
+
+    /**
+     * 当前是否处于订阅状态
+     */
+    @Getter
+    private volatile boolean connected;
+    /**
+     * 最后收到或确认的计数器值，尚未订阅成功时为 -1
+     */
+    @Getter
+    private volatile long lastSeenCounter = -1;
+    /**
+     * 最后一次收到消息的时间戳（毫秒），未收到过时为 0
+     */
+    @Getter
+    private volatile long lastMessageTime;
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong missedUpdates = new AtomicLong();
+    private final AtomicLong catchUpReloads = new AtomicLong();
 
     /**
      *  创建一个 RedisWatcher。
@@ -47,78 +92,181 @@ public class RedisWatcher implements Watcher, AutoCloseable {
         this.keyName = Objects.requireNonNull(keyName);
         this.channelName = Objects.requireNonNull(channelName);
         // allow null callbackExecutor and default to commonPool
-        this.callbackExecutor = callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor;
+        this.dispatcher = new CoalescingDispatcher(callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor, callbacks::run);
         this.subscriberExecutor = Objects.requireNonNull(subscriberExecutor);
         this.shutdownSubscriberExecutorOnClose = shutdownSubscriberExecutorOnClose;
     }
 
     @Override
     public void setUpdateCallback(Runnable runnable) {
-        this.callback = runnable;
+        callbacks.set(runnable);
     }
 
     @Override
     public void setUpdateCallback(Consumer<String> consumer) {
-        this.callbackConsumer = consumer;
+        callbacks.set(consumer);
     }
 
     @Override
     public void update() {
+        long start = Metrics.start();
         try (Jedis j = pool.getResource()) {
             // Jedis supports INCR which returns the new value
-            Long val = j.incr(keyName);
+            long val = j.incr(keyName);
+            // 消息格式为「计数器值:实例 ID」
+            j.publish(channelName, CounterMessage.format(val, originFilter.getInstanceId()));
             log.info("redis watcher INCR {} -> {}", keyName, val);
         } catch (Exception e) {
             log.error("redis watcher update failed", e);
+        } finally {
+            Metrics.time(Metrics.WATCHER_PUBLISH, start);
         }
     }
 
     public synchronized void startWatch() {
-        if (pubSub != null) {
+        if (watching) {
             // already running
             return;
         }
+        watching = true;
+        long gen = ++generation;
+        subscriberExecutor.execute(() -> subscribeLoop(gen));
+    }
 
-        JedisPubSub ps = new JedisPubSub() {
-            @Override
-            public void onMessage(String channel, String message) {
-                Runnable cb = callback;
-                Consumer<String> cbConsumer = callbackConsumer;
-                if (cb != null) {
-                    callbackExecutor.execute(() -> {
-                        try {
-                            cb.run();
-                        } catch (Throwable t) {
-                            log.error("error running watcher callback", t);
-                        }
-                    });
-                }
-                if (cbConsumer != null) {
-                    String formatted = formatEvent(message);
-                    callbackExecutor.execute(() -> {
-                        try {
-                            cbConsumer.accept(formatted);
-                        } catch (Throwable t) {
-                            log.error("error running watcher consumer", t);
-                        }
-                    });
+    /**
+     * 订阅直到 {@link #closeWatch()}，连接异常时按带抖动的指数退避重新订阅
+     *
+     * @param gen 本循环的代次
+     */
+    private void subscribeLoop(long gen) {
+        Backoff backoff = new Backoff(INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+        while (generation == gen) {
+            JedisPubSub ps = newPubSub(gen);
+            synchronized (this) {
+                // 与 closeWatch 互斥，旧循环不会覆盖新循环的订阅
+                if (generation != gen) {
+                    break;
                 }
+                this.pubSub = ps;
             }
-        };
-
-        this.pubSub = ps;
-
-        subscriberExecutor.execute(() -> {
             try (Jedis j = pool.getResource()) {
                 // subscribe blocks until unsubscribed
                 j.subscribe(ps, channelName);
             } catch (Exception e) {
                 log.error("redis watcher subscribe error", e);
+            } finally {
+                connected = false;
+            }
+            if (generation != gen) {
+                break;
+            }
+            if (subscribed == ps) {
+                // 本次订阅成功建立过，断开后从初始退避重新开始
+                backoff.reset();
             }
-        });
+            long delay = backoff.next();
+            log.warn("redis watcher resubscribing in {} ms", delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            reconnects.incrementAndGet();
+        }
+    }
+
+    private JedisPubSub newPubSub(long gen) {
+        return new JedisPubSub() {
+            @Override
+            public void onSubscribe(String channel, int subscribedChannels) {
+                if (generation != gen || pubSub != this) {
+                    // closeWatch 发生在订阅建立之前
+                    unsubscribe();
+                    return;
+                }
+                subscribed = this;
+                connected = true;
+                checkMissed();
+            }
+
+            @Override
+            public void onMessage(String channel, String message) {
+                lastMessageTime = System.currentTimeMillis();
+                CounterMessage m = CounterMessage.parse(message);
+                if (m.counter > lastSeenCounter) {
+                    lastSeenCounter = m.counter;
+                }
+                if (originFilter.accept(m.origin)) {
+                    dispatcher.signal(formatEvent(message));
+                }
+            }
+        };
+    }
+
+    /**
+     * 订阅建立后读取计数器：首次订阅只记录当前值，重新订阅时如果计数器超过最后收到的值则触发一次补偿回调
+     */
+    private void checkMissed() {
+        long current;
+        try (Jedis j = pool.getResource()) {
+            current = CounterMessage.parseCounter(j.get(keyName));
+        } catch (Exception e) {
+            log.warn("redis watcher failed to read {}", keyName, e);
+            return;
+        }
+        long seen = lastSeenCounter;
+        if (seen >= 0 && current > seen) {
+            missedUpdates.addAndGet(current - seen);
+            catchUpReloads.incrementAndGet();
+            log.info("redis watcher missed {} updates while disconnected, triggering catch-up", current - seen);
+            dispatcher.signal(formatEvent(String.valueOf(current)));
+        }
+        if (current > seen) {
+            lastSeenCounter = current;
+        } else if (seen < 0) {
+            lastSeenCounter = 0;
+        }
+    }
+
+    /**
+     * @return 重新订阅的次数
+     */
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    /**
+     * @return 断线期间错过的更新总数
+     */
+    public long getMissedUpdates() {
+        return missedUpdates.get();
+    }
+
+    /**
+     * @return 触发补偿回调的次数
+     */
+    public long getCatchUpReloads() {
+        return catchUpReloads.get();
+    }
+
+    /**
+     * 读取计数器并与最后收到的值比较
+     *
+     * @return 落后的更新数，无法读取时返回 -1
+     */
+    public long getLag() {
+        try (Jedis j = pool.getResource()) {
+            return Math.max(CounterMessage.parseCounter(j.get(keyName)) - Math.max(lastSeenCounter, 0), 0);
+        } catch (Exception e) {
+            log.warn("redis watcher failed to read {}", keyName, e);
+            return -1;
+        }
     }
 
     public synchronized void closeWatch() {
+        watching = false;
+        generation++;
         JedisPubSub current = this.pubSub;
         if (current != null) {
             try {
@@ -134,6 +282,7 @@ public class RedisWatcher implements Watcher, AutoCloseable {
     @Override
     public void close() {
         closeWatch();
+        dispatcher.close();
         if (shutdownSubscriberExecutorOnClose) {
             try {
                 subscriberExecutor.shutdownNow();
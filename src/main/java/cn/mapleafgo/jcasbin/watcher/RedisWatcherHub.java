@@ -0,0 +1,240 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.metrics.Metrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多路复用的 Redis 观察者：整个 hub 只用一个连接和一个线程以 PSUBSCRIBE {@code prefix*} 订阅，
+ * 再按 channel 分发给注册的 {@link HubWatcher}，新增一个 enforcer 只是多一个 map 条目。
+ * <p>
+ * 每个观察者的计数器 key 与 channel 同名（前缀加名称），消息格式与 {@link RedisWatcher} 相同；
+ * 断线后自动重新订阅，并用一次 MGET 检查所有观察者是否错过了更新。
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+public class RedisWatcherHub implements AutoCloseable {
+    private static final long INITIAL_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final JedisPool pool;
+    /**
+     * channel 前缀，不能包含 glob 通配符
+     */
+    @Getter
+    private final String prefix;
+    private final Executor callbackExecutor;
+    /**
+     * 本实例 ID，所有注册的观察者共用
+     */
+    @Getter
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, HubWatcher> watchers = new ConcurrentHashMap<>();
+    private final AtomicLong reconnects = new AtomicLong();
+    private volatile JedisPubSub pubSub;
+    private volatile Thread subscriber;
+    /**
+     * 当前是否处于订阅状态
+     */
+    @Getter
+    private volatile boolean connected;
+
+    public RedisWatcherHub(JedisPool pool, String prefix) {
+        this(pool, prefix, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool             连接池
+     * @param prefix           channel 与计数器 key 的前缀，例如 {@code "casbin:"}
+     * @param callbackExecutor 执行回调的线程池，为 null 时使用 {@link ForkJoinPool#commonPool()}
+     */
+    public RedisWatcherHub(JedisPool pool, String prefix, Executor callbackExecutor) {
+        if (prefix.indexOf('*') >= 0 || prefix.indexOf('?') >= 0 || prefix.indexOf('[') >= 0) {
+            throw new IllegalArgumentException("prefix must not contain glob characters");
+        }
+        this.pool = Objects.requireNonNull(pool);
+        this.prefix = prefix;
+        this.callbackExecutor = callbackExecutor == null ? ForkJoinPool.commonPool() : callbackExecutor;
+    }
+
+    /**
+     * 获取或注册名称对应的观察者，首次注册时启动共享订阅；新注册的观察者先读取一次计数器作为基准，
+     * 共享订阅已建立时，收到第一条消息之前断线错过的更新同样会触发补偿回调
+     *
+     * @param name 名称，例如模型或租户标识
+     * @return 观察者，同名多次调用返回同一实例
+     */
+    public HubWatcher watcher(String name) {
+        HubWatcher watcher = watchers.computeIfAbsent(name, n -> new HubWatcher(n, instanceId, callbackExecutor, this::publish, this::unregister));
+        if (watcher.lastSeenCounter < 0) {
+            readCounter(watcher);
+        }
+        start();
+        return watcher;
+    }
+
+    /**
+     * @return 已注册的观察者数
+     */
+    public int size() {
+        return watchers.size();
+    }
+
+    /**
+     * @return 重新订阅的次数
+     */
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        Thread t = subscriber;
+        subscriber = null;
+        JedisPubSub ps = pubSub;
+        if (ps != null) {
+            try {
+                ps.punsubscribe();
+            } catch (Exception e) {
+                log.warn("error unsubscribing", e);
+            }
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+        watchers.values().forEach(w -> w.getDispatcher().close());
+        watchers.clear();
+    }
+
+    private void publish(HubWatcher watcher) {
+        String key = prefix + watcher.getName();
+        long start = Metrics.start();
+        try (Jedis j = pool.getResource()) {
+            long val = j.incr(key);
+            j.publish(key, CounterMessage.format(val, instanceId));
+            log.info("redis watcher hub INCR {} -> {}", key, val);
+        } catch (Exception e) {
+            log.error("redis watcher hub update failed", e);
+        } finally {
+            Metrics.time(Metrics.WATCHER_PUBLISH, start);
+        }
+    }
+
+    private void readCounter(HubWatcher watcher) {
+        String key = prefix + watcher.getName();
+        try (Jedis j = pool.getResource()) {
+            watcher.advanceCounter(Math.max(CounterMessage.parseCounter(j.get(key)), 0));
+        } catch (Exception e) {
+            log.warn("redis watcher hub failed to read {}", key, e);
+        }
+    }
+
+    private void unregister(HubWatcher watcher) {
+        watchers.remove(watcher.getName(), watcher);
+    }
+
+    private synchronized void start() {
+        if (subscriber != null) {
+            return;
+        }
+        Thread t = new Thread(this::subscribeLoop, "casbin-redis-watcher-hub");
+        t.setDaemon(true);
+        subscriber = t;
+        t.start();
+    }
+
+    private void subscribeLoop() {
+        Backoff backoff = new Backoff(INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+        while (subscriber == Thread.currentThread()) {
+            boolean[] subscribed = {false};
+            JedisPubSub ps = new JedisPubSub() {
+                @Override
+                public void onPSubscribe(String pattern, int subscribedChannels) {
+                    if (subscriber == null) {
+                        punsubscribe();
+                        return;
+                    }
+                    subscribed[0] = true;
+                    connected = true;
+                    checkMissed();
+                }
+
+                @Override
+                public void onPMessage(String pattern, String channel, String message) {
+                    HubWatcher watcher = watchers.get(channel.substring(prefix.length()));
+                    if (watcher == null) {
+                        return;
+                    }
+                    CounterMessage m = CounterMessage.parse(message);
+                    watcher.advanceCounter(m.counter);
+                    watcher.receive("casbin watcher Get: " + message, m.origin);
+                }
+            };
+            pubSub = ps;
+            try (Jedis j = pool.getResource()) {
+                // psubscribe blocks until unsubscribed
+                j.psubscribe(ps, prefix + "*");
+            } catch (Exception e) {
+                log.error("redis watcher hub subscribe error", e);
+            } finally {
+                connected = false;
+            }
+            if (subscriber != Thread.currentThread()) {
+                break;
+            }
+            if (subscribed[0]) {
+                backoff.reset();
+            }
+            long delay = backoff.next();
+            log.warn("redis watcher hub resubscribing in {} ms", delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                break;
+            }
+            reconnects.incrementAndGet();
+        }
+    }
+
+    /**
+     * 订阅建立后一次读取所有计数器，对错过了更新的观察者各触发一次补偿回调
+     */
+    private void checkMissed() {
+        List<HubWatcher> list = new ArrayList<>(watchers.values());
+        if (list.isEmpty()) {
+            return;
+        }
+        List<String> values;
+        try (Jedis j = pool.getResource()) {
+            values = j.mget(list.stream().map(w -> prefix + w.getName()).toArray(String[]::new));
+        } catch (Exception e) {
+            log.warn("redis watcher hub failed to read counters", e);
+            return;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            HubWatcher watcher = list.get(i);
+            long current = CounterMessage.parseCounter(values.get(i));
+            long seen = watcher.lastSeenCounter;
+            // 先推进计数再回调，回调中看到的计数已包含本次补发
+            watcher.advanceCounter(Math.max(current, 0));
+            if (seen >= 0 && current > seen) {
+                log.info("redis watcher hub {} missed {} updates while disconnected, triggering catch-up", watcher.getName(), current - seen);
+                watcher.receive("casbin watcher Get: " + current, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.Consumer;
+
+/**
+ * 观察者通过 {@code setUpdateCallback} 设置的两种回调，收到通知时依次执行，回调抛出的异常只记录日志
+ *
+ * @author mapleafgo
+ */
+@Slf4j
+final class WatcherCallbacks {
+    private volatile Runnable callback;
+    private volatile Consumer<String> callbackConsumer;
+
+    void set(Runnable runnable) {
+        this.callback = runnable;
+    }
+
+    void set(Consumer<String> consumer) {
+        this.callbackConsumer = consumer;
+    }
+
+    /**
+     * 执行已设置的回调
+     *
+     * @param message 传给 {@link Consumer} 回调的事件描述
+     */
+    void run(String message) {
+        Runnable cb = callback;
+        Consumer<String> cbConsumer = callbackConsumer;
+        if (cb != null) {
+            try {
+                cb.run();
+            } catch (Throwable t) {
+                log.error("error running watcher callback", t);
+            }
+        }
+        if (cbConsumer != null) {
+            try {
+                cbConsumer.accept(message);
+            } catch (Throwable t) {
+                log.error("error running watcher consumer", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.watcher.PolicyUpdate;
+import org.casbin.jcasbin.main.Enforcer;
+import org.casbin.jcasbin.model.Model;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 基于内存 H2 的按域懒加载测试
+ *
+ * @author mapleafgo
+ */
+class DomainPolicyCacheTest {
+    /**
+     * g2 为资源分组，不含域字段
+     */
+    private static final String MODEL = """
+        [request_definition]
+        r = sub, dom, obj, act
+        [policy_definition]
+        p = sub, dom, obj, act
+        [role_definition]
+        g = _, _, _
+        g2 = _, _
+        [policy_effect]
+        e = some(where (p.eft == allow))
+        [matchers]
+        m = g(r.sub, p.sub, r.dom) && r.dom == p.dom && g2(r.obj, p.obj) && r.act == p.act
+        """;
+
+    private DataSource dataSource;
+    private HutoolDBFilteredAdapter adapter;
+    private Enforcer enforcer;
+    private DomainPolicyCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = HutoolDBAdapterTest.newDataSource();
+        adapter = new HutoolDBFilteredAdapter(dataSource, "casbin_rule");
+        adapter.addPolicies("p", "p", List.of(
+            List.of("admin", "tenant1", "docs", "read"),
+            List.of("admin", "tenant2", "docs", "read")));
+        adapter.addPolicies("g", "g", List.of(
+            List.of("alice", "admin", "tenant1"),
+            List.of("bob", "admin", "tenant2")));
+        adapter.addPolicy("g", "g2", List.of("report", "docs"));
+        enforcer = new Enforcer(Model.newModelFromString(MODEL));
+        enforcer.setAdapter(adapter);
+        cache = new DomainPolicyCache(enforcer, adapter);
+    }
+
+    @Test
+    void ptypesWithoutDomainAreLoadedOnce() {
+        assertTrue(cache.enforce("tenant1", "alice", "tenant1", "report", "read"));
+        assertTrue(cache.enforce("tenant2", "bob", "tenant2", "report", "read"));
+        assertFalse(cache.enforce("tenant1", "alice", "tenant1", "invoice", "read"));
+        assertEquals(1, HutoolDBAdapterTest.policy(enforcer.getModel(), "g2").size());
+
+        cache.invalidate("tenant1");
+        assertTrue(cache.enforce("tenant1", "alice", "tenant1", "report", "read"));
+    }
+
+    @Test
+    void ptypesWithoutDomainReloadOnInvalidation() {
+        assertFalse(cache.enforce("tenant1", "alice", "tenant1", "invoice", "read"));
+
+        adapter.addPolicy("g", "g2", List.of("invoice", "docs"));
+        cache.invalidate(new PolicyUpdate(PolicyUpdate.Operation.ADD_POLICY, "g", "g2", List.of(List.of("invoice", "docs"))));
+        assertTrue(cache.enforce("tenant1", "alice", "tenant1", "invoice", "read"));
+
+        adapter.removePolicy("g", "g2", List.of("report", "docs"));
+        cache.invalidateAll();
+        assertFalse(cache.enforce("tenant1", "alice", "tenant1", "report", "read"));
+        assertTrue(cache.enforce("tenant1", "alice", "tenant1", "invoice", "read"));
+        assertEquals(List.of(List.of("invoice", "docs")), HutoolDBAdapterTest.policy(enforcer.getModel(), "g2"));
+    }
+
+    @Test
+    void concurrentDomainsDoNotEvictEachOtherForever() throws Exception {
+        List<List<String>> rules = new ArrayList<>();
+        for (int t = 3; t <= 8; t++) {
+            rules.add(List.of("admin", "tenant" + t, "docs", "read"));
+        }
+        adapter.addPolicies("p", "p", rules);
+        // 读取变慢后各线程的加载同时结束，排队的写锁依次淘汰前一个线程刚加载的域
+        DataSource slow = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getConnection")) {
+                Thread.sleep(20);
+            }
+            try {
+                return method.invoke(dataSource, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        Enforcer slowEnforcer = new Enforcer(Model.newModelFromString(MODEL));
+        DomainPolicyCache cache = new DomainPolicyCache(slowEnforcer, new HutoolDBFilteredAdapter(slow, "casbin_rule"));
+        cache.setMaxDomains(1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // 每轮所有线程同时访问各自的域
+        CyclicBarrier round = new CyclicBarrier(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 1; t <= threads; t++) {
+                String domain = "tenant" + t;
+                results.add(executor.submit(() -> {
+                    // 每个线程访问不同的域，容量只有一个域，加载完成到 enforce 之间可能被其他线程淘汰
+                    boolean allowed = true;
+                    for (int i = 0; i < 20; i++) {
+                        round.await();
+                        allowed &= cache.enforce(domain, "admin", domain, "report", "read");
+                    }
+                    return allowed;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(cache.getEvictions() > 0);
+        // 加载后的域在 enforce 前不会被淘汰，每次调用最多加载一次
+        assertTrue(cache.getMisses() <= threads * 20L, "misses: " + cache.getMisses());
+    }
+}
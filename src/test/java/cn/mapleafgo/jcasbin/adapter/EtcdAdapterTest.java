@@ -0,0 +1,115 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.standin.EtcdStandIn;
+import io.etcd.jetcd.Client;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.model.Model;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static cn.mapleafgo.jcasbin.adapter.HutoolDBAdapterTest.MODEL;
+import static cn.mapleafgo.jcasbin.adapter.HutoolDBAdapterTest.policy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 基于 etcd 替身的适配器测试，替身与 etcd 一样拒绝同一事务中重复的 key
+ *
+ * @author mapleafgo
+ */
+class EtcdAdapterTest {
+    private EtcdStandIn etcd;
+    private Client client;
+    private EtcdAdapter adapter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        etcd = new EtcdStandIn();
+        client = Client.builder().endpoints(etcd.getEndpoint()).build();
+        adapter = new EtcdAdapter(client, "/casbin/policy/");
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        etcd.close();
+    }
+
+    private List<List<String>> load() {
+        Model model = Model.newModelFromString(MODEL);
+        adapter.loadPolicy(model);
+        return policy(model, "p");
+    }
+
+    @Test
+    void updatePolicyToSameRuleKeepsIt() {
+        List<String> rule = List.of("alice", "tenant1", "data1", "read");
+        adapter.addPolicy("p", "p", rule);
+        adapter.updatePolicy("p", "p", rule, rule);
+        assertEquals(List.of(rule), load());
+    }
+
+    @Test
+    void batchesWithDuplicateRulesAreApplied() {
+        List<String> alice = List.of("alice", "tenant1", "data1", "read");
+        List<String> bob = List.of("bob", "tenant2", "data2", "write");
+        adapter.addPolicies("p", "p", List.of(alice, bob, alice));
+        assertEquals(List.of(alice, bob), load());
+
+        adapter.removePolicies("p", "p", List.of(alice, alice));
+        assertEquals(List.of(bob), load());
+    }
+
+    private static Model model(List<List<String>> rules) {
+        Model model = Model.newModelFromString(MODEL);
+        for (List<String> rule : rules) {
+            model.addPolicy("p", "p", rule);
+        }
+        return model;
+    }
+
+    private static List<List<String>> rules(String user, int count) {
+        List<List<String>> rules = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rules.add(List.of(user, "tenant1", "data" + i, "read"));
+        }
+        return rules;
+    }
+
+    @Test
+    void savePolicyFitsInOneTxn() {
+        List<String> alice = List.of("alice", "tenant1", "data1", "read");
+        List<String> bob = List.of("bob", "tenant2", "data2", "write");
+        List<String> carol = List.of("carol", "tenant1", "data3", "read");
+        adapter.addPolicies("p", "p", List.of(alice, bob));
+        int before = etcd.getTxns();
+
+        adapter.savePolicy(model(List.of(bob, carol)));
+        assertEquals(1, etcd.getTxns() - before);
+        assertEquals(Set.of(bob, carol), new HashSet<>(load()));
+    }
+
+    @Test
+    void failedSavePolicyKeepsOldRules() {
+        adapter.setTxnSize(4);
+        List<List<String>> old = rules("alice", 10);
+        adapter.addPolicies("p", "p", old);
+        List<List<String>> updated = rules("bob", 10);
+
+        // 写入新规则的事务提交一部分后失败，旧规则一条都不会丢
+        etcd.setFailTxnsAfter(2);
+        assertThrows(CasbinAdapterException.class, () -> adapter.savePolicy(model(updated)));
+        assertTrue(load().containsAll(old));
+
+        etcd.setFailTxnsAfter(-1);
+        adapter.savePolicy(model(updated));
+        assertEquals(new HashSet<>(updated), new HashSet<>(load()));
+    }
+}
@@ -0,0 +1,222 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.hutool.db.Db;
+import cn.hutool.db.Entity;
+import cn.hutool.db.ds.simple.SimpleDataSource;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.model.Model;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 基于内存 H2 的适配器测试
+ *
+ * @author mapleafgo
+ */
+class HutoolDBAdapterTest {
+    static final String MODEL = """
+        [request_definition]
+        r = sub, dom, obj, act
+        [policy_definition]
+        p = sub, dom, obj, act
+        [role_definition]
+        g = _, _, _
+        [policy_effect]
+        e = some(where (p.eft == allow))
+        [matchers]
+        m = g(r.sub, p.sub, r.dom) && r.dom == p.dom && r.obj == p.obj && r.act == p.act
+        """;
+
+    private DataSource dataSource;
+
+    static DataSource newDataSource() {
+        return new SimpleDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "", "");
+    }
+
+    static List<List<String>> policy(Model model, String ptype) {
+        return model.model.get(ptype.substring(0, 1)).get(ptype).policy;
+    }
+
+    @BeforeEach
+    void setUp() {
+        dataSource = newDataSource();
+    }
+
+    private HutoolDBAdapter adapter(CasbinTable table) throws Exception {
+        HutoolDBAdapter adapter = new HutoolDBAdapter(dataSource, table);
+        adapter.addPolicies("p", "p", List.of(
+            List.of("alice", "tenant1", "data1", "read"),
+            List.of("bob", "tenant2", "data2", "write")));
+        return adapter;
+    }
+
+    private static Model load(HutoolDBAdapter adapter) {
+        Model model = Model.newModelFromString(MODEL);
+        adapter.loadPolicy(model);
+        return model;
+    }
+
+    @Test
+    void loadWithSmallFetchSizeReadsEveryRow() throws Exception {
+        HutoolDBAdapter adapter = adapter(new CasbinTable("casbin_rule"));
+        adapter.addPolicy("g", "g", List.of("alice", "admin", "tenant1"));
+        List<List<String>> expected = policy(load(adapter), "p");
+
+        adapter.setFetchSize(1);
+        Model model = load(adapter);
+        assertEquals(expected, policy(model, "p"));
+        assertEquals(List.of(List.of("alice", "admin", "tenant1")), policy(model, "g"));
+    }
+
+    @Test
+    void removeFilteredPolicyBeyondColumnsDeletesNothing() throws Exception {
+        HutoolDBAdapter adapter = adapter(new CasbinTable("casbin_rule"));
+        assertThrows(CasbinAdapterException.class, () -> adapter.removeFilteredPolicy("p", "p", 5, "x"));
+        assertEquals(2, policy(load(adapter), "p").size());
+
+        adapter.removeFilteredPolicy("p", "p", 1, "tenant1");
+        assertEquals(List.of(List.of("bob", "tenant2", "data2", "write")), policy(load(adapter), "p"));
+    }
+
+    @Test
+    void loadFilteredPolicyBeyondColumnsIsRejected() throws Exception {
+        adapter(new CasbinTable("casbin_rule"));
+        HutoolDBFilteredAdapter filtered = new HutoolDBFilteredAdapter(dataSource, "casbin_rule");
+        Model model = Model.newModelFromString(MODEL);
+        assertThrows(CasbinAdapterException.class,
+            () -> filtered.loadFilteredPolicy(model, new PolicyFilter().whereIn("p", 5, List.of("x"))));
+        assertEquals(0, policy(model, "p").size());
+
+        filtered.loadFilteredPolicy(model, new PolicyFilter().where("p", "", "tenant2"));
+        assertEquals(List.of(List.of("bob", "tenant2", "data2", "write")), policy(model, "p"));
+    }
+
+    @Test
+    void addPoliciesInsertsDuplicateRulesOnce() throws Exception {
+        HutoolDBAdapter adapter = adapter(new CasbinTable("casbin_rule"));
+        List<String> rule = List.of("carol", "tenant1", "data3", "read");
+        adapter.addPolicies("p", "p", List.of(rule, rule));
+        adapter.addPolicies("p", "p", List.of(rule));
+        assertEquals(3, policy(load(adapter), "p").size());
+    }
+
+    @Test
+    void ruleHashInsertKeepsExistingRow() throws Exception {
+        CasbinTable table = new CasbinTable("casbin_rule_hash", true);
+        HutoolDBAdapter adapter = adapter(table);
+        Entity before = Db.use(dataSource).queryOne(table.statSql());
+        adapter.addPolicy("p", "p", List.of("alice", "tenant1", "data1", "read"));
+        adapter.addPolicies("p", "p", List.of(List.of("bob", "tenant2", "data2", "write")));
+        // 已存在的规则不会被重写，行数与最大 id 不变
+        assertEquals(before, Db.use(dataSource).queryOne(table.statSql()));
+        assertEquals(2, policy(load(adapter), "p").size());
+    }
+
+    @Test
+    void parallelLoadKeepsOrderAndBoundsPrefetchedRanges() throws Exception {
+        HutoolDBAdapter adapter = adapter(new CasbinTable("casbin_rule"));
+        List<List<String>> rules = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rules.add(List.of("user" + i, "tenant1", "data" + i, "read"));
+        }
+        adapter.addPolicies("p", "p", rules);
+        List<List<String>> serial = policy(load(adapter), "p");
+
+        adapter.setLoadParallelism(3);
+        assertEquals(serial, policy(load(adapter), "p"));
+
+        AtomicInteger connections = new AtomicInteger();
+        DataSource counting = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getConnection")) {
+                connections.incrementAndGet();
+            }
+            try {
+                return method.invoke(dataSource, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        int[] seen = {-1};
+        List<List<String>> loaded = new ArrayList<>();
+        adapter.fetchRules(counting, rule -> {
+            if (seen[0] < 0) {
+                // 合并第一个区间时暂停，其余区间读取得再快也只能预取有限的几个
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                seen[0] = connections.get();
+            }
+            loaded.add(rule.subList(1, rule.size()));
+        });
+        assertEquals(serial, loaded);
+        // 一个连接读取主键范围，其余为 loadParallelism + 1 个区间
+        assertTrue(seen[0] <= 1 + 3 + 1, "connections opened while the first range was merged: " + seen[0]);
+    }
+
+    private Map<String, Long> ids(CasbinTable table) throws Exception {
+        Map<String, Long> ids = new HashMap<>();
+        for (Entity row : Db.use(dataSource).query("SELECT id, v0 FROM " + table.getName())) {
+            ids.put(row.getStr("v0"), row.getLong("id"));
+        }
+        return ids;
+    }
+
+    @Test
+    void incrementalSaveTouchesOnlyChangedRows() throws Exception {
+        CasbinTable table = new CasbinTable("casbin_rule");
+        HutoolDBAdapter adapter = adapter(table);
+        adapter.setIncrementalSave(true);
+        Map<String, Long> before = ids(table);
+        // 重复行在增量保存时被清理
+        Db.use(dataSource).execute("INSERT INTO casbin_rule (id, ptype, v0, v1, v2, v3) VALUES (1, 'p', 'alice', 'tenant1', 'data1', 'read')");
+
+        Model model = Model.newModelFromString(MODEL);
+        model.addPolicy("p", "p", List.of("alice", "tenant1", "data1", "read"));
+        model.addPolicy("p", "p", List.of("carol", "tenant1", "data3", "read"));
+        adapter.savePolicy(model);
+
+        assertEquals(Set.of(List.of("alice", "tenant1", "data1", "read"), List.of("carol", "tenant1", "data3", "read")),
+            new HashSet<>(policy(load(adapter), "p")));
+        Map<String, Long> after = ids(table);
+        assertEquals(2, Db.use(dataSource).count(Entity.create("casbin_rule")));
+        // 未变化的规则保留原行，重复的两行中只删除一行
+        assertTrue(Set.of(before.get("alice"), 1L).contains(after.get("alice")));
+        assertFalse(after.containsKey("bob"));
+    }
+
+    @Test
+    void incrementalSaveComparesRulesTruncatedToColumns() throws Exception {
+        CasbinTable table = new CasbinTable("casbin_rule_short", 3, CasbinTable.DEFAULT_FIELD_LENGTH, false);
+        HutoolDBAdapter adapter = new HutoolDBAdapter(dataSource, table);
+        adapter.setIncrementalSave(true);
+        Model model = Model.newModelFromString(MODEL);
+        model.addPolicy("p", "p", List.of("alice", "tenant1", "data1", "read"));
+        adapter.savePolicy(model);
+        Map<String, Long> before = ids(table);
+
+        // 超出列数的字段未落库，再次保存时不应视为变化而删除重插
+        adapter.savePolicy(model);
+        assertEquals(before, ids(table));
+        assertEquals(List.of(List.of("alice", "tenant1", "data1")), policy(load(adapter), "p"));
+    }
+}
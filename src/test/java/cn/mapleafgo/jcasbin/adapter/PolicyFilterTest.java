@@ -0,0 +1,42 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author mapleafgo
+ */
+class PolicyFilterTest {
+    private final CasbinTable table = new CasbinTable("casbin_rule");
+
+    @Test
+    void toSql() {
+        List<Object> params = new ArrayList<>();
+        String sql = new PolicyFilter().where("p", "", "tenant1").whereIn("g", 2, List.of("a", "b")).toSql(table, params);
+        assertEquals("(ptype = ? AND v1 = ?) OR (ptype = ? AND v2 IN (?, ?))", sql);
+        assertEquals(List.of("p", "tenant1", "g", "a", "b"), params);
+    }
+
+    @Test
+    void toSqlRejectsFieldBeyondColumns() {
+        PolicyFilter filter = new PolicyFilter().whereIn("p", table.getFieldCount(), List.of("x"));
+        assertThrows(CasbinAdapterException.class, () -> filter.toSql(table, new ArrayList<>()));
+        // 通配条件不限制字段，可以超出列数
+        PolicyFilter wildcard = new PolicyFilter().whereIn("p", table.getFieldCount(), List.of(""));
+        assertEquals("(ptype = ?)", wildcard.toSql(table, new ArrayList<>()));
+    }
+
+    @Test
+    void match() {
+        PolicyFilter filter = new PolicyFilter().where("p", "", "tenant1");
+        assertTrue(filter.match(List.of("p", "alice", "tenant1", "data1")));
+        assertFalse(filter.match(List.of("p", "alice", "tenant2", "data1")));
+        assertFalse(filter.match(List.of("g", "alice", "tenant1")));
+    }
+}
@@ -0,0 +1,49 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.casbin.jcasbin.main.Enforcer;
+import org.casbin.jcasbin.model.Model;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 回放变更后的内存模型需与数据库重新加载的结果一致
+ *
+ * @author mapleafgo
+ */
+class PolicyReplayerTest {
+    private final DataSource dataSource = HutoolDBAdapterTest.newDataSource();
+
+    private void assertReplayMatchesReload(CasbinTable table) throws Exception {
+        HutoolDBAdapter writer = new HutoolDBAdapter(dataSource, table, true);
+        writer.addPolicies("p", "p", List.of(
+            List.of("alice", "tenant1", "data1", "read"),
+            List.of("alice", "tenant1", "data2", "write"),
+            List.of("bob", "tenant1", "data1", "read")));
+        Enforcer enforcer = new Enforcer(Model.newModelFromString(HutoolDBAdapterTest.MODEL), new HutoolDBAdapter(dataSource, table, true));
+        PolicyReplayer replayer = new PolicyReplayer(enforcer, (HutoolDBAdapter) enforcer.getAdapter());
+
+        writer.removePolicy("p", "p", List.of("alice", "tenant1"));
+        writer.removeFilteredPolicy("p", "p", 0, null, "tenant1", "data1");
+        assertTrue(replayer.sync());
+
+        Model reloaded = Model.newModelFromString(HutoolDBAdapterTest.MODEL);
+        writer.loadPolicy(reloaded);
+        assertEquals(HutoolDBAdapterTest.policy(reloaded, "p"), enforcer.getPolicy());
+    }
+
+    @Test
+    void replayRemoveMatchesPrefixDelete() throws Exception {
+        assertReplayMatchesReload(new CasbinTable("casbin_rule"));
+    }
+
+    @Test
+    void replayRemoveMatchesExactDeleteWithRuleHash() throws Exception {
+        assertReplayMatchesReload(new CasbinTable("casbin_rule_hash", true));
+    }
+}
@@ -0,0 +1,125 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.mapleafgo.jcasbin.standin.RedisStandIn;
+import org.casbin.jcasbin.model.Model;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static cn.mapleafgo.jcasbin.adapter.HutoolDBAdapterTest.MODEL;
+import static cn.mapleafgo.jcasbin.adapter.HutoolDBAdapterTest.policy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 基于 Redis 替身的适配器测试
+ *
+ * @author mapleafgo
+ */
+class RedisAdapterTest {
+    private static final String PREFIX = "casbin:policy:";
+    private static final List<String> ALICE = List.of("alice", "tenant1", "data1", "read");
+    private static final List<String> BOB = List.of("bob", "tenant2", "data2", "write");
+    private static final List<String> CAROL = List.of("carol", "tenant1", "data3", "write");
+
+    private RedisStandIn redis;
+    private JedisPool pool;
+    private RedisAdapter adapter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new RedisStandIn();
+        pool = new JedisPool("127.0.0.1", redis.getPort());
+        adapter = new RedisAdapter(pool, PREFIX);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        redis.close();
+    }
+
+    private Set<List<String>> load() {
+        Model model = Model.newModelFromString(MODEL);
+        adapter.loadPolicy(model);
+        return new HashSet<>(policy(model, "p"));
+    }
+
+    private Set<List<String>> load(PolicyFilter filter) {
+        Model model = Model.newModelFromString(MODEL);
+        adapter.loadFilteredPolicy(model, filter);
+        return new HashSet<>(policy(model, "p"));
+    }
+
+    @Test
+    void separatorsInValuesRoundTrip() {
+        adapter.setDomainField("p", 1);
+        List<String> odd = List.of("a,b", "ten:ant%1", "100%,:", "%2C");
+        adapter.addPolicies("p", "p", List.of(odd, ALICE));
+        assertEquals(Set.of(odd), load(new PolicyFilter().where("p", "", "ten:ant%1")));
+        assertEquals(Set.of(odd, ALICE), load());
+
+        Model model = Model.newModelFromString(MODEL);
+        model.addPolicy("p", "p", odd);
+        model.addPolicy("p", "p", BOB);
+        adapter.savePolicy(model);
+        assertEquals(Set.of(odd, BOB), load());
+    }
+
+    @Test
+    void domainFilteredLoadReadsOnlyDomainSets() {
+        adapter.setDomainField("p", 1);
+        adapter.addPolicies("p", "p", List.of(ALICE, BOB, CAROL));
+        // 放错集合的规则只有在读取 tenant2 的集合时才会被加载
+        List<String> misplaced = List.of("mallory", "tenant1", "data9", "read");
+        try (Jedis j = pool.getResource()) {
+            j.sadd(PREFIX + "p:tenant2", "mallory,tenant1,data9,read");
+        }
+        assertEquals(Set.of(ALICE, CAROL), load(new PolicyFilter().where("p", "", "tenant1")));
+        // 域为通配时按登记表读取所有域集合
+        assertEquals(Set.of(ALICE, misplaced), load(new PolicyFilter().where("p", "", "", "", "read")).stream()
+            .filter(rule -> rule.get(1).equals("tenant1")).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void removeFilteredPolicyWithDomainField() {
+        adapter.setDomainField("p", 1);
+        adapter.addPolicies("p", "p", List.of(ALICE, BOB, CAROL));
+
+        adapter.removeFilteredPolicy("p", "p", 1, "tenant1", "", "write");
+        assertEquals(Set.of(ALICE, BOB), load());
+
+        // 不指定域时遍历该 ptype 的所有域集合
+        adapter.removeFilteredPolicy("p", "p", 0, "", "", "", "read");
+        assertEquals(Set.of(BOB), load());
+    }
+
+    @Test
+    void removeFilteredPolicyWithoutDomainField() {
+        adapter.addPolicies("p", "p", List.of(ALICE, BOB, CAROL));
+
+        adapter.removeFilteredPolicy("p", "p", 1, "tenant1");
+        assertEquals(Set.of(BOB), load());
+
+        adapter.removeFilteredPolicy("p", "p", 0, "bob", "tenant2", "data2", "write");
+        assertEquals(Set.of(), load());
+    }
+
+    @Test
+    void updatePolicyMovesRuleAcrossDomains() {
+        adapter.setDomainField("p", 1);
+        adapter.addPolicies("p", "p", List.of(ALICE, BOB));
+        List<String> moved = List.of("alice", "tenant2", "data1", "read");
+
+        adapter.updatePolicy("p", "p", ALICE, moved);
+        assertEquals(Set.of(moved, BOB), load());
+        assertEquals(Set.of(), load(new PolicyFilter().where("p", "", "tenant1")));
+        assertEquals(Set.of(moved, BOB), load(new PolicyFilter().where("p", "", "tenant2")));
+    }
+}
@@ -0,0 +1,124 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import cn.hutool.db.Db;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.casbin.jcasbin.model.Model;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static cn.mapleafgo.jcasbin.adapter.HutoolDBAdapterTest.MODEL;
+import static cn.mapleafgo.jcasbin.adapter.HutoolDBAdapterTest.policy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 从快照加载的策略需与数据库一致
+ *
+ * @author mapleafgo
+ */
+class SnapshotAdapterTest {
+    private final DataSource dataSource = HutoolDBAdapterTest.newDataSource();
+    private final CasbinTable table = new CasbinTable("casbin_rule");
+    @TempDir
+    Path dir;
+
+    private Set<List<String>> load(HutoolDBAdapter adapter) {
+        Model model = Model.newModelFromString(MODEL);
+        adapter.loadPolicy(model);
+        Set<List<String>> rules = new HashSet<>(policy(model, "p"));
+        policy(model, "g").forEach(rule -> rules.add(List.of("g", String.join(",", rule))));
+        return rules;
+    }
+
+    private HutoolDBAdapter seed(boolean changeLog) throws Exception {
+        HutoolDBAdapter writer = new HutoolDBAdapter(dataSource, table, changeLog);
+        writer.addPolicies("p", "p", List.of(
+            List.of("alice", "tenant1", "data1", "read"),
+            List.of("alice", "tenant1", "data2", "write"),
+            List.of("bob", "tenant2", "data1", "read")));
+        writer.addPolicy("g", "g", List.of("carol", "admin", "tenant1"));
+        return writer;
+    }
+
+    private void assertSnapshotLoads(boolean changeLog, boolean compactLoad) throws Exception {
+        HutoolDBAdapter writer = seed(changeLog);
+        Path file = dir.resolve("policy.snap");
+        SnapshotAdapter first = new SnapshotAdapter(dataSource, table, changeLog, file);
+        first.setCompactLoad(compactLoad);
+        assertEquals(load(writer), load(first));
+        try (PolicySnapshot snapshot = PolicySnapshot.open(file)) {
+            assertNotNull(snapshot);
+        }
+
+        // 第二个实例直接从快照加载
+        SnapshotAdapter second = new SnapshotAdapter(dataSource, table, changeLog, file);
+        second.setCompactLoad(compactLoad);
+        assertEquals(load(writer), load(second));
+
+        // 快照已关闭，可以被删除或替换
+        Files.delete(file);
+    }
+
+    @Test
+    void snapshotLoadMatchesDatabaseWithChangeLog() throws Exception {
+        assertSnapshotLoads(true, false);
+    }
+
+    @Test
+    void snapshotLoadMatchesDatabaseWithFingerprint() throws Exception {
+        assertSnapshotLoads(false, false);
+    }
+
+    @Test
+    void snapshotLoadMatchesDatabaseWithCompactLoad() throws Exception {
+        assertSnapshotLoads(true, true);
+    }
+
+    @Test
+    void upToDateSnapshotSkipsTableScan() throws Exception {
+        HutoolDBAdapter writer = seed(true);
+        Path file = dir.resolve("policy.snap");
+        Set<List<String>> expected = load(writer);
+        load(new SnapshotAdapter(dataSource, table, true, file));
+        // 绕过变更日志直接清空表，版本号不变时只读取快照
+        Db.use(dataSource).execute("DELETE FROM casbin_rule");
+
+        assertEquals(expected, load(new SnapshotAdapter(dataSource, table, true, file)));
+    }
+
+    @Test
+    void staleSnapshotReplaysChanges() throws Exception {
+        HutoolDBAdapter writer = seed(true);
+        Path file = dir.resolve("policy.snap");
+        load(new SnapshotAdapter(dataSource, table, true, file));
+
+        writer.removePolicy("p", "p", List.of("alice", "tenant1"));
+        writer.addPolicy("p", "p", List.of("dave", "tenant2", "data3", "read"));
+        writer.removeFilteredPolicy("p", "p", 0, null, "tenant2", "data1");
+
+        assertEquals(load(writer), load(new SnapshotAdapter(dataSource, table, true, file)));
+        try (PolicySnapshot snapshot = PolicySnapshot.open(file)) {
+            assertEquals(writer.getChangeLog().currentVersion(), snapshot.getVersion());
+        }
+        assertEquals(load(writer), load(new SnapshotAdapter(dataSource, table, true, file)));
+    }
+
+    @Test
+    void corruptSnapshotFallsBackToDatabase() throws Exception {
+        HutoolDBAdapter writer = seed(true);
+        Path file = dir.resolve("policy.snap");
+        load(new SnapshotAdapter(dataSource, table, true, file));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        assertEquals(load(writer), load(new SnapshotAdapter(dataSource, table, true, file)));
+    }
+}
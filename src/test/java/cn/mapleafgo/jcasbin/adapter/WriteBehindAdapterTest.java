@@ -0,0 +1,238 @@
+package cn.mapleafgo.jcasbin.adapter;
+
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.casbin.jcasbin.model.Model;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 基于内存 H2 的异步写回测试
+ *
+ * @author mapleafgo
+ */
+class WriteBehindAdapterTest {
+    private static final List<String> ALICE = List.of("alice", "tenant1", "data1", "read");
+
+    private HutoolDBAdapter delegate;
+    private ExecutorService pool;
+    /**
+     * 放行前提交任务停在线程池中，期间的写操作全部排队
+     */
+    private CountDownLatch gate;
+    private Executor gated;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        delegate = new HutoolDBAdapter(HutoolDBAdapterTest.newDataSource(), "casbin_rule");
+        pool = Executors.newSingleThreadExecutor();
+        gate = new CountDownLatch(1);
+        gated = r -> pool.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            r.run();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private Set<List<String>> rules() {
+        Model model = Model.newModelFromString(HutoolDBAdapterTest.MODEL);
+        delegate.loadPolicy(model);
+        return new HashSet<>(HutoolDBAdapterTest.policy(model, "p"));
+    }
+
+    @Test
+    void addThenPrefixRemoveKeepsCallOrder() {
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate, gated);
+        adapter.addPolicy("p", "p", ALICE);
+        // 非哈希模式下按前缀删除，逐条执行时会删掉刚新增的规则
+        adapter.removePolicy("p", "p", List.of("alice", "tenant1"));
+        gate.countDown();
+        adapter.close();
+        assertEquals(Set.of(), rules());
+    }
+
+    @Test
+    void removeThenAddOfSameRuleKeepsTheRemove() {
+        delegate.addPolicy("p", "p", ALICE);
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate, gated);
+        adapter.removePolicy("p", "p", List.of("alice", "tenant1"));
+        adapter.addPolicy("p", "p", List.of("alice", "tenant1"));
+        gate.countDown();
+        adapter.close();
+        assertEquals(Set.of(List.of("alice", "tenant1")), rules());
+        assertEquals(0, adapter.getCoalesced());
+    }
+
+    @Test
+    void repeatedChangesOfSameRuleAreCoalesced() {
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate, gated);
+        for (int i = 0; i < 10; i++) {
+            adapter.addPolicy("p", "p", ALICE);
+        }
+        adapter.removePolicy("p", "p", ALICE);
+        assertEquals(1, adapter.getPending());
+        gate.countDown();
+        adapter.close();
+        assertEquals(11, adapter.getSubmitted());
+        assertEquals(10, adapter.getCoalesced());
+        assertEquals(1, adapter.getCommitted());
+        assertEquals(1, adapter.getTransactions());
+        assertEquals(Set.of(), rules());
+    }
+
+    @Test
+    void filteredRemoveRunsBetweenEarlierAndLaterChanges() {
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate, gated);
+        adapter.addPolicy("p", "p", ALICE);
+        adapter.addPolicy("p", "p", List.of("bob", "tenant2", "data2", "write"));
+        String[] values = {"tenant1"};
+        CompletableFuture<Void> removed = adapter.removeFilteredPolicyAsync("p", "p", 1, values);
+        // 排队后修改调用方的数组不影响已排队的删除
+        values[0] = "tenant2";
+        adapter.addPolicy("p", "p", List.of("carol", "tenant1", "data3", "read"));
+        gate.countDown();
+        adapter.flush().join();
+        assertTrue(removed.isDone());
+        assertEquals(Set.of(List.of("bob", "tenant2", "data2", "write"), List.of("carol", "tenant1", "data3", "read")), rules());
+        adapter.close();
+    }
+
+    @Test
+    void writesBlockWhilePendingIsFull() throws Exception {
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate, gated);
+        adapter.setMaxPending(2);
+        adapter.addPolicies("p", "p", List.of(ALICE, List.of("bob", "tenant2", "data2", "write")));
+        Thread writer = new Thread(() -> adapter.addPolicy("p", "p", List.of("carol", "tenant1", "data3", "read")));
+        writer.start();
+        writer.join(300);
+        assertTrue(writer.isAlive());
+        assertEquals(2, adapter.getPending());
+
+        gate.countDown();
+        writer.join(5000);
+        assertFalse(writer.isAlive());
+        adapter.close();
+        assertEquals(3, rules().size());
+    }
+
+    @Test
+    void closeFlushesQueuedChangesAndRejectsNewOnes() {
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate);
+        for (int i = 0; i < 50; i++) {
+            adapter.addPolicy("p", "p", List.of("user" + i, "tenant1", "data", "read"));
+        }
+        adapter.close();
+        assertEquals(50, rules().size());
+        assertEquals(0, adapter.getPending());
+        assertThrows(CasbinAdapterException.class, () -> adapter.addPolicy("p", "p", ALICE));
+    }
+
+    @Test
+    void rejectedChangesAreNotCommittedLater() {
+        AtomicBoolean reject = new AtomicBoolean(true);
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate, r -> {
+            if (reject.get()) {
+                throw new RejectedExecutionException("busy");
+            }
+            pool.execute(r);
+        });
+        assertThrows(CasbinAdapterException.class, () -> adapter.addPolicy("p", "p", ALICE));
+        assertThrows(CasbinAdapterException.class, () -> adapter.removeFilteredPolicy("p", "p", 0, "bob"));
+        assertEquals(0, adapter.getPending());
+
+        reject.set(false);
+        adapter.addPolicy("p", "p", List.of("bob", "tenant2", "data2", "write"));
+        adapter.close();
+        assertEquals(Set.of(List.of("bob", "tenant2", "data2", "write")), rules());
+    }
+
+    @Test
+    void failedCommitCompletesFuturesAndLaterChangesStillCommit() {
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate, gated);
+        // 超出字段长度的规则使整个事务失败
+        CompletableFuture<Void> failed = adapter.addPolicyAsync("p", "p", List.of("x".repeat(10_000), "tenant1", "data1", "read"));
+        CompletableFuture<Void> sameTx = adapter.addPolicyAsync("p", "p", ALICE);
+        gate.countDown();
+        assertThrows(CompletionException.class, failed::join);
+        assertThrows(CompletionException.class, sameTx::join);
+
+        adapter.addPolicyAsync("p", "p", ALICE).join();
+        adapter.close();
+        assertEquals(Set.of(ALICE), rules());
+        assertEquals(0, adapter.getPending());
+    }
+
+    @Test
+    void concurrentWritersMatchSequentialResult() throws Exception {
+        WriteBehindAdapter adapter = new WriteBehindAdapter(delegate);
+        adapter.setMaxPending(64);
+        int threads = 8;
+        int opsPerThread = 600;
+        List<Set<List<String>>> expected = new ArrayList<>();
+        ExecutorService writers = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Set<List<String>> present = new HashSet<>();
+            expected.add(present);
+            String user = "user" + t;
+            done.add(CompletableFuture.runAsync(() -> {
+                Random random = new Random(user.hashCode());
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                // 每个线程只改自己的规则，最终结果与该线程的调用顺序一致
+                for (int i = 0; i < opsPerThread; i++) {
+                    List<String> rule = List.of(user, "tenant1", "data" + random.nextInt(20), "read");
+                    if (random.nextInt(3) == 0) {
+                        adapter.removePolicy("p", "p", rule);
+                        present.remove(rule);
+                    } else {
+                        adapter.addPolicy("p", "p", rule);
+                        present.add(rule);
+                    }
+                }
+            }, writers));
+        }
+        start.countDown();
+        CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        writers.shutdown();
+        adapter.close();
+
+        Set<List<String>> all = new HashSet<>();
+        expected.forEach(all::addAll);
+        assertEquals(all, rules());
+        assertEquals((long) threads * opsPerThread, adapter.getSubmitted());
+        assertEquals(adapter.getSubmitted(), adapter.getCommitted() + adapter.getCoalesced());
+    }
+}
@@ -0,0 +1,111 @@
+package cn.mapleafgo.jcasbin.db;
+
+import cn.hutool.db.ds.simple.SimpleDataSource;
+import cn.mapleafgo.jcasbin.entity.CasbinRule;
+import org.casbin.jcasbin.exception.CasbinAdapterException;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author mapleafgo
+ */
+class CasbinTableTest {
+    private final CasbinTable table = new CasbinTable("casbin_rule");
+
+    @Test
+    void deleteFilteredSqlSkipsWildcards() {
+        List<Object> params = new ArrayList<>();
+        String sql = table.deleteFilteredSql("p", 1, new String[]{"", "data1", null}, params);
+        assertEquals("DELETE FROM casbin_rule WHERE ptype = ? AND v2 = ?", sql);
+        assertEquals(List.of("p", "data1"), params);
+    }
+
+    @Test
+    void deleteFilteredSqlRejectsFieldBeyondColumns() {
+        assertThrows(CasbinAdapterException.class,
+            () -> table.deleteFilteredSql("p", table.getFieldCount(), new String[]{"x"}, new ArrayList<>()));
+        assertThrows(CasbinAdapterException.class,
+            () -> table.deleteFilteredSql("p", 3, new String[]{"", "", "x"}, new ArrayList<>()));
+    }
+
+    @Test
+    void deleteFilteredSqlAllowsWildcardBeyondColumns() {
+        List<Object> params = new ArrayList<>();
+        String sql = table.deleteFilteredSql("p", 4, new String[]{"x", ""}, params);
+        assertEquals("DELETE FROM casbin_rule WHERE ptype = ? AND v4 = ?", sql);
+    }
+
+    @Test
+    void bindInsertAndReadRuleRoundTrip() throws Exception {
+        DataSource dataSource = new SimpleDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "", "");
+        new SchemaManager(dataSource, table).init();
+        List<List<String>> rules = List.of(
+            List.of("alice", "admin"),
+            List.of("bob", "tenant1", "data1", "read", "allow"),
+            // 超出列数的字段不写入
+            List.of("carol", "tenant2", "data2", "write", "deny", "extra"));
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(table.insertSql())) {
+                for (int i = 0; i < rules.size(); i++) {
+                    table.bindInsert(ps, i + 1, i == 0 ? "g" : "p", rules.get(i));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            List<List<String>> read = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(table.selectSql() + " ORDER BY id");
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    read.add(table.readRule(rs, 1));
+                }
+            }
+            assertEquals(List.of(
+                List.of("g", "alice", "admin"),
+                List.of("p", "bob", "tenant1", "data1", "read", "allow"),
+                List.of("p", "carol", "tenant2", "data2", "write", "deny")), read);
+
+            // 按规则删除只匹配规则中存在的字段，超出列数的字段被忽略
+            List<String> carol = rules.get(2);
+            try (PreparedStatement ps = conn.prepareStatement(table.deleteSql(carol.size()))) {
+                table.bindRule(ps, 1, "p", carol);
+                assertEquals(1, ps.executeUpdate());
+            }
+            try (PreparedStatement ps = conn.prepareStatement(table.deleteSql(1))) {
+                table.bindRule(ps, 1, "g", List.of("alice"));
+                assertEquals(1, ps.executeUpdate());
+            }
+        }
+    }
+
+    @Test
+    void ruleHashSeparatesFieldBoundaries() {
+        assertNotEquals(table.ruleHash("p", List.of("a,b", "c")), table.ruleHash("p", List.of("a", "b,c")));
+        assertNotEquals(table.ruleHash("p", List.of("1:a")), table.ruleHash("p", List.of("1", "a")));
+        assertEquals(32, table.ruleHash("p", List.of()).length());
+        assertEquals(table.ruleHash("p", List.of("a", "b", "c", "d", "e")), table.ruleHash("p", List.of("a", "b", "c", "d", "e", "f")));
+    }
+
+    @Test
+    void casbinRuleFieldsRoundTrip() {
+        CasbinRule rule = new CasbinRule();
+        rule.setPtype("p");
+        rule.setRule(List.of("alice", "tenant1", "data1"));
+        assertEquals("data1", rule.getV2());
+        assertEquals(List.of("p", "alice", "tenant1", "data1"), rule.getRule());
+
+        rule.setV1(null);
+        // 遇到第一个空字段即截止
+        assertEquals(List.of("p", "alice"), rule.getRule());
+    }
+}
@@ -0,0 +1,104 @@
+package cn.mapleafgo.jcasbin.db;
+
+import cn.hutool.db.Db;
+import cn.hutool.db.ds.simple.SimpleDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 基于内存 H2 的游标读取测试
+ *
+ * @author mapleafgo
+ */
+class LeafDbTest {
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new SimpleDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "", "");
+        Db db = Db.use(dataSource);
+        db.execute("CREATE TABLE t (id INT PRIMARY KEY, name VARCHAR(20))");
+        for (int i = 1; i <= 10; i++) {
+            db.execute("INSERT INTO t VALUES (?, ?)", i, "n" + i);
+        }
+    }
+
+    /**
+     * 包装数据源，记录语句的 fetchSize 以及执行查询时连接是否处于自动提交
+     */
+    private DataSource recording(List<String> events) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+            Object result = invoke(method, dataSource, args);
+            if (!(result instanceof Connection conn)) {
+                return result;
+            }
+            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (cp, cm, cargs) -> {
+                Object r = invoke(cm, conn, cargs);
+                if (!(r instanceof PreparedStatement ps)) {
+                    return r;
+                }
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class}, (pp, pm, pargs) -> {
+                    if (pm.getName().equals("setFetchSize")) {
+                        events.add("fetchSize=" + pargs[0]);
+                    } else if (pm.getName().equals("executeQuery")) {
+                        events.add("autoCommit=" + conn.getAutoCommit());
+                    }
+                    return invoke(pm, ps, pargs);
+                });
+            });
+        });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Test
+    void fetchStreamsRowsInOrderWithParams() throws Exception {
+        List<String> events = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        LeafDb.use(recording(events)).fetch("SELECT name FROM t WHERE id > ? ORDER BY id", 3,
+            rs -> names.add(rs.getString(1)), 7);
+        assertEquals(List.of("n8", "n9", "n10"), names);
+        // 关闭自动提交后按 fetchSize 分批拉取
+        assertEquals(List.of("fetchSize=3", "autoCommit=false"), events);
+    }
+
+    @Test
+    void fetchWithoutFetchSizeKeepsDriverDefault() throws Exception {
+        List<String> events = new ArrayList<>();
+        int[] rows = {0};
+        LeafDb.use(recording(events)).fetch("SELECT id FROM t", 0, rs -> rows[0]++);
+        assertEquals(10, rows[0]);
+        assertEquals(List.of("autoCommit=false"), events);
+    }
+
+    @Test
+    void handlerFailureStopsReading() {
+        int[] rows = {0};
+        assertThrows(SQLException.class, () -> LeafDb.use(dataSource).fetch("SELECT id FROM t ORDER BY id", 2, rs -> {
+            if (++rows[0] == 4) {
+                throw new SQLException("stop");
+            }
+        }));
+        assertEquals(4, rows[0]);
+    }
+}
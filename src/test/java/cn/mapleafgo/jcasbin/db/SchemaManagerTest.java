@@ -0,0 +1,145 @@
+package cn.mapleafgo.jcasbin.db;
+
+import cn.hutool.db.Db;
+import cn.hutool.db.ds.simple.SimpleDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 基于内存 H2 的建表与迁移测试
+ *
+ * @author mapleafgo
+ */
+class SchemaManagerTest {
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SimpleDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "", "");
+    }
+
+    /**
+     * @return 小写列名到宽度的映射
+     */
+    private Map<String, Integer> columns(String table) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             ResultSet rs = conn.getMetaData().getColumns(null, null, table.toUpperCase(Locale.ROOT), null)) {
+            Map<String, Integer> columns = new HashMap<>();
+            while (rs.next()) {
+                columns.put(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT), rs.getInt("COLUMN_SIZE"));
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * @return 小写索引名到是否唯一的映射
+     */
+    private Map<String, Boolean> indexes(String table) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            DatabaseMetaData meta = conn.getMetaData();
+            Map<String, Boolean> indexes = new HashMap<>();
+            try (ResultSet rs = meta.getIndexInfo(null, null, table.toUpperCase(Locale.ROOT), false, false)) {
+                while (rs.next()) {
+                    if (rs.getString("INDEX_NAME") != null) {
+                        indexes.put(rs.getString("INDEX_NAME").toLowerCase(Locale.ROOT), !rs.getBoolean("NON_UNIQUE"));
+                    }
+                }
+            }
+            return indexes;
+        }
+    }
+
+    @Test
+    void createsTableWithIndexesOnce() throws Exception {
+        CasbinTable table = new CasbinTable("casbin_rule", true);
+        new SchemaManager(dataSource, table).init();
+        new SchemaManager(dataSource, table).init();
+
+        Map<String, Integer> columns = columns("casbin_rule");
+        assertEquals(CasbinTable.DEFAULT_FIELD_LENGTH, columns.get("v4"));
+        assertTrue(columns.containsKey("rule_hash"));
+        Map<String, Boolean> indexes = indexes("casbin_rule");
+        assertEquals(Boolean.TRUE, indexes.get(table.hashIndex()));
+        assertEquals(Boolean.FALSE, indexes.get("casbin_rule_ptype_v0_idx"));
+        assertEquals(Boolean.FALSE, indexes.get("casbin_rule_ptype_v1_idx"));
+    }
+
+    @Test
+    void migratesLegacyTableAndRemovesDuplicates() throws Exception {
+        Db db = Db.use(dataSource);
+        db.execute("CREATE TABLE casbin_rule (id bigint NOT NULL PRIMARY KEY, ptype varchar(10) NOT NULL, "
+            + "v0 varchar(20), v1 varchar(20), v2 varchar(20))");
+        // 超过一页回填的行数，其中 alice 的规则重复三次
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= 1200; i++) {
+            rows.add(new Object[]{i, "p", "user" + i, "tenant1", "read"});
+        }
+        rows.add(new Object[]{2001, "p", "alice", "tenant1", "read"});
+        rows.add(new Object[]{2000, "p", "alice", "tenant1", "read"});
+        rows.add(new Object[]{2002, "p", "alice", "tenant1", "read"});
+        rows.add(new Object[]{2003, "g", "alice", "admin", null});
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO casbin_rule (id, ptype, v0, v1, v2) VALUES (?, ?, ?, ?, ?)")) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    ps.setObject(i + 1, row[i]);
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        CasbinTable table = new CasbinTable("casbin_rule", 6, 200, true);
+        new SchemaManager(dataSource, table).init();
+
+        Map<String, Integer> columns = columns("casbin_rule");
+        for (int i = 0; i < 6; i++) {
+            assertEquals(200, columns.get(CasbinTable.fieldColumn(i)), CasbinTable.fieldColumn(i));
+        }
+        assertEquals(0, db.queryNumber("SELECT COUNT(*) FROM casbin_rule WHERE rule_hash IS NULL").intValue());
+        // 重复规则只保留 id 最小的一行
+        assertEquals(1, db.queryNumber("SELECT COUNT(*) FROM casbin_rule WHERE v0 = 'alice' AND ptype = 'p'").intValue());
+        assertEquals(2000, db.queryNumber("SELECT id FROM casbin_rule WHERE v0 = 'alice' AND ptype = 'p'").intValue());
+        assertEquals(1202, db.queryNumber("SELECT COUNT(*) FROM casbin_rule").intValue());
+        assertEquals(table.ruleHash("g", List.of("alice", "admin")),
+            db.queryString("SELECT rule_hash FROM casbin_rule WHERE id = 2003"));
+        assertEquals(Boolean.TRUE, indexes("casbin_rule").get(table.hashIndex()));
+        // 放宽后的列可以写入更长的值，唯一索引拒绝重复规则
+        db.execute("UPDATE casbin_rule SET v0 = ? WHERE id = 1", "x".repeat(200));
+        assertThrows(SQLException.class, () -> db.execute("INSERT INTO casbin_rule (id, ptype, v0, v1, v2, rule_hash) VALUES (3000, 'p', 'alice', 'tenant1', 'read', ?)",
+            table.ruleHash("p", List.of("alice", "tenant1", "read"))));
+    }
+
+    @Test
+    void initChangeLogCreatesVersionRowOnce() throws Exception {
+        CasbinTable table = new CasbinTable("casbin_rule");
+        ChangeLog changeLog = new ChangeLog(dataSource, table);
+        SchemaManager schema = new SchemaManager(dataSource, table);
+        schema.init();
+        schema.initChangeLog(changeLog);
+        schema.initChangeLog(changeLog);
+
+        assertTrue(columns(changeLog.getLogTable()).containsKey("field_index"));
+        Db db = Db.use(dataSource);
+        assertEquals(1, db.queryNumber("SELECT COUNT(*) FROM " + changeLog.getVersionTable()).intValue());
+        assertEquals(0, db.queryNumber("SELECT current_version FROM " + changeLog.getVersionTable() + " WHERE id = 1").intValue());
+    }
+}
@@ -0,0 +1,354 @@
+package cn.mapleafgo.jcasbin.standin;
+
+import com.google.protobuf.ByteString;
+import io.etcd.jetcd.api.*;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内的 etcd 替身，只实现观察者与 {@code EtcdAdapter} 用到的 gRPC 接口：KV 的 Put、Range、DeleteRange、
+ * 不带比较条件的 Txn 与 Watch 的创建、取消，不支持压缩与租约。只用于测试与基准测试，测量的是客户端与观察者本身的开销，而不是 etcd 的性能。
+ *
+ * @author mapleafgo
+ */
+public class EtcdStandIn implements AutoCloseable {
+    private static final Comparator<ByteString> KEY_ORDER = ByteString.unsignedLexicographicalComparator();
+
+    private final Server server;
+    private final NavigableMap<ByteString, KeyValue> store = new TreeMap<>(KEY_ORDER);
+    private final List<Event> history = new ArrayList<>();
+    private final List<Registration> watches = new CopyOnWriteArrayList<>();
+    private long revision = 1;
+    private long nextWatchId;
+    /**
+     * 为 true 时 Range 请求返回错误，用于模拟读取当前 revision 失败
+     */
+    private volatile boolean failRanges;
+    /**
+     * 成功提交的事务数
+     */
+    private int txns;
+    /**
+     * 成功提交的事务数达到该值后事务返回错误，小于 0 时不注入
+     */
+    private int failTxnsAfter = -1;
+
+    public EtcdStandIn() throws IOException {
+        server = NettyServerBuilder.forAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+            .addService(new Kv())
+            .addService(new Watcher())
+            .build()
+            .start();
+    }
+
+    /**
+     * @return 供 {@code Client.builder().endpoints(...)} 使用的地址
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getPort();
+    }
+
+    public void setFailRanges(boolean failRanges) {
+        this.failRanges = failRanges;
+    }
+
+    public synchronized int getTxns() {
+        return txns;
+    }
+
+    /**
+     * @param count 再成功提交 count 个事务后，之后的事务返回错误；小于 0 时取消
+     */
+    public synchronized void setFailTxnsAfter(int count) {
+        this.failTxnsAfter = count < 0 ? -1 : txns + count;
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ResponseHeader header() {
+        return ResponseHeader.newBuilder().setClusterId(1).setMemberId(1).setRaftTerm(1).setRevision(revision).build();
+    }
+
+    private synchronized long put(ByteString key, ByteString value) {
+        revision++;
+        publish(List.of(putEvent(key, value, revision)));
+        return revision;
+    }
+
+    private synchronized long deleteRange(ByteString key, ByteString rangeEnd) {
+        List<Event> events = deleteEvents(key, rangeEnd, revision + 1);
+        if (!events.isEmpty()) {
+            revision++;
+        }
+        publish(events);
+        return events.size();
+    }
+
+    /**
+     * 与 etcd 一致：同一事务中的多个操作不能指向同一个 key，所有写入共用一个 revision
+     */
+    private synchronized TxnResponse txn(TxnRequest request) {
+        if (request.getCompareCount() > 0 || request.getFailureCount() > 0) {
+            throw Status.UNIMPLEMENTED.withDescription("txn compare is not supported").asRuntimeException();
+        }
+        if (failTxnsAfter >= 0 && txns >= failTxnsAfter) {
+            throw Status.UNAVAILABLE.withDescription("txn failure injected").asRuntimeException();
+        }
+        Set<ByteString> keys = new HashSet<>();
+        for (RequestOp op : request.getSuccessList()) {
+            ByteString key = op.hasRequestPut() ? op.getRequestPut().getKey() : op.getRequestDeleteRange().getKey();
+            if (!keys.add(key)) {
+                throw Status.INVALID_ARGUMENT.withDescription("etcdserver: duplicate key given in txn request").asRuntimeException();
+            }
+        }
+        long rev = revision + 1;
+        List<Event> events = new ArrayList<>();
+        TxnResponse.Builder response = TxnResponse.newBuilder().setSucceeded(true);
+        for (RequestOp op : request.getSuccessList()) {
+            if (op.hasRequestPut()) {
+                events.add(putEvent(op.getRequestPut().getKey(), op.getRequestPut().getValue(), rev));
+                response.addResponses(ResponseOp.newBuilder().setResponsePut(PutResponse.newBuilder().setHeader(header())));
+            } else if (op.hasRequestDeleteRange()) {
+                List<Event> deleted = deleteEvents(op.getRequestDeleteRange().getKey(), op.getRequestDeleteRange().getRangeEnd(), rev);
+                events.addAll(deleted);
+                response.addResponses(ResponseOp.newBuilder().setResponseDeleteRange(
+                    DeleteRangeResponse.newBuilder().setHeader(header()).setDeleted(deleted.size())));
+            } else {
+                throw Status.UNIMPLEMENTED.withDescription("only put and delete are supported in txn").asRuntimeException();
+            }
+        }
+        if (!events.isEmpty()) {
+            revision = rev;
+        }
+        txns++;
+        publish(events);
+        return response.setHeader(header()).build();
+    }
+
+    private Event putEvent(ByteString key, ByteString value, long rev) {
+        KeyValue prev = store.get(key);
+        KeyValue kv = KeyValue.newBuilder()
+            .setKey(key)
+            .setValue(value)
+            .setCreateRevision(prev == null ? rev : prev.getCreateRevision())
+            .setModRevision(rev)
+            .setVersion(prev == null ? 1 : prev.getVersion() + 1)
+            .build();
+        store.put(key, kv);
+        return Event.newBuilder().setType(Event.EventType.PUT).setKv(kv).build();
+    }
+
+    /**
+     * 删除 key 或 [key, rangeEnd) 范围内的 key
+     *
+     * @param rev 删除事件的 revision，由调用方在有删除时推进
+     */
+    private List<Event> deleteEvents(ByteString key, ByteString rangeEnd, long rev) {
+        List<ByteString> removed = new ArrayList<>();
+        if (rangeEnd.isEmpty()) {
+            if (store.containsKey(key)) {
+                removed.add(key);
+            }
+        } else {
+            removed.addAll((isAll(rangeEnd) ? store.tailMap(key, true) : store.subMap(key, true, rangeEnd, false)).keySet());
+        }
+        if (removed.isEmpty()) {
+            return List.of();
+        }
+        List<Event> events = new ArrayList<>(removed.size());
+        for (ByteString k : removed) {
+            store.remove(k);
+            events.add(Event.newBuilder().setType(Event.EventType.DELETE).setKv(KeyValue.newBuilder().setKey(k).setModRevision(rev)).build());
+        }
+        return events;
+    }
+
+    private void publish(List<Event> events) {
+        history.addAll(events);
+        for (Registration r : watches) {
+            List<Event> matched = new ArrayList<>();
+            for (Event e : events) {
+                if (r.matches(e.getKv().getKey())) {
+                    matched.add(e);
+                }
+            }
+            if (!matched.isEmpty()) {
+                r.send(matched, header());
+            }
+        }
+    }
+
+    private synchronized RangeResponse range(RangeRequest request) {
+        RangeResponse.Builder response = RangeResponse.newBuilder().setHeader(header());
+        if (request.getRangeEnd().isEmpty()) {
+            KeyValue kv = store.get(request.getKey());
+            if (kv != null) {
+                response.addKvs(kv).setCount(1);
+            }
+            return response.build();
+        }
+        Map<ByteString, KeyValue> range = isAll(request.getRangeEnd())
+            ? store.tailMap(request.getKey(), true)
+            : store.subMap(request.getKey(), true, request.getRangeEnd(), false);
+        long limit = request.getLimit() > 0 ? request.getLimit() : Long.MAX_VALUE;
+        for (KeyValue kv : range.values()) {
+            if (response.getKvsCount() == limit) {
+                response.setMore(true);
+                break;
+            }
+            response.addKvs(request.getKeysOnly() ? kv.toBuilder().clearValue().build() : kv);
+        }
+        return response.setCount(range.size()).build();
+    }
+
+    private synchronized void watch(long id, WatchCreateRequest request, StreamObserver<WatchResponse> observer) {
+        Registration r = new Registration(id, request.getKey(), request.getRangeEnd(), observer);
+        r.created(header());
+        List<Event> replay = new ArrayList<>();
+        if (request.getStartRevision() > 0) {
+            for (Event e : history) {
+                if (e.getKv().getModRevision() >= request.getStartRevision() && r.matches(e.getKv().getKey())) {
+                    replay.add(e);
+                }
+            }
+        }
+        if (!replay.isEmpty()) {
+            r.send(replay, header());
+        }
+        watches.add(r);
+    }
+
+    private static boolean isAll(ByteString rangeEnd) {
+        return rangeEnd.size() == 1 && rangeEnd.byteAt(0) == 0;
+    }
+
+    private final class Kv extends KVGrpc.KVImplBase {
+        @Override
+        public void put(PutRequest request, StreamObserver<PutResponse> observer) {
+            long rev = EtcdStandIn.this.put(request.getKey(), request.getValue());
+            observer.onNext(PutResponse.newBuilder().setHeader(header().toBuilder().setRevision(rev)).build());
+            observer.onCompleted();
+        }
+
+        @Override
+        public void deleteRange(DeleteRangeRequest request, StreamObserver<DeleteRangeResponse> observer) {
+            long deleted = EtcdStandIn.this.deleteRange(request.getKey(), request.getRangeEnd());
+            observer.onNext(DeleteRangeResponse.newBuilder().setHeader(header()).setDeleted(deleted).build());
+            observer.onCompleted();
+        }
+
+        @Override
+        public void txn(TxnRequest request, StreamObserver<TxnResponse> observer) {
+            try {
+                observer.onNext(EtcdStandIn.this.txn(request));
+                observer.onCompleted();
+            } catch (RuntimeException e) {
+                observer.onError(e);
+            }
+        }
+
+        @Override
+        public void range(RangeRequest request, StreamObserver<RangeResponse> observer) {
+            if (failRanges) {
+                observer.onError(Status.INTERNAL.withDescription("range failure injected").asRuntimeException());
+                return;
+            }
+            observer.onNext(EtcdStandIn.this.range(request));
+            observer.onCompleted();
+        }
+    }
+
+    private final class Watcher extends WatchGrpc.WatchImplBase {
+        @Override
+        public StreamObserver<WatchRequest> watch(StreamObserver<WatchResponse> observer) {
+            return new StreamObserver<>() {
+                @Override
+                public void onNext(WatchRequest request) {
+                    if (request.hasCreateRequest()) {
+                        long id;
+                        synchronized (EtcdStandIn.this) {
+                            id = nextWatchId++;
+                        }
+                        EtcdStandIn.this.watch(id, request.getCreateRequest(), observer);
+                    } else if (request.hasCancelRequest()) {
+                        long id = request.getCancelRequest().getWatchId();
+                        for (Registration r : watches) {
+                            if (r.id == id && r.observer == observer) {
+                                watches.remove(r);
+                                r.canceled(header());
+                            }
+                        }
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    watches.removeIf(r -> r.observer == observer);
+                }
+
+                @Override
+                public void onCompleted() {
+                    watches.removeIf(r -> r.observer == observer);
+                    synchronized (observer) {
+                        observer.onCompleted();
+                    }
+                }
+            };
+        }
+    }
+
+    private record Registration(long id, ByteString key, ByteString rangeEnd, StreamObserver<WatchResponse> observer) {
+        boolean matches(ByteString k) {
+            if (rangeEnd.isEmpty()) {
+                return k.equals(key);
+            }
+            return KEY_ORDER.compare(k, key) >= 0 && (isAll(rangeEnd) || KEY_ORDER.compare(k, rangeEnd) < 0);
+        }
+
+        void created(ResponseHeader header) {
+            emit(WatchResponse.newBuilder().setHeader(header).setWatchId(id).setCreated(true).build());
+        }
+
+        void canceled(ResponseHeader header) {
+            emit(WatchResponse.newBuilder().setHeader(header).setWatchId(id).setCanceled(true).build());
+        }
+
+        void send(List<Event> events, ResponseHeader header) {
+            emit(WatchResponse.newBuilder().setHeader(header).setWatchId(id).addAllEvents(events).build());
+        }
+
+        private void emit(WatchResponse response) {
+            // 同一个流可能被多个线程写入
+            synchronized (observer) {
+                try {
+                    observer.onNext(response);
+                } catch (RuntimeException ignored) {
+                    // 流已关闭，由 onError/onCompleted 清理
+                }
+            }
+        }
+    }
+}
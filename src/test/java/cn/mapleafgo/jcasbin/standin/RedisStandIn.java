@@ -0,0 +1,597 @@
+package cn.mapleafgo.jcasbin.standin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * 进程内的 Redis 替身，只实现观察者与适配器用到的 RESP2 命令：
+ * PING、GET、SET、INCR、MGET、DEL、PUBLISH、SUBSCRIBE、UNSUBSCRIBE、PSUBSCRIBE（仅支持 {@code prefix*}）、PUNSUBSCRIBE，
+ * 集合命令 SADD、SREM、SMEMBERS、SCARD、SSCAN，Stream 命令 XADD、XREAD、XRANGE、XREVRANGE、XTRIM（MAXLEN 按精确裁剪），
+ * 以及 MULTI、EXEC、DISCARD、WATCH、UNWATCH。
+ * 数据命令在替身范围内串行执行，EXEC 时检查 WATCH 的 key 是否被修改过；阻塞的 XREAD 等待期间不占用替身。
+ * 只用于测试与基准测试，测量的是客户端与观察者本身的开销，而不是 Redis 的性能。
+ *
+ * @author mapleafgo
+ */
+public class RedisStandIn implements AutoCloseable {
+    private final ServerSocket server;
+    private final Map<String, String> values = new HashMap<>();
+    private final Map<String, Set<String>> sets = new HashMap<>();
+    /**
+     * 每个 key 的修改次数，供 WATCH 检查
+     */
+    private final Map<String, Long> versions = new HashMap<>();
+    private final Map<String, List<StreamEntry>> streams = new HashMap<>();
+    /**
+     * 最后生成的 Stream ID，所有 Stream 共用，保证单调递增
+     */
+    private long lastMillis;
+    private long lastSequence;
+    private final Set<Connection> connections = new CopyOnWriteArraySet<>();
+    /**
+     * 注入失败的命令名，为 null 时不注入
+     */
+    private volatile String failCommand;
+
+    public RedisStandIn() throws IOException {
+        server = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "redis-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * 断开所有处于订阅状态的连接，模拟订阅连接中断
+     */
+    public void dropSubscribers() throws IOException {
+        for (Connection c : connections) {
+            if (!c.channels.isEmpty() || !c.patterns.isEmpty()) {
+                c.socket.close();
+            }
+        }
+    }
+
+    /**
+     * 之后该命令都返回错误，直到传入 null
+     *
+     * @param command 命令名，例如 {@code XREAD}
+     */
+    public void setFailCommand(String command) {
+        this.failCommand = command == null ? null : command.toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Connection c : connections) {
+            c.socket.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Connection c = new Connection(server.accept());
+                connections.add(c);
+                Thread t = new Thread(c::serve, "redis-stand-in-conn");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 执行一条数据命令，在替身范围内串行
+     *
+     * @param command 命令与参数
+     * @return RESP 格式的回复
+     */
+    private synchronized String execute(List<String> command) {
+        String name = command.get(0).toUpperCase(Locale.ROOT);
+        List<String> args = command.subList(1, command.size());
+        if (name.equals(failCommand)) {
+            return "-ERR " + name + " failure injected\r\n";
+        }
+        switch (name) {
+            case "GET":
+                return bulk(values.get(args.get(0)));
+            case "SET":
+                values.put(args.get(0), args.get(1));
+                touch(args.get(0));
+                return "+OK\r\n";
+            case "INCR": {
+                String value = values.merge(args.get(0), "1", (a, b) -> String.valueOf(Long.parseLong(a) + 1));
+                touch(args.get(0));
+                return ":" + value + "\r\n";
+            }
+            case "MGET": {
+                List<String> result = new ArrayList<>();
+                for (String key : args) {
+                    result.add(values.get(key));
+                }
+                return array(result);
+            }
+            case "DEL": {
+                int deleted = 0;
+                for (String key : args) {
+                    if (values.remove(key) != null | sets.remove(key) != null | streams.remove(key) != null) {
+                        deleted++;
+                        touch(key);
+                    }
+                }
+                return ":" + deleted + "\r\n";
+            }
+            case "PUBLISH":
+                return ":" + publish(args.get(0), args.get(1)) + "\r\n";
+            case "SADD": {
+                Set<String> set = sets.computeIfAbsent(args.get(0), k -> new LinkedHashSet<>());
+                int added = 0;
+                for (String member : args.subList(1, args.size())) {
+                    if (set.add(member)) {
+                        added++;
+                    }
+                }
+                touch(args.get(0));
+                return ":" + added + "\r\n";
+            }
+            case "SREM": {
+                Set<String> set = sets.get(args.get(0));
+                int removed = 0;
+                if (set != null) {
+                    for (String member : args.subList(1, args.size())) {
+                        if (set.remove(member)) {
+                            removed++;
+                        }
+                    }
+                    if (set.isEmpty()) {
+                        sets.remove(args.get(0));
+                    }
+                    touch(args.get(0));
+                }
+                return ":" + removed + "\r\n";
+            }
+            case "SMEMBERS":
+                return array(sets.getOrDefault(args.get(0), Set.of()));
+            case "SCARD":
+                return ":" + sets.getOrDefault(args.get(0), Set.of()).size() + "\r\n";
+            case "SSCAN":
+                return sscan(args);
+            case "XADD":
+                return xadd(args);
+            case "XREAD":
+                return xread(args);
+            case "XRANGE":
+            case "XREVRANGE": {
+                boolean reverse = name.equals("XREVRANGE");
+                long[] from = parseId(args.get(reverse ? 2 : 1), false);
+                long[] to = parseId(args.get(reverse ? 1 : 2), true);
+                int count = args.size() > 4 && args.get(3).equalsIgnoreCase("COUNT") ? Integer.parseInt(args.get(4)) : Integer.MAX_VALUE;
+                List<StreamEntry> result = new ArrayList<>();
+                for (StreamEntry e : streams.getOrDefault(args.get(0), List.of())) {
+                    if (e.compareTo(from) >= 0 && e.compareTo(to) <= 0) {
+                        result.add(e);
+                    }
+                }
+                if (reverse) {
+                    Collections.reverse(result);
+                }
+                return entries(result.subList(0, Math.min(count, result.size())));
+            }
+            case "XTRIM": {
+                int i = 2;
+                if (args.get(i).equals("~") || args.get(i).equals("=")) {
+                    i++;
+                }
+                return ":" + trim(args.get(0), Long.parseLong(args.get(i))) + "\r\n";
+            }
+            default:
+                return "-ERR unknown command '" + command.get(0) + "'\r\n";
+        }
+    }
+
+    /**
+     * SSCAN key cursor [COUNT n]：游标为按成员排序后的下标
+     */
+    private String sscan(List<String> args) {
+        List<String> members = new ArrayList<>(new TreeSet<>(sets.getOrDefault(args.get(0), Set.of())));
+        int cursor = Integer.parseInt(args.get(1));
+        int count = 10;
+        for (int i = 2; i + 1 < args.size(); i += 2) {
+            if (args.get(i).equalsIgnoreCase("COUNT")) {
+                count = Integer.parseInt(args.get(i + 1));
+            }
+        }
+        int end = Math.min(cursor + count, members.size());
+        String next = end >= members.size() ? "0" : String.valueOf(end);
+        return "*2\r\n" + bulk(next) + array(members.subList(Math.min(cursor, end), end));
+    }
+
+    /**
+     * XADD key [NOMKSTREAM] [MAXLEN [=|~] n] [LIMIT c] id field value ...：只支持自动生成 ID
+     */
+    private String xadd(List<String> args) {
+        String key = args.get(0);
+        long maxLength = -1;
+        int i = 1;
+        while (true) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            if (option.equals("MAXLEN")) {
+                i++;
+                if (args.get(i).equals("~") || args.get(i).equals("=")) {
+                    i++;
+                }
+                maxLength = Long.parseLong(args.get(i++));
+            } else if (option.equals("LIMIT")) {
+                i += 2;
+            } else if (option.equals("NOMKSTREAM")) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (!args.get(i).equals("*")) {
+            return "-ERR only auto-generated stream IDs are supported\r\n";
+        }
+        long now = System.currentTimeMillis();
+        if (now > lastMillis) {
+            lastMillis = now;
+            lastSequence = 0;
+        } else {
+            lastSequence++;
+        }
+        StreamEntry entry = new StreamEntry(lastMillis, lastSequence, List.copyOf(args.subList(i + 1, args.size())));
+        streams.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+        if (maxLength >= 0) {
+            trim(key, maxLength);
+        }
+        touch(key);
+        notifyAll();
+        return bulk(entry.id());
+    }
+
+    /**
+     * XREAD [COUNT n] [BLOCK ms] STREAMS key ... id ...：阻塞时在替身上等待新消息，等待期间释放替身
+     */
+    private String xread(List<String> args) {
+        int count = Integer.MAX_VALUE;
+        long block = -1;
+        int i = 0;
+        while (!args.get(i).equalsIgnoreCase("STREAMS")) {
+            if (args.get(i).equalsIgnoreCase("COUNT")) {
+                count = Integer.parseInt(args.get(i + 1));
+            } else if (args.get(i).equalsIgnoreCase("BLOCK")) {
+                block = Long.parseLong(args.get(i + 1));
+            }
+            i += 2;
+        }
+        List<String> rest = args.subList(i + 1, args.size());
+        int streamCount = rest.size() / 2;
+        Map<String, long[]> after = new LinkedHashMap<>();
+        for (int k = 0; k < streamCount; k++) {
+            String key = rest.get(k);
+            String id = rest.get(streamCount + k);
+            if (id.equals("$")) {
+                List<StreamEntry> stream = streams.getOrDefault(key, List.of());
+                after.put(key, stream.isEmpty() ? new long[]{0, 0} : new long[]{stream.get(stream.size() - 1).millis(), stream.get(stream.size() - 1).sequence()});
+            } else {
+                after.put(key, parseId(id, false));
+            }
+        }
+        long deadline = System.currentTimeMillis() + block;
+        while (true) {
+            StringBuilder sb = new StringBuilder();
+            int found = 0;
+            for (Map.Entry<String, long[]> e : after.entrySet()) {
+                List<StreamEntry> result = new ArrayList<>();
+                for (StreamEntry entry : streams.getOrDefault(e.getKey(), List.of())) {
+                    if (entry.compareTo(e.getValue()) > 0 && result.size() < count) {
+                        result.add(entry);
+                    }
+                }
+                if (!result.isEmpty()) {
+                    sb.append("*2\r\n").append(bulk(e.getKey())).append(entries(result));
+                    found++;
+                }
+            }
+            if (found > 0) {
+                return "*" + found + "\r\n" + sb;
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (block < 0 || (block > 0 && left <= 0)) {
+                return "*-1\r\n";
+            }
+            try {
+                wait(block == 0 ? 0 : left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "*-1\r\n";
+            }
+        }
+    }
+
+    /**
+     * 只保留最新的 maxLength 条消息
+     *
+     * @return 删除的消息数
+     */
+    private int trim(String key, long maxLength) {
+        List<StreamEntry> stream = streams.get(key);
+        if (stream == null || stream.size() <= maxLength) {
+            return 0;
+        }
+        int removed = (int) (stream.size() - maxLength);
+        stream.subList(0, removed).clear();
+        touch(key);
+        return removed;
+    }
+
+    /**
+     * 解析 Stream ID，{@code -}/{@code +} 表示最小/最大，省略序号时按区间起止补全
+     */
+    private static long[] parseId(String id, boolean end) {
+        if (id.equals("-")) {
+            return new long[]{0, 0};
+        }
+        if (id.equals("+")) {
+            return new long[]{Long.MAX_VALUE, Long.MAX_VALUE};
+        }
+        String s = id.startsWith("(") ? id.substring(1) : id;
+        int dash = s.indexOf('-');
+        if (dash < 0) {
+            return new long[]{Long.parseLong(s), end ? Long.MAX_VALUE : 0};
+        }
+        return new long[]{Long.parseLong(s.substring(0, dash)), Long.parseLong(s.substring(dash + 1))};
+    }
+
+    private static String entries(List<StreamEntry> entries) {
+        StringBuilder sb = new StringBuilder("*").append(entries.size()).append("\r\n");
+        for (StreamEntry e : entries) {
+            sb.append("*2\r\n").append(bulk(e.id())).append(array(e.fields()));
+        }
+        return sb.toString();
+    }
+
+    private record StreamEntry(long millis, long sequence, List<String> fields) {
+        String id() {
+            return millis + "-" + sequence;
+        }
+
+        int compareTo(long[] id) {
+            int c = Long.compare(millis, id[0]);
+            return c != 0 ? c : Long.compare(sequence, id[1]);
+        }
+    }
+
+    private void touch(String key) {
+        versions.merge(key, 1L, Long::sum);
+    }
+
+    private synchronized void watch(Map<String, Long> watched, List<String> keys) {
+        for (String key : keys) {
+            watched.putIfAbsent(key, versions.getOrDefault(key, 0L));
+        }
+    }
+
+    /**
+     * 执行事务；WATCH 的 key 被修改过时放弃并返回空数组
+     */
+    private synchronized String exec(Map<String, Long> watched, List<List<String>> queued) {
+        for (Map.Entry<String, Long> e : watched.entrySet()) {
+            if (!versions.getOrDefault(e.getKey(), 0L).equals(e.getValue())) {
+                return "*-1\r\n";
+            }
+        }
+        StringBuilder sb = new StringBuilder("*").append(queued.size()).append("\r\n");
+        for (List<String> command : queued) {
+            sb.append(execute(command));
+        }
+        return sb.toString();
+    }
+
+    private int publish(String channel, String message) {
+        int receivers = 0;
+        for (Connection c : connections) {
+            if (c.channels.contains(channel)) {
+                c.writeRaw(array(List.of("message", channel, message)));
+                receivers++;
+            }
+            for (String pattern : c.patterns) {
+                if (channel.startsWith(pattern.substring(0, pattern.length() - 1))) {
+                    c.writeRaw(array(List.of("pmessage", pattern, channel, message)));
+                    receivers++;
+                }
+            }
+        }
+        return receivers;
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final Set<String> channels = ConcurrentHashMap.newKeySet();
+        private final Set<String> patterns = ConcurrentHashMap.newKeySet();
+        private final Map<String, Long> watched = new HashMap<>();
+        /**
+         * MULTI 之后排队的命令，不在事务中时为 null
+         */
+        private List<List<String>> queued;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        private void serve() {
+            try {
+                List<String> command;
+                while ((command = readCommand()) != null) {
+                    handle(command);
+                }
+            } catch (IOException ignored) {
+                // 客户端断开
+            } finally {
+                connections.remove(this);
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // ignore
+                }
+            }
+        }
+
+        private void handle(List<String> command) {
+            String name = command.get(0).toUpperCase(Locale.ROOT);
+            switch (name) {
+                case "PING" -> writeRaw("+PONG\r\n");
+                case "MULTI" -> {
+                    queued = new ArrayList<>();
+                    writeRaw("+OK\r\n");
+                }
+                case "EXEC" -> {
+                    if (queued == null) {
+                        writeRaw("-ERR EXEC without MULTI\r\n");
+                        return;
+                    }
+                    String reply = exec(watched, queued);
+                    queued = null;
+                    watched.clear();
+                    writeRaw(reply);
+                }
+                case "DISCARD" -> {
+                    queued = null;
+                    watched.clear();
+                    writeRaw("+OK\r\n");
+                }
+                case "WATCH" -> {
+                    watch(watched, command.subList(1, command.size()));
+                    writeRaw("+OK\r\n");
+                }
+                case "UNWATCH" -> {
+                    watched.clear();
+                    writeRaw("+OK\r\n");
+                }
+                case "SUBSCRIBE", "PSUBSCRIBE" -> {
+                    Set<String> target = name.equals("SUBSCRIBE") ? channels : patterns;
+                    for (int i = 1; i < command.size(); i++) {
+                        target.add(command.get(i));
+                        writeCount(name.toLowerCase(Locale.ROOT), command.get(i));
+                    }
+                }
+                case "UNSUBSCRIBE", "PUNSUBSCRIBE" -> {
+                    Set<String> target = name.equals("UNSUBSCRIBE") ? channels : patterns;
+                    List<String> names = command.size() > 1 ? command.subList(1, command.size()) : new ArrayList<>(target);
+                    if (names.isEmpty()) {
+                        writeCount(name.toLowerCase(Locale.ROOT), null);
+                    }
+                    for (String n : names) {
+                        target.remove(n);
+                        writeCount(name.toLowerCase(Locale.ROOT), n);
+                    }
+                }
+                case "CLIENT", "SELECT", "QUIT" -> writeRaw("+OK\r\n");
+                default -> {
+                    if (queued != null) {
+                        queued.add(command);
+                        writeRaw("+QUEUED\r\n");
+                    } else {
+                        writeRaw(execute(command));
+                    }
+                }
+            }
+        }
+
+        private void writeCount(String kind, String channel) {
+            synchronized (this) {
+                writeRaw("*3\r\n" + bulk(kind) + bulk(channel) + ":" + (channels.size() + patterns.size()) + "\r\n");
+            }
+        }
+
+        private synchronized void writeRaw(String s) {
+            try {
+                out.write(s.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException ignored) {
+                // 连接已断开，由读取线程清理
+            }
+        }
+
+        private List<String> readCommand() throws IOException {
+            String line = readLine();
+            if (line == null) {
+                return null;
+            }
+            if (line.isEmpty() || line.charAt(0) != '*') {
+                return List.of(line.trim().split("\\s+"));
+            }
+            int count = Integer.parseInt(line.substring(1));
+            List<String> args = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String header = readLine();
+                if (header == null) {
+                    return null;
+                }
+                byte[] data = in.readNBytes(Integer.parseInt(header.substring(1)));
+                in.readNBytes(2);
+                args.add(new String(data, StandardCharsets.UTF_8));
+            }
+            return args;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\r') {
+                    in.read();
+                    return sb.toString();
+                }
+                sb.append((char) b);
+            }
+            return null;
+        }
+    }
+
+    private static String array(Collection<String> items) {
+        StringBuilder sb = new StringBuilder("*").append(items.size()).append("\r\n");
+        for (String s : items) {
+            sb.append(bulk(s));
+        }
+        return sb.toString();
+    }
+
+    private static String bulk(String s) {
+        if (s == null) {
+            return "$-1\r\n";
+        }
+        return "$" + s.getBytes(StandardCharsets.UTF_8).length + "\r\n" + s + "\r\n";
+    }
+}
@@ -0,0 +1,131 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cn.mapleafgo.jcasbin.watcher.RedisWatcherTest.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author mapleafgo
+ */
+class CoalescingDispatcherTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void signalsDuringCallbackAreMergedIntoOne() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(executor, message -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            messages.add(message);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+        });
+        dispatcher.signal("a");
+        await(() -> messages.size() == 1);
+        // 回调执行期间的通知合并为一次排队的回调，只收到最后一条
+        dispatcher.signal("b");
+        dispatcher.signal("c");
+        dispatcher.signal("d");
+        Thread.sleep(100);
+        assertEquals(1, messages.size());
+
+        release.countDown();
+        await(() -> messages.size() == 2);
+        Thread.sleep(100);
+        assertEquals(List.of("a", "d"), messages);
+        assertEquals(1, maxConcurrent.get());
+        assertEquals(4, dispatcher.getReceived());
+        assertEquals(2, dispatcher.getMerged());
+        assertEquals(2, dispatcher.getDispatched());
+    }
+
+    @Test
+    void quietPeriodWaitsForSilence() throws Exception {
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(executor, messages::add);
+        dispatcher.setQuietPeriod(Duration.ofMillis(300));
+        dispatcher.setMaxDelay(Duration.ofSeconds(10));
+        for (int i = 0; i < 5; i++) {
+            dispatcher.signal("m" + i);
+            Thread.sleep(50);
+        }
+        assertEquals(List.of(), messages);
+        await(() -> messages.size() == 1);
+        assertEquals(List.of("m4"), messages);
+    }
+
+    @Test
+    void maxDelayBoundsContinuousBursts() throws Exception {
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(executor, messages::add);
+        dispatcher.setQuietPeriod(Duration.ofMillis(200));
+        dispatcher.setMaxDelay(Duration.ofMillis(300));
+        // 通知间隔始终小于安静期，只有最长等待时间能触发回调
+        long end = System.currentTimeMillis() + 1500;
+        int i = 0;
+        while (System.currentTimeMillis() < end) {
+            dispatcher.signal("m" + i++);
+            Thread.sleep(50);
+        }
+        assertTrue(messages.size() >= 2, "callbacks during burst: " + messages.size());
+        assertTrue(dispatcher.getMerged() > 0);
+    }
+
+    @Test
+    void closeDropsPendingAndLaterSignals() throws Exception {
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(executor, messages::add);
+        dispatcher.setQuietPeriod(Duration.ofMillis(200));
+        dispatcher.signal("a");
+        dispatcher.close();
+        dispatcher.signal("b");
+        Thread.sleep(400);
+        assertEquals(List.of(), messages);
+        assertEquals(1, dispatcher.getReceived());
+    }
+
+    @Test
+    void rejectedCallbackDoesNotBlockLaterSignals() throws Exception {
+        AtomicBoolean reject = new AtomicBoolean(true);
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(r -> {
+            if (reject.getAndSet(false)) {
+                throw new RejectedExecutionException("busy");
+            }
+            executor.execute(r);
+        }, messages::add);
+        dispatcher.signal("a");
+        await(() -> !reject.get());
+        dispatcher.signal("b");
+        await(() -> messages.size() == 1);
+        assertEquals(List.of("b"), messages);
+    }
+
+    @Test
+    void negativeDurationsAreRejected() {
+        CoalescingDispatcher dispatcher = new CoalescingDispatcher(executor, messages::add);
+        assertThrows(IllegalArgumentException.class, () -> dispatcher.setQuietPeriod(Duration.ofMillis(-1)));
+        assertThrows(IllegalArgumentException.class, () -> dispatcher.setMaxDelay(Duration.ofMillis(-1)));
+    }
+}
@@ -0,0 +1,58 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.standin.EtcdStandIn;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cn.mapleafgo.jcasbin.watcher.RedisWatcherTest.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author mapleafgo
+ */
+class EtcdWatcherTest {
+    private EtcdStandIn etcd;
+    private Client client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        etcd = new EtcdStandIn();
+        client = Client.builder().endpoints(etcd.getEndpoint()).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        etcd.close();
+    }
+
+    private void put(String key, String value) throws Exception {
+        client.getKVClient().put(ByteSequence.from(key, StandardCharsets.UTF_8), ByteSequence.from(value, StandardCharsets.UTF_8))
+            .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void restartResumesWhenCurrentRevisionUnavailable() throws Exception {
+        put("other", "x");
+        try (EtcdWatcher watcher = new EtcdWatcher(client, "casbin")) {
+            AtomicInteger updates = new AtomicInteger();
+            watcher.setUpdateCallback(updates::incrementAndGet);
+            etcd.setFailRanges(true);
+            watcher.startWatch();
+            await(() -> watcher.getLastRevision() > 0);
+
+            // 重启期间其他实例的更新，重新监听后需要补发
+            watcher.closeWatch();
+            put("casbin", "other-instance");
+            watcher.startWatch();
+            await(() -> updates.get() == 1);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.hutool.db.ds.simple.SimpleDataSource;
+import cn.mapleafgo.jcasbin.adapter.HutoolDBAdapter;
+import cn.mapleafgo.jcasbin.db.CasbinTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cn.mapleafgo.jcasbin.watcher.RedisWatcherTest.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 基于内存 H2 的轮询观察者测试，H2 不支持 LISTEN/NOTIFY，只覆盖轮询路径
+ *
+ * @author mapleafgo
+ */
+class JdbcWatcherHubTest {
+    private HutoolDBAdapter adapter;
+    private JdbcWatcherHub hub;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DataSource dataSource = new SimpleDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "", "");
+        adapter = new HutoolDBAdapter(dataSource, new CasbinTable("casbin_rule"), true);
+        adapter.addPolicy("p", "p", List.of("alice", "tenant1", "data1", "read"));
+        hub = new JdbcWatcherHub(dataSource);
+        hub.setMinIntervalMillis(200);
+        hub.setMaxIntervalMillis(1600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.close();
+    }
+
+    @Test
+    void firstPollRecordsBaselineAndWritesFireOnce() throws Exception {
+        HubWatcher watcher = hub.watcher("casbin_rule");
+        AtomicInteger updates = new AtomicInteger();
+        watcher.setUpdateCallback(updates::incrementAndGet);
+        await(() -> watcher.lastSeenCounter > 0);
+        long baseline = watcher.lastSeenCounter;
+        await(() -> hub.getPolls() >= 3);
+        // 注册前的写入只作为基线
+        assertEquals(0, updates.get());
+
+        adapter.addPolicy("p", "p", List.of("bob", "tenant2", "data2", "write"));
+        await(() -> updates.get() == 1);
+        long polls = hub.getPolls();
+        await(() -> hub.getPolls() >= polls + 2);
+        assertEquals(1, updates.get());
+        assertEquals(baseline + 1, watcher.lastSeenCounter);
+    }
+
+    @Test
+    void intervalFallsBackToMinimumOnChange() throws Exception {
+        HubWatcher watcher = hub.watcher("casbin_rule");
+        await(() -> hub.getIntervalMillis() == hub.getMaxIntervalMillis());
+
+        // 其他实例的写入不会唤醒轮询线程，最迟一个最长间隔后发现
+        adapter.addPolicy("p", "p", List.of("bob", "tenant2", "data2", "write"));
+        await(() -> hub.getIntervalMillis() == hub.getMinIntervalMillis());
+
+        // 本实例的 update 唤醒轮询线程，间隔同样回到最小值
+        await(() -> hub.getIntervalMillis() == hub.getMaxIntervalMillis());
+        long polls = hub.getPolls();
+        watcher.update();
+        await(() -> hub.getPolls() > polls);
+        assertEquals(hub.getMinIntervalMillis() * 2, hub.getIntervalMillis());
+    }
+
+    @Test
+    void closeStopsPolling() throws Exception {
+        hub.watcher("casbin_rule");
+        await(() -> hub.getPolls() > 0);
+        hub.close();
+        long polls = hub.getPolls();
+        Thread.sleep(3 * hub.getMinIntervalMillis());
+        assertEquals(polls, hub.getPolls());
+        assertEquals(0, hub.size());
+        assertFalse(hub.isListening());
+    }
+}
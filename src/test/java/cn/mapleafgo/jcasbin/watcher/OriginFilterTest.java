@@ -0,0 +1,64 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.standin.RedisStandIn;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cn.mapleafgo.jcasbin.watcher.RedisWatcherTest.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author mapleafgo
+ */
+class OriginFilterTest {
+    @Test
+    void ownEventsAreSuppressedByDefault() {
+        OriginFilter filter = new OriginFilter();
+        filter.setInstanceId("node-1");
+        assertFalse(filter.accept("node-1"));
+        assertTrue(filter.accept("node-2"));
+        // 来源未知的事件（如旧版本实例发布的）照常回调
+        assertTrue(filter.accept(null));
+        assertEquals(1, filter.getSuppressed());
+        assertEquals(2, filter.getDelivered());
+
+        filter.setDeliverOwnEvents(true);
+        assertTrue(filter.accept("node-1"));
+        assertEquals(3, filter.getDelivered());
+        assertThrows(NullPointerException.class, () -> filter.setInstanceId(null));
+    }
+
+    @Test
+    void redisWatcherSkipsOwnUpdateButTracksCounter() throws Exception {
+        ExecutorService subscribers = Executors.newCachedThreadPool();
+        try (RedisStandIn redis = new RedisStandIn();
+             JedisPool pool = new JedisPool("127.0.0.1", redis.getPort());
+             RedisWatcher writer = new RedisWatcher(pool, "casbin", "casbin", null, subscribers);
+             RedisWatcher other = new RedisWatcher(pool, "casbin", "casbin", null, subscribers)) {
+            AtomicInteger writerUpdates = new AtomicInteger();
+            AtomicInteger otherUpdates = new AtomicInteger();
+            writer.setUpdateCallback(writerUpdates::incrementAndGet);
+            other.setUpdateCallback(otherUpdates::incrementAndGet);
+            writer.startWatch();
+            other.startWatch();
+            await(() -> writer.isConnected() && other.isConnected());
+
+            writer.update();
+            await(() -> otherUpdates.get() == 1);
+            await(() -> writer.getLastSeenCounter() == 1);
+            Thread.sleep(100);
+            assertEquals(0, writerUpdates.get());
+            assertEquals(1, writer.getOriginFilter().getSuppressed());
+            assertEquals(1, other.getOriginFilter().getDelivered());
+        } finally {
+            subscribers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.standin.RedisStandIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static cn.mapleafgo.jcasbin.watcher.RedisWatcherTest.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 基于 Redis 替身的 Stream 观察者测试
+ *
+ * @author mapleafgo
+ */
+class RedisStreamWatcherTest {
+    private static final String STREAM = "casbin:stream";
+
+    private RedisStandIn redis;
+    private JedisPool pool;
+    private RedisStreamWatcher publisher;
+    private RedisStreamWatcher reader;
+    private final List<PolicyUpdate> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new RedisStandIn();
+        pool = new JedisPool("127.0.0.1", redis.getPort());
+        publisher = new RedisStreamWatcher(pool, STREAM);
+        reader = new RedisStreamWatcher(pool, STREAM);
+        reader.setBlockMillis(100);
+        reader.setDeltaCallback(received::add);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        reader.close();
+        publisher.close();
+        pool.close();
+        redis.close();
+    }
+
+    private void add(String user) {
+        publisher.updateForAddPolicy("p", "p", user, "tenant1", "data1", "read");
+    }
+
+    private List<String> received() {
+        return received.stream()
+            .map(u -> u.getOperation() == PolicyUpdate.Operation.UPDATE ? "reload" : u.getRules().get(0).get(0))
+            .toList();
+    }
+
+    @Test
+    void startsFromTailWithoutReplayingHistory() throws Exception {
+        add("old1");
+        add("old2");
+        reader.startWatch();
+        add("alice");
+        await(() -> received.size() == 1);
+        assertEquals(List.of("alice"), received());
+    }
+
+    @Test
+    void unreadableTailReloadsInsteadOfReplayingHistory() throws Exception {
+        add("old1");
+        add("old2");
+        redis.setFailCommand("XREVRANGE");
+        reader.startWatch();
+        Thread.sleep(300);
+        assertEquals(List.of(), received());
+
+        redis.setFailCommand(null);
+        await(() -> received.size() == 1);
+        add("alice");
+        await(() -> received.size() == 2);
+        // 读不到末尾时不能从 0-0 开始重放历史增量
+        assertEquals(List.of("reload", "alice"), received());
+    }
+
+    @Test
+    void trimmedPositionReloadsOnceAndResumesFromTail() throws Exception {
+        reader.startWatch();
+        add("alice");
+        await(() -> received.size() == 1);
+
+        // 读取失败期间写入的消息连同最后处理的位置一起被裁剪
+        redis.setFailCommand("XREAD");
+        Thread.sleep(300);
+        add("bob");
+        add("carol");
+        add("dave");
+        try (Jedis j = pool.getResource()) {
+            j.xtrim(STREAM, 2, false);
+        }
+        await(() -> received.size() == 2);
+        Thread.sleep(300);
+        redis.setFailCommand(null);
+
+        add("erin");
+        await(() -> received.size() == 3);
+        // 重新加载已包含 carol 与 dave，不再逐条回调
+        assertEquals(List.of("alice", "reload", "erin"), received());
+    }
+}
@@ -0,0 +1,53 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.standin.RedisStandIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static cn.mapleafgo.jcasbin.watcher.RedisWatcherTest.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author mapleafgo
+ */
+class RedisWatcherHubTest {
+    private RedisStandIn redis;
+    private JedisPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new RedisStandIn();
+        pool = new JedisPool("127.0.0.1", redis.getPort());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        redis.close();
+    }
+
+    @Test
+    void lateWatcherCatchesUpUpdateMissedBeforeFirstMessage() throws Exception {
+        try (RedisWatcherHub hub = new RedisWatcherHub(pool, "casbin:")) {
+            hub.watcher("a");
+            await(hub::isConnected);
+
+            HubWatcher late = hub.watcher("b");
+            AtomicInteger updates = new AtomicInteger();
+            late.setUpdateCallback(updates::incrementAndGet);
+            // 其他实例的更新发生在断线期间，没有收到消息
+            try (Jedis j = pool.getResource()) {
+                j.incr("casbin:b");
+            }
+            redis.dropSubscribers();
+            await(() -> hub.getReconnects() > 0 && hub.isConnected());
+            await(() -> updates.get() == 1);
+            assertEquals(1, late.lastSeenCounter);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cn.mapleafgo.jcasbin.watcher;
+
+import cn.mapleafgo.jcasbin.standin.RedisStandIn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author mapleafgo
+ */
+class RedisWatcherTest {
+    private RedisStandIn redis;
+    private JedisPool pool;
+    private ExecutorService subscriberExecutor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new RedisStandIn();
+        pool = new JedisPool("127.0.0.1", redis.getPort());
+        subscriberExecutor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        subscriberExecutor.shutdownNow();
+        pool.close();
+        redis.close();
+    }
+
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 5s");
+            Thread.sleep(10);
+        }
+    }
+
+    private long subscribers(String channel) {
+        try (Jedis j = pool.getResource()) {
+            return j.publish(channel, "0");
+        }
+    }
+
+    @Test
+    void restartLeavesSingleSubscription() throws Exception {
+        try (RedisWatcher watcher = new RedisWatcher(pool, "casbin", "casbin", null, subscriberExecutor)) {
+            watcher.startWatch();
+            await(watcher::isConnected);
+            for (int i = 0; i < 5; i++) {
+                watcher.closeWatch();
+                watcher.startWatch();
+            }
+            await(watcher::isConnected);
+            // 旧的订阅循环在退避后重连时会多出订阅者
+            Thread.sleep(1000);
+            assertEquals(1, subscribers("casbin"));
+            assertTrue(watcher.isConnected());
+
+            watcher.closeWatch();
+            await(() -> subscribers("casbin") == 0);
+        }
+    }
+}